@@ -2,9 +2,12 @@ package physics2D;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 
 import physics2D.geom.Shape;
 import physics2D.math.Vec2;
@@ -32,7 +35,20 @@ public class Debug {
 	private static final Color DEFAULT_FORCE_COLOR = new Color(0.0, 0.0, 1.0, 1.0);
 	private static final Color DEFAULT_SHAPE_COLOR = new Color(0.0, 0.6, 0.0, 0.6);
 	
-	private static int INTERACTION_COUNT = 0;
+	// counters may be updated from multiple threads while islands are solved in parallel
+	private static final LongAdder INTERACTION_COUNT = new LongAdder();
+	private static final LongAdder BOUNDS_UPDATE_COUNT = new LongAdder();
+	private static final LongAdder SLEEP_COUNT = new LongAdder();
+	private static final LongAdder WAKE_COUNT = new LongAdder();
+	private static final LongAdder AXIS_CACHE_HITS = new LongAdder();
+	private static final LongAdder AXIS_CACHE_MISSES = new LongAdder();
+	private static final LongAdder CONTACTS = new LongAdder();
+	private static final LongAdder REDUCED_CONTACTS = new LongAdder();
+	private static final LongAdder CONTACT_CACHE_HITS = new LongAdder();
+	private static final LongAdder CONTACT_CACHE_MISSES = new LongAdder();
+	private static final LongAdder PARALLEL_CONSTRAINT_BATCHES = new LongAdder();
+	/** total residual of the impulse solver after each iteration, only replaced by a longer array under the lock of Debug.class */
+	private static volatile DoubleAdder[] solverResiduals = new DoubleAdder[0];
 	private static long BEGIN_NANOS = System.nanoTime();
 	private static String DEBUG_INFO = "";
 	
@@ -76,13 +92,13 @@ public class Debug {
 			subject.parts.get(0).properties = subject.parts.get(0).properties.withColor(Color.YELLOW);
 			stop = true;
 		}*/
-		if(MARK_FORCES) Screen.markVector(subject.getCFrame().localToGlobal(relativeAttachment), force, color);
+		if(MARK_FORCES) synchronized(Debug.class) {Screen.markVector(subject.getCFrame().localToGlobal(relativeAttachment), force, color);}
 	}
 	public static void logPoint(Vec2 point){
 		logPoint(point, DEFAULT_COLOR);
 	}
 	public static void logPoint(Vec2 point, Color color){
-		if(MARK_POINTS) Screen.markPoint(point, color);
+		if(MARK_POINTS) synchronized(Debug.class) {Screen.markPoint(point, color);}
 	}
 	public static void logVector(WorldVec2 vec){
 		logVector(vec.origin, vec.vector);
@@ -94,19 +110,159 @@ public class Debug {
 		logVector(origin, vector, DEFAULT_COLOR);
 	}
 	public static void logVector(Vec2 origin, Vec2 vector, Color color){
-		if(MARK_VECTORS) Screen.markVector(origin, vector, color);
+		if(MARK_VECTORS) synchronized(Debug.class) {Screen.markVector(origin, vector, color);}
 	}
 	public static void logInteraction(RigidBody first, RigidBody second){
-		INTERACTION_COUNT++;
+		INTERACTION_COUNT.increment();
+	}
+	public static void logBoundsUpdate(RigidBody body){
+		BOUNDS_UPDATE_COUNT.increment();
+	}
+	/**
+	 * @return the amount of bounding boxes recomputed since the last {@link #endTick()}
+	 */
+	public static int getBoundsUpdateCount(){
+		return BOUNDS_UPDATE_COUNT.intValue();
+	}
+	public static void logSleep(RigidBody body){
+		SLEEP_COUNT.increment();
+	}
+	public static void logWake(RigidBody body){
+		WAKE_COUNT.increment();
+	}
+	/**
+	 * @return the amount of bodies put to sleep since the last {@link #endTick()}
+	 */
+	public static int getSleepCount(){
+		return SLEEP_COUNT.intValue();
+	}
+	/**
+	 * @return the amount of bodies woken since the last {@link #endTick()}
+	 */
+	public static int getWakeCount(){
+		return WAKE_COUNT.intValue();
+	}
+	/**
+	 * a piece pair was found to still be separated along the axis remembered from last tick
+	 */
+	public static void logAxisCacheHit(){
+		AXIS_CACHE_HITS.increment();
+	}
+	/**
+	 * a piece pair had no remembered axis, or it no longer separated them
+	 */
+	public static void logAxisCacheMiss(){
+		AXIS_CACHE_MISSES.increment();
+	}
+	/**
+	 * @return the amount of SAT tests ended by the remembered axis since the last {@link #endTick()}
+	 */
+	public static int getAxisCacheHitCount(){
+		return AXIS_CACHE_HITS.intValue();
+	}
+	/**
+	 * @return the amount of SAT tests which had to test more than the remembered axis since the last {@link #endTick()}
+	 */
+	public static int getAxisCacheMissCount(){
+		return AXIS_CACHE_MISSES.intValue();
+	}
+	/**
+	 * the contacts of a pair of bodies were reduced
+	 * @param before amount of contact points found by the narrowphase
+	 * @param after amount of contact points left to apply
+	 */
+	public static void logContactReduction(int before, int after){
+		CONTACTS.add(before);
+		REDUCED_CONTACTS.add(after);
+	}
+	/**
+	 * @return the amount of contact points found by the narrowphase since the last {@link #endTick()}
+	 */
+	public static int getContactCount(){
+		return CONTACTS.intValue();
+	}
+	/**
+	 * @return the amount of contact points left after reduction since the last {@link #endTick()}
+	 */
+	public static int getReducedContactCount(){
+		return REDUCED_CONTACTS.intValue();
+	}
+	/**
+	 * the contacts of a pair of bodies were reused as they barely moved relative to eachother
+	 */
+	public static void logContactCacheHit(){
+		CONTACT_CACHE_HITS.increment();
+	}
+	/**
+	 * a pair of bodies with remembered contacts moved too far relative to eachother to reuse them
+	 */
+	public static void logContactCacheMiss(){
+		CONTACT_CACHE_MISSES.increment();
+	}
+	/**
+	 * @return the amount of body pairs whose contacts were reused since the last {@link #endTick()}
+	 */
+	public static int getContactCacheHitCount(){
+		return CONTACT_CACHE_HITS.intValue();
+	}
+	/**
+	 * @return the amount of touching body pairs which had to run the narrowphase again since the last {@link #endTick()}
+	 */
+	public static int getContactCacheMissCount(){
+		return CONTACT_CACHE_MISSES.intValue();
+	}
+	/**
+	 * a batch of constraints of the same colour was enacted in parallel tasks
+	 */
+	public static void logParallelConstraintBatch(){
+		PARALLEL_CONSTRAINT_BATCHES.increment();
+	}
+	/**
+	 * @return the amount of constraint batches enacted in parallel tasks since the last {@link #endTick()}
+	 */
+	public static int getParallelConstraintBatchCount(){
+		return PARALLEL_CONSTRAINT_BATCHES.intValue();
+	}
+	/**
+	 * the impulse solver solved an island
+	 * @param residuals the total change of the impulses of all contacts in each iteration
+	 * @param iterations amount of iterations
+	 */
+	public static void logSolverResiduals(double[] residuals, int iterations){
+		DoubleAdder[] sums = solverResiduals;
+		if(sums.length < iterations)
+			sums = growSolverResiduals(iterations);
+		for(int i = 0; i < iterations; i++)
+			sums[i].add(residuals[i]);
+	}
+	private static synchronized DoubleAdder[] growSolverResiduals(int iterations){
+		DoubleAdder[] sums = solverResiduals;
+		if(sums.length < iterations){
+			sums = Arrays.copyOf(sums, iterations);
+			for(int i = solverResiduals.length; i < iterations; i++)
+				sums[i] = new DoubleAdder();
+			solverResiduals = sums;
+		}
+		return sums;
+	}
+	/**
+	 * @return the total residual of the impulse solver after each iteration, over all islands since the last {@link #endTick()}
+	 */
+	public static double[] getSolverResiduals(){
+		DoubleAdder[] sums = solverResiduals;
+		double[] result = new double[sums.length];
+		for(int i = 0; i < sums.length; i++)
+			result[i] = sums[i].sum();
+		return result;
 	}
 	public static void logPolygon(Vec2... polygon){
 		logPolygon(DEFAULT_SHAPE_COLOR, polygon);
 	}
 	public static void logPolygon(Color color, Vec2... polygon){
-		if(MARK_SHAPES) Screen.markPolygon(polygon, color);
+		if(MARK_SHAPES) synchronized(Debug.class) {Screen.markPolygon(polygon, color);}
 	}
 	public static void logPolygon(Color fillColor, Color edgeColor, Vec2... polygon){
-		if(MARK_SHAPES) Screen.markPolygon(polygon, fillColor, edgeColor);
+		if(MARK_SHAPES) synchronized(Debug.class) {Screen.markPolygon(polygon, fillColor, edgeColor);}
 	}
 	public static void logShape(Shape s){
 		logShape(s, DEFAULT_SHAPE_COLOR);
@@ -115,7 +271,7 @@ public class Debug {
 		logShape(s, color, Color.BLACK);
 	}
 	public static void logShape(Shape s, Color fillColor, Color edgeColor){
-		Screen.markShape(s, fillColor, edgeColor);
+		synchronized(Debug.class) {Screen.markShape(s, fillColor, edgeColor);}
 	}
 	public static int getDrawCount(){
 		return Screen.getMarkingsCount();
@@ -147,10 +303,30 @@ public class Debug {
 						"\nTPS: " + String.format("%.2f", TPS) + 
 						"\nTPSTarget: " + String.format("%.2f", Physics2D.SIMULATION_SPEED*Physics2D.SIMULATION_REPEATS_PER_TICK*100) + 
 						"\nInteractions: " + INTERACTION_COUNT + 
+						"\nBounds updates: " + BOUNDS_UPDATE_COUNT + 
+						"\nSleeps: " + SLEEP_COUNT + ", Wakes: " + WAKE_COUNT + 
+						"\nAxis cache hits: " + AXIS_CACHE_HITS + ", Misses: " + AXIS_CACHE_MISSES + 
+						"\nContacts: " + CONTACTS + ", After reduction: " + REDUCED_CONTACTS + 
+						"\nContact cache hits: " + CONTACT_CACHE_HITS + ", Misses: " + CONTACT_CACHE_MISSES + 
+						"\nParallel constraint batches: " + PARALLEL_CONSTRAINT_BATCHES + 
+						"\nSolver residuals: " + formatResiduals(getSolverResiduals()) + 
 						"\nObjects: " + world.physicals.size() + 
+						"\nIslands: " + world.getIslandCount() + 
 						"\nAge: " + age + " ticks";
 		
-		INTERACTION_COUNT = 0;
+		INTERACTION_COUNT.reset();
+		BOUNDS_UPDATE_COUNT.reset();
+		SLEEP_COUNT.reset();
+		WAKE_COUNT.reset();
+		AXIS_CACHE_HITS.reset();
+		AXIS_CACHE_MISSES.reset();
+		CONTACTS.reset();
+		REDUCED_CONTACTS.reset();
+		CONTACT_CACHE_HITS.reset();
+		CONTACT_CACHE_MISSES.reset();
+		PARALLEL_CONSTRAINT_BATCHES.reset();
+		for(DoubleAdder sum:solverResiduals)
+			sum.reset();
 		
 		objectLog.commit();
 		Screen.commitDrawings();
@@ -158,6 +334,13 @@ public class Debug {
 		
 	}
 	
+	private static String formatResiduals(double[] residuals){
+		StringBuilder result = new StringBuilder();
+		for(int i = 0; i < residuals.length; i++)
+			result.append((i == 0)? "" : ", ").append(String.format("%.3g", residuals[i]));
+		return result.toString();
+	}
+	
 	public static synchronized String getDebugInfo(){
 		return DEBUG_INFO;
 	}
@@ -0,0 +1,60 @@
+package physics2D.geom;
+
+import physics2D.math.CFrame;
+import physics2D.math.RotMat2;
+import physics2D.math.Vec2;
+
+/**
+ * All points within {@code radius} of the segment from {@code start} to {@code end}, a {@link RoundedPolygon} with a core of two corners
+ */
+public class Capsule extends RoundedPolygon {
+	
+	public final Vec2 start, end;
+	
+	public Capsule(Vec2 start, Vec2 end, double radius){
+		super(new SimpleConvexPolygon(new Vec2[]{start, end}), radius);
+		this.start = start;
+		this.end = end;
+	}
+	
+	/**
+	 * Creates a horizontal capsule centered on the origin
+	 * @param length distance between the centers of both rounded ends
+	 * @param radius radius of the rounded ends
+	 */
+	public Capsule(double length, double radius){
+		this(new Vec2(-length/2, 0.0), new Vec2(length/2, 0.0), radius);
+	}
+	
+	private Capsule(Vec2 start, Vec2 end, double radius, double area, double inertialArea, Vec2 centerOfMass){
+		super(new SimpleConvexPolygon(new Vec2[]{start, end}), radius, area, inertialArea, centerOfMass);
+		this.start = start;
+		this.end = end;
+	}
+	
+	@Override
+	public Capsule transformToCFrame(CFrame frame){
+		return new Capsule(frame.localToGlobal(start), frame.localToGlobal(end), radius, getArea(), getInertialArea(), frame.localToGlobal(getCenterOfMass()));
+	}
+	
+	@Override
+	public Capsule translate(Vec2 offset){
+		return new Capsule(start.add(offset), end.add(offset), radius, getArea(), getInertialArea(), getCenterOfMass().add(offset));
+	}
+	
+	@Override
+	public Capsule rotate(RotMat2 rotation){
+		return new Capsule(rotation.mul(start), rotation.mul(end), radius, getArea(), getInertialArea(), rotation.mul(getCenterOfMass()));
+	}
+	
+	@Override
+	public Capsule scale(double factor){
+		double f2 = factor*factor;
+		return new Capsule(start.mul(factor), end.mul(factor), radius*Math.abs(factor), getArea()*f2, getInertialArea()*f2*f2, getCenterOfMass().mul(factor));
+	}
+	
+	@Override
+	public String toString(){
+		return "Capsule(" + start + ", " + end + ", " + radius + ")";
+	}
+}
@@ -0,0 +1,240 @@
+package physics2D.geom;
+
+import physics2D.math.BoundingBox;
+import physics2D.math.CFrame;
+import physics2D.math.Range;
+import physics2D.math.RotMat2;
+import physics2D.math.Vec2;
+
+/**
+ * A perfect circle, it's area, inertia and bounds are exact.<br><br>
+ * 
+ * Contacts with other circles and with polygons are found in closed form by {@link #collide(Circle, Circle, Contact)}
+ * and {@link #collide(Circle, double[], Contact)}, a circle has no SAT directions of it's own.
+ * It is only tessellated into a polygon for drawing, and for the generic {@link #leftSlice(Vec2, Vec2)} and {@link #intersection(Convex)}.
+ */
+public final class Circle implements Convex {
+	
+	/** amount of corners of the polygon the circle is drawn as */
+	private static final int DRAWING_SEGMENTS = 64;
+	
+	public final Vec2 center;
+	public final double radius;
+	
+	public Circle(Vec2 center, double radius){
+		this.center = center;
+		this.radius = radius;
+	}
+	
+	public Circle(double radius){
+		this(Vec2.ZERO, radius);
+	}
+	
+	@Override
+	public boolean containsPoint(Vec2 point){
+		return point.subtract(center).lengthSquared() <= radius*radius;
+	}
+	
+	/**
+	 * @return a polygon of {@value #DRAWING_SEGMENTS} corners on the circle, for drawing only
+	 */
+	@Override
+	public Vec2[] getDrawingVertexes(){
+		return tessellate().getCorners();
+	}
+	
+	private ConvexPolygon tessellate(){
+		return new RegularPolygon(DRAWING_SEGMENTS, new Vec2(radius, 0.0)).translate(center);
+	}
+	
+	@Override
+	public double getArea(){
+		return Math.PI*radius*radius;
+	}
+	
+	/**
+	 * @return the inertial area around the center, pi*r^4/2
+	 */
+	@Override
+	public double getInertialArea(){
+		double r2 = radius*radius;
+		return Math.PI*r2*r2/2;
+	}
+	
+	@Override
+	public Vec2 getCenterOfMass(){
+		return center;
+	}
+	
+	@Override
+	public BoundingBox getBoundingBox(){
+		return new BoundingBox(center.x-radius, center.y-radius, center.x+radius, center.y+radius);
+	}
+	
+	@Override
+	public Range getBoundsAlongDirection(Vec2 direction){
+		double c = direction.cross(center);
+		double r = radius*direction.length();
+		return new Range(c-r, c+r);
+	}
+	
+	@Override
+	public Vec2 getSupport(Vec2 direction){
+		double length = direction.length();
+		if(length == 0) return center.add(new Vec2(radius, 0.0));
+		return center.add(direction.mul(radius/length));
+	}
+	
+	/**
+	 * A circle has an SAT direction for every other shape, these are the directions of the drawing polygon.
+	 * Circles themselves never need them, see {@link #getNearestExit(Convex)} and {@link #intersects(Convex)}
+	 */
+	@Override
+	public Vec2[] getSATDirections(){
+		return tessellate().getSATDirections();
+	}
+	
+	/**
+	 * Exact for circles, polygons and rounded polygons, other shapes fall back to {@link GJK}
+	 */
+	@Override
+	public Vec2 getNearestExit(Convex other){
+		Contact contact = new Contact();
+		if(!CollisionDispatch.collide(this, other, contact)) return null;
+		return contact.getExit();
+	}
+	
+	@Override
+	public boolean intersects(Convex other){
+		return CollisionDispatch.collide(this, other, new Contact());
+	}
+	
+	/**
+	 * Finds the contact between two circles
+	 * @param a first circle, the normal points away from it
+	 * @param b second circle
+	 * @param contact receives the contact, untouched if the circles don't touch
+	 * @return true if the circles overlap
+	 */
+	public static boolean collide(Circle a, Circle b, Contact contact){
+		double dx = b.center.x-a.center.x, dy = b.center.y-a.center.y;
+		double radii = a.radius+b.radius;
+		double distanceSquared = dx*dx+dy*dy;
+		if(distanceSquared >= radii*radii) return false;
+		
+		double distance = Math.sqrt(distanceSquared);
+		double nx = 1.0, ny = 0.0;
+		if(distance > 0){
+			nx = dx/distance;
+			ny = dy/distance;
+		}
+		double depth = radii-distance;
+		// halfway between the deepest point of a in b and that of b in a
+		double offset = a.radius-depth/2;
+		contact.set(nx, ny, depth, a.center.x+nx*offset, a.center.y+ny*offset);
+		return true;
+	}
+	
+	/**
+	 * Finds the contact between a circle and a polygon
+	 * @param a the circle, the normal points away from it
+	 * @param polygon packed corners of the polygon, see {@link ConvexPolygon#getPackedCorners()}
+	 * @param contact receives the contact, untouched if they don't touch
+	 * @return true if the circle and polygon overlap
+	 */
+	public static boolean collide(Circle a, double[] polygon, Contact contact){
+		double cx = a.center.x, cy = a.center.y, r = a.radius;
+		int n = polygon.length;
+		
+		// the edge the center is furthest outside of, the corners are counterclockwise so (dy, -dx) points outward
+		double maxSeparation = Double.NEGATIVE_INFINITY;
+		double edgeNormalX = 0, edgeNormalY = 0;
+		for(int i = 0; i < n; i += 2){
+			int next = (i+2 == n)? 0 : i+2;
+			double dx = polygon[next]-polygon[i], dy = polygon[next+1]-polygon[i+1];
+			double length = Math.sqrt(dx*dx+dy*dy);
+			double nx = dy/length, ny = -dx/length;
+			double separation = (cx-polygon[i])*nx+(cy-polygon[i+1])*ny;
+			if(separation >= r) return false;
+			if(separation > maxSeparation){
+				maxSeparation = separation;
+				edgeNormalX = nx;
+				edgeNormalY = ny;
+			}
+		}
+		
+		if(maxSeparation <= 0){
+			// the center is inside, the circle exits through the nearest edge
+			double depth = r-maxSeparation;
+			double offset = (maxSeparation+r)/2;
+			contact.set(-edgeNormalX, -edgeNormalY, depth, cx-edgeNormalX*offset, cy-edgeNormalY*offset);
+			return true;
+		}
+		
+		// the center is outside, find the closest point on the boundary
+		double bestDistanceSquared = Double.POSITIVE_INFINITY;
+		double qx = 0, qy = 0;
+		for(int i = 0; i < n; i += 2){
+			int next = (i+2 == n)? 0 : i+2;
+			double px = polygon[i], py = polygon[i+1];
+			double dx = polygon[next]-px, dy = polygon[next+1]-py;
+			double t = ((cx-px)*dx+(cy-py)*dy)/(dx*dx+dy*dy);
+			t = Math.max(0, Math.min(1, t));
+			double x = px+dx*t, y = py+dy*t;
+			double distanceSquared = (x-cx)*(x-cx)+(y-cy)*(y-cy);
+			if(distanceSquared < bestDistanceSquared){
+				bestDistanceSquared = distanceSquared;
+				qx = x;
+				qy = y;
+			}
+		}
+		if(bestDistanceSquared >= r*r) return false;
+		
+		double distance = Math.sqrt(bestDistanceSquared);
+		double nx = (qx-cx)/distance, ny = (qy-cy)/distance;
+		double depth = r-distance;
+		contact.set(nx, ny, depth, (qx+cx+nx*r)/2, (qy+cy+ny*r)/2);
+		return true;
+	}
+	
+	/**
+	 * Approximated by slicing the drawing polygon
+	 */
+	@Override
+	public Convex leftSlice(Vec2 origin, Vec2 direction){
+		return tessellate().leftSlice(origin, direction);
+	}
+	
+	/**
+	 * Approximated by intersecting the drawing polygon
+	 */
+	@Override
+	public Convex intersection(Convex other){
+		return tessellate().intersection(other);
+	}
+	
+	@Override
+	public Circle transformToCFrame(CFrame frame){
+		return new Circle(frame.localToGlobal(center), radius);
+	}
+	
+	@Override
+	public Circle translate(Vec2 offset){
+		return new Circle(center.add(offset), radius);
+	}
+	
+	@Override
+	public Circle rotate(RotMat2 rotation){
+		return new Circle(rotation.mul(center), radius);
+	}
+	
+	@Override
+	public Circle scale(double factor){
+		return new Circle(center.mul(factor), radius*Math.abs(factor));
+	}
+	
+	@Override
+	public String toString(){
+		return "Circle(" + center + ", " + radius + ")";
+	}
+}
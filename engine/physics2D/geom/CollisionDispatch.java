@@ -0,0 +1,206 @@
+package physics2D.geom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import physics2D.math.Vec2;
+
+/**
+ * Double dispatch table of contact routines, keyed by the kinds of both shapes.<br><br>
+ * 
+ * A kind is a registered class or interface, a shape is of the kind of it's nearest registered supertype, see {@link #kindOf(Convex)}.
+ * When there is no routine for a pair of kinds, the routines of their parent kinds are tried, so a routine for
+ * {@link ConvexPolygon} also handles {@link Rectangle}s unless a more specific one is registered.
+ * Routines registered for (A, B) are also used for (B, A), with the normal flipped.<br><br>
+ * 
+ * Pairs without any routine, such as two plain polygons, are left to the SAT and clipping narrowphase of the caller.
+ * New shapes can register their kind and routines with {@link #registerKind(Class)} and {@link #register(Class, Class, Routine)},
+ * this must happen before any parts using them are created.
+ */
+public final class CollisionDispatch {
+	
+	/**
+	 * Finds the contact between two shapes of given kinds
+	 */
+	@FunctionalInterface
+	public static interface Routine<A extends Convex, B extends Convex> {
+		/**
+		 * @param a first shape, the normal points away from it
+		 * @param b second shape
+		 * @param contact receives the contact
+		 * @return true if the shapes overlap
+		 */
+		public boolean collide(A a, B b, Contact contact);
+	}
+	
+	private static final List<Class<?>> kinds = new ArrayList<>();
+	private static final List<Integer> parentKinds = new ArrayList<>();
+	/** kind of every type looked up, replaced whenever a kind is registered so the old kinds are forgotten */
+	private static volatile ClassValue<Integer> kindCache = createKindCache();
+	/** routines registered for exactly these kinds */
+	private static Routine<?, ?>[][] registered = new Routine<?, ?>[0][0];
+	/** routines found for these kinds, including those of parent kinds */
+	private static volatile Routine<?, ?>[][] resolved = new Routine<?, ?>[0][0];
+	
+	private static final ThreadLocal<GJK> gjk = ThreadLocal.withInitial(GJK::new);
+	
+	/** {@link GJK} and EPA, for pairs of shapes without a closed form */
+	public static final Routine<Convex, Convex> GJK_ROUTINE = (a, b, contact) -> {
+		GJK query = gjk.get();
+		if(!query.query(a, b)) return false;
+		Vec2 normal = query.getNormal(), point = Vec2.avg(query.getPointA(), query.getPointB());
+		contact.set(normal.x, normal.y, query.getDistance(), point.x, point.y);
+		return true;
+	};
+	
+	static {
+		registerKind(Convex.class);
+		registerKind(ConvexPolygon.class);
+		registerKind(Rectangle.class);
+		registerKind(Circle.class);
+		registerKind(RoundedPolygon.class);
+		
+		register(Rectangle.class, Rectangle.class, Rectangle::collide);
+		
+		register(Circle.class, Circle.class, Circle::collide);
+		register(Circle.class, ConvexPolygon.class, (a, b, contact) -> Circle.collide(a, b.getPackedCorners(), contact));
+		register(Circle.class, RoundedPolygon.class, RoundedPolygon::collide);
+		register(Circle.class, Convex.class, GJK_ROUTINE);
+		
+		register(RoundedPolygon.class, RoundedPolygon.class,
+				(a, b, contact) -> RoundedPolygon.collide(a.core.getPackedCorners(), a.radius, b.core.getPackedCorners(), b.radius, contact));
+		register(RoundedPolygon.class, ConvexPolygon.class,
+				(a, b, contact) -> RoundedPolygon.collide(a.core.getPackedCorners(), a.radius, b.getPackedCorners(), 0, contact));
+		register(RoundedPolygon.class, Convex.class, GJK_ROUTINE);
+	}
+	
+	private CollisionDispatch(){}
+	
+	/**
+	 * Adds a new kind of shape, it's parent kind is the kind of it's nearest registered supertype
+	 * @param type class or interface of the new kind, must implement {@link Convex}
+	 * @return the new kind, or the existing one if type was already registered
+	 */
+	public static synchronized int registerKind(Class<? extends Convex> type){
+		int existing = kinds.indexOf(type);
+		if(existing != -1) return existing;
+		
+		int parent = nearestKind(type, false);
+		kinds.add(type);
+		parentKinds.add(parent);
+		kindCache = createKindCache();
+		
+		int count = kinds.size();
+		Routine<?, ?>[][] grown = new Routine<?, ?>[count][count];
+		for(int i = 0; i < registered.length; i++)
+			System.arraycopy(registered[i], 0, grown[i], 0, registered.length);
+		registered = grown;
+		resolve();
+		return count-1;
+	}
+	
+	/**
+	 * Registers the routine for the kinds {@code a} and {@code b}, it is also used for (b, a). Unregistered kinds are registered
+	 */
+	public static synchronized <A extends Convex, B extends Convex> void register(Class<A> a, Class<B> b, Routine<? super A, ? super B> routine){
+		int kindA = registerKind(a), kindB = registerKind(b);
+		registered[kindA][kindB] = routine;
+		if(kindA != kindB)
+			registered[kindB][kindA] = flipped(routine);
+		resolve();
+	}
+	
+	private static <A extends Convex, B extends Convex> Routine<B, A> flipped(Routine<? super A, ? super B> routine){
+		return (b, a, contact) -> {
+			if(!routine.collide(a, b, contact)) return false;
+			contact.normalX = -contact.normalX;
+			contact.normalY = -contact.normalY;
+			return true;
+		};
+	}
+	
+	/**
+	 * For every pair of kinds, picks the routine of the nearest pair of ancestors which has one, trying the ancestors of a first
+	 */
+	private static void resolve(){
+		int count = kinds.size();
+		Routine<?, ?>[][] table = new Routine<?, ?>[count][count];
+		for(int i = 0; i < count; i++){
+			for(int j = 0; j < count; j++){
+				search:
+				for(int a = i; a != -1; a = parentKinds.get(a)){
+					for(int b = j; b != -1; b = parentKinds.get(b)){
+						if(registered[a][b] != null){
+							table[i][j] = registered[a][b];
+							break search;
+						}
+					}
+				}
+			}
+		}
+		resolved = table;
+	}
+	
+	/**
+	 * @return the kind of the nearest registered supertype of shape, parts look this up once for each of their pieces
+	 */
+	public static int kindOf(Convex shape){
+		return kindOf(shape.getClass());
+	}
+	
+	/**
+	 * Looked up for every pair the narrowphase checks, the kind is only searched for the first time a type is seen
+	 */
+	public static int kindOf(Class<? extends Convex> type){
+		return kindCache.get(type);
+	}
+	
+	private static ClassValue<Integer> createKindCache(){
+		return new ClassValue<Integer>(){
+			@Override
+			protected Integer computeValue(Class<?> type){
+				synchronized(CollisionDispatch.class){
+					return nearestKind(type, true);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Searches the superclasses of type first, then all interfaces breadth first
+	 * @return the nearest registered kind, -1 if there is none
+	 */
+	private static int nearestKind(Class<?> type, boolean includeSelf){
+		List<Class<?>> queue = new ArrayList<>();
+		for(Class<?> c = type; c != null; c = c.getSuperclass())
+			queue.add(c);
+		for(int i = 0; i < queue.size(); i++){
+			Class<?> c = queue.get(i);
+			if(c != type || includeSelf){
+				int kind = kinds.indexOf(c);
+				if(kind != -1) return kind;
+			}
+			for(Class<?> parent:c.getInterfaces())
+				queue.add(parent);
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return the routine for shapes of the given kinds, null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public static Routine<Convex, Convex> get(int kindA, int kindB){
+		return (Routine<Convex, Convex>) resolved[kindA][kindB];
+	}
+	
+	/**
+	 * Finds the contact between two shapes with their routine, or {@link #GJK_ROUTINE} if they don't have one
+	 * @return true if the shapes overlap
+	 */
+	public static boolean collide(Convex a, Convex b, Contact contact){
+		Routine<Convex, Convex> routine = get(kindOf(a), kindOf(b));
+		if(routine == null) routine = GJK_ROUTINE;
+		return routine.collide(a, b, contact);
+	}
+}
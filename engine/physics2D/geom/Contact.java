@@ -0,0 +1,100 @@
+package physics2D.geom;
+
+import physics2D.math.Vec2;
+
+/**
+ * Reusable holder for the contact manifold of two convex shapes, filled in by the routines of {@link CollisionDispatch}
+ * and by {@link SeparatingAxis#manifold(double[], double[], SeparatingAxis.Result, Contact)}.<br><br>
+ * 
+ * A manifold has a shared normal and up to {@value #MAX_POINTS} contact points, each with it's own penetration depth.
+ * Faces resting on each other get a point at both ends of their overlap, so the contact can hold them flat.<br><br>
+ * 
+ * The normal points from the first shape to the second, moving the second shape by {@code normal*depth} separates them,
+ * the same convention as {@link Convex#getNearestExit(Convex)}.<br><br>
+ * 
+ * Every point has a feature id telling which edges and corners it was made of, the same features give the same id from tick to tick.
+ * Routines which only find a single point leave it at 0.
+ */
+public final class Contact {
+	
+	public static final int MAX_POINTS = 2;
+	
+	/** unit normal, from the first shape to the second */
+	public double normalX, normalY;
+	/** penetration depth along the normal, the deepest of all points */
+	public double depth;
+	/**
+	 * For routines which test a fixed set of axes, like {@link Rectangle#collide(Rectangle, Rectangle, Contact)}: the axis to test first on input,
+	 * the separating axis or the axis of least overlap on output. -1 for none, routines without axes leave it untouched
+	 */
+	public int axis = -1;
+	
+	/** contact points, inside both shapes */
+	int pointCount;
+	final double[] pointsX = new double[MAX_POINTS], pointsY = new double[MAX_POINTS];
+	final double[] depths = new double[MAX_POINTS];
+	final int[] features = new int[MAX_POINTS];
+	
+	/**
+	 * sets a contact with a single point
+	 */
+	void set(double normalX, double normalY, double depth, double pointX, double pointY){
+		setNormal(normalX, normalY, depth);
+		addPoint(pointX, pointY, depth);
+	}
+	
+	/**
+	 * sets the normal and depth and removes all points
+	 */
+	void setNormal(double normalX, double normalY, double depth){
+		this.normalX = normalX;
+		this.normalY = normalY;
+		this.depth = depth;
+		this.pointCount = 0;
+	}
+	
+	void addPoint(double x, double y, double depth){
+		addPoint(x, y, depth, 0);
+	}
+	
+	void addPoint(double x, double y, double depth, int feature){
+		pointsX[pointCount] = x;
+		pointsY[pointCount] = y;
+		depths[pointCount] = depth;
+		features[pointCount] = feature;
+		pointCount++;
+	}
+	
+	public int getPointCount(){
+		return pointCount;
+	}
+	
+	public Vec2 getPoint(int index){
+		return new Vec2(pointsX[index], pointsY[index]);
+	}
+	
+	public double getDepth(int index){
+		return depths[index];
+	}
+	
+	/**
+	 * @return the feature id of the given point, see {@link SeparatingAxis#manifold(double[], double[], SeparatingAxis.Result, Contact)}
+	 */
+	public int getFeature(int index){
+		return features[index];
+	}
+	
+	/**
+	 * @return the vector the second shape must move along to exit the first
+	 */
+	public Vec2 getExit(){
+		return new Vec2(normalX*depth, normalY*depth);
+	}
+	
+	/**
+	 * @return the penetration of the given point, along the normal
+	 */
+	public Vec2 getExit(int index){
+		return new Vec2(normalX*depths[index], normalY*depths[index]);
+	}
+}
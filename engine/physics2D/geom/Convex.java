@@ -3,6 +3,7 @@ package physics2D.geom;
 import java.util.ArrayList;
 import java.util.List;
 
+import physics2D.math.CFrame;
 import physics2D.math.Range;
 import physics2D.math.Vec2;
 
@@ -33,6 +34,16 @@ public interface Convex extends Shape {
 	 */
 	public Convex leftSlice(Vec2 origin, Vec2 direction);
 	
+	/**
+	 * Returns the support point of this shape, used by {@link GJK}
+	 * @param direction direction to search in, doesn't need to be normalized
+	 * @return the point of this shape furthest along {@code direction}
+	 */
+	public Vec2 getSupport(Vec2 direction);
+	
+	@Override
+	public Convex transformToCFrame(CFrame frame);
+	
 	/**
 	 * Returns the shortest distance this Convex would have to move to exit {@code other}
 	 * 
@@ -0,0 +1,188 @@
+package physics2D.geom;
+
+import physics2D.math.Vec2;
+
+/**
+ * Clips a convex polygon by another one on packed corners, see {@link ConvexPolygon#getPackedCorners()}.<br><br>
+ * 
+ * The subject is clipped by one edge of the clip polygon after the other, Sutherland-Hodgman style, ping-ponging between
+ * two buffers which are kept between calls. The area and center of mass of the result are summed while the last edge is clipped,
+ * so a contact point can be found without creating any Vec2s or polygons.<br><br>
+ * 
+ * Like {@link ConvexPolygon#leftSlice(Vec2, Vec2)}, only the parts of the subject to the left of every edge of the clip polygon are kept.
+ * A clipper holds state, so every thread needs it's own, see {@link #get()}.
+ */
+public final class ConvexClipper {
+	
+	private static final ThreadLocal<ConvexClipper> clipper = ThreadLocal.withInitial(ConvexClipper::new);
+	
+	/**
+	 * @return the clipper of the current thread
+	 */
+	public static ConvexClipper get(){
+		return clipper.get();
+	}
+	
+	private double[] result = new double[32];
+	private double[] spare = new double[32];
+	private int cornerCount = 0;
+	
+	private double area, centerX, centerY;
+	
+	/** sums for the area and center of mass, relative to the first corner of the subject */
+	private boolean summing;
+	private double refX, refY;
+	private double firstX, firstY, lastX, lastY;
+	private double cross, momentX, momentY;
+	
+	/**
+	 * Clips {@code subject} by all edges of {@code clip}, the equivalent of {@code clip.intersection(subject)}
+	 * 
+	 * @param subject packed corners of the polygon to be clipped
+	 * @param clip packed corners of the polygon clipping it
+	 * @return true if the intersection has a positive area
+	 */
+	public boolean clip(double[] subject, double[] clip){
+		int n = subject.length;
+		ensureCapacity(n+2);
+		System.arraycopy(subject, 0, result, 0, n);
+		cornerCount = n/2;
+		area = 0;
+		
+		int clipLength = clip.length;
+		if(cornerCount == 0 || clipLength == 0) return false;
+		refX = subject[0];
+		refY = subject[1];
+		
+		for(int e = 0; e < clipLength && cornerCount > 0; e += 2){
+			int next = (e+2 == clipLength)? 0 : e+2;
+			summing = next == 0;
+			clipEdge(clip[e], clip[e+1], clip[next]-clip[e], clip[next+1]-clip[e+1]);
+		}
+		
+		if(cornerCount == 0) return false;
+		
+		closeSums();
+		
+		area = cross/2;
+		if(!(area > 0)){
+			area = 0;
+			return false;
+		}
+		centerX = refX + momentX/(3*cross);
+		centerY = refY + momentY/(3*cross);
+		return true;
+	}
+	
+	/**
+	 * Keeps the part of the current result to the left of the line through (ox, oy) along (dx, dy)
+	 */
+	private void clipEdge(double ox, double oy, double dx, double dy){
+		ensureCapacity(2*cornerCount+2);
+		double[] in = result, out = spare;
+		int n = 2*cornerCount;
+		int outLength = 0;
+		cross = momentX = momentY = 0;
+		
+		double px = in[n-2], py = in[n-1];
+		double pSide = (px-ox)*dy-(py-oy)*dx;
+		for(int i = 0; i < n; i += 2){
+			double cx = in[i], cy = in[i+1];
+			double cSide = (cx-ox)*dy-(cy-oy)*dx;
+			
+			if((pSide > 0 && cSide < 0) || (pSide < 0 && cSide > 0)){
+				// crossing the edge
+				double t = pSide/(pSide-cSide);
+				double ix = px+(cx-px)*t, iy = py+(cy-py)*t;
+				out[outLength++] = ix;
+				out[outLength++] = iy;
+				if(summing) addToSums(ix, iy, outLength);
+			}
+			if(cSide <= 0){
+				out[outLength++] = cx;
+				out[outLength++] = cy;
+				if(summing) addToSums(cx, cy, outLength);
+			}
+			
+			px = cx; py = cy;
+			pSide = cSide;
+		}
+		
+		spare = in;
+		result = out;
+		cornerCount = outLength/2;
+	}
+	
+	/**
+	 * adds the edge from the previous corner to (x, y) to the sums
+	 * @param length length of the output after adding (x, y)
+	 */
+	private void addToSums(double x, double y, int length){
+		x -= refX;
+		y -= refY;
+		if(length == 2){
+			firstX = x;
+			firstY = y;
+		}else{
+			double c = lastX*y - x*lastY;
+			cross += c;
+			momentX += (lastX+x)*c;
+			momentY += (lastY+y)*c;
+		}
+		lastX = x;
+		lastY = y;
+	}
+	
+	/**
+	 * adds the closing edge from the last corner back to the first
+	 */
+	private void closeSums(){
+		double x = firstX, y = firstY;
+		double c = lastX*y - x*lastY;
+		cross += c;
+		momentX += (lastX+x)*c;
+		momentY += (lastY+y)*c;
+	}
+	
+	private void ensureCapacity(int length){
+		if(result.length < length){
+			double[] grown = new double[Math.max(length, result.length*2)];
+			System.arraycopy(result, 0, grown, 0, 2*cornerCount);
+			result = grown;
+		}
+		if(spare.length < result.length)
+			spare = new double[result.length];
+	}
+	
+	/**
+	 * @return the amount of corners of the last intersection
+	 */
+	public int getCornerCount(){
+		return cornerCount;
+	}
+	
+	/**
+	 * @return the area of the last intersection, 0 if it was empty
+	 */
+	public double getArea(){
+		return area;
+	}
+	
+	public double getCenterOfMassX(){
+		return centerX;
+	}
+	
+	public double getCenterOfMassY(){
+		return centerY;
+	}
+	
+	/**
+	 * @return the corners of the last intersection, newly allocated
+	 */
+	public Vec2[] getCorners(){
+		Vec2[] corners = new Vec2[cornerCount];
+		for(int i = 0; i < cornerCount; i++)
+			corners[i] = new Vec2(result[2*i], result[2*i+1]);
+		return corners;
+	}
+}
@@ -123,6 +123,72 @@ public interface ConvexPolygon extends Convex, Polygon{
 		return directions;
 	}
 
+	/**
+	 * returns the corners of this polygon packed as {x0, y0, x1, y1, ...}, the edges between them are it's SAT directions<br><br>
+	 * 
+	 * The narrowphase calls this for every pair it checks, so it should not allocate. This default packs the corners anew on every call,
+	 * {@link SimpleConvexPolygon} and {@link Triangle}, and with them every polygon of the engine, pack them once when they are made.
+	 * Other implementations should do the same.
+	 * @return the packed corners, must not be modified
+	 */
+	public default double[] getPackedCorners(){
+		return SeparatingAxis.pack(getCorners());
+	}
+	
+	@Override
+	public default Vec2 getSupport(Vec2 direction){
+		double[] corners = getPackedCorners();
+		int best = getSupportIndex(corners, direction.x, direction.y);
+		return new Vec2(corners[best], corners[best+1]);
+	}
+	
+	/**
+	 * Finds the support point of a polygon without allocating, see {@link #getSupport(Vec2)}
+	 * @param corners packed corners of the polygon, see {@link #getPackedCorners()}
+	 * @return the index of the x coordinate of the corner furthest along (dx, dy)
+	 */
+	public static int getSupportIndex(double[] corners, double dx, double dy){
+		int best = 0;
+		double bestValue = dx*corners[0]+dy*corners[1];
+		for(int i = 2; i < corners.length; i += 2){
+			double value = dx*corners[i]+dy*corners[i+1];
+			if(value > bestValue){
+				bestValue = value;
+				best = i;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Identical to {@link Convex#getNearestExit(Convex)}, but uses {@link SeparatingAxis} if other is also a polygon.<br>
+	 * Circles and rounded polygons are tested in closed form, see {@link Circle#collide(Circle, double[], Contact)}
+	 * and {@link RoundedPolygon#collide(double[], double, double[], double, Contact)}
+	 */
+	@Override
+	public default Vec2 getNearestExit(Convex other){
+		if(other instanceof Circle || other instanceof RoundedPolygon){
+			Vec2 exit = other.getNearestExit(this);
+			return (exit == null)? null : exit.neg();
+		}
+		if(!(other instanceof ConvexPolygon)) return Convex.super.getNearestExit(other);
+		
+		SeparatingAxis.Result result = new SeparatingAxis.Result();
+		if(!SeparatingAxis.nearestExit(getPackedCorners(), ((ConvexPolygon) other).getPackedCorners(), result)) return null;
+		return result.toVec2();
+	}
+	
+	/**
+	 * Identical to {@link Convex#intersects(Convex)}, but uses {@link SeparatingAxis} if other is also a polygon
+	 */
+	@Override
+	public default boolean intersects(Convex other){
+		if(other instanceof Circle || other instanceof RoundedPolygon) return other.intersects(this);
+		if(!(other instanceof ConvexPolygon)) return Convex.super.intersects(other);
+		
+		return SeparatingAxis.intersects(getPackedCorners(), ((ConvexPolygon) other).getPackedCorners());
+	}
+	
 	@Override
 	public default List<? extends ConvexPolygon> convexDecomposition() {
 		return Arrays.asList(new ConvexPolygon[]{this});
@@ -141,6 +207,8 @@ public interface ConvexPolygon extends Convex, Polygon{
 
 	@Override
 	public default Convex intersection(Convex other) {
+		if(other instanceof ConvexPolygon) return intersection((ConvexPolygon) other);
+		
 		Vec2[] corners = getCorners();
 		Vec2 curCorner = corners[corners.length-1];
 		Convex currentConv = other;
@@ -154,17 +222,12 @@ public interface ConvexPolygon extends Convex, Polygon{
 		return currentConv;
 	}
 	
+	/**
+	 * Slices other by every edge of this polygon, with the {@link ConvexClipper} of the current thread
+	 */
 	public default ConvexPolygon intersection(ConvexPolygon other){
-		Vec2[] corners = getCorners();
-		Vec2 curCorner = corners[corners.length-1];
-		ConvexPolygon currentConv = other;
-		for(int i = 0; i < corners.length; i++){
-			Vec2 next = corners[i];
-			Vec2 sliceOrigin = curCorner;
-			Vec2 sliceDirection = next.subtract(curCorner);
-			currentConv = currentConv.leftSlice(sliceOrigin, sliceDirection);
-			curCorner = next;
-		}
-		return currentConv;
+		ConvexClipper clipper = ConvexClipper.get();
+		clipper.clip(other.getPackedCorners(), getPackedCorners());
+		return new SimpleConvexPolygon(clipper.getCorners());
 	}
 }
@@ -0,0 +1,416 @@
+package physics2D.geom;
+
+import java.util.Arrays;
+
+import physics2D.math.Vec2;
+
+/**
+ * Gilbert-Johnson-Keerthi distance query between two convex shapes, with the Expanding Polytope Algorithm for the penetration
+ * of overlapping shapes. Both only need {@link Convex#getSupport(Vec2)}, so their cost grows with the amount of corners,
+ * instead of with the square of it like the SAT.<br><br>
+ * 
+ * Both work on the Minkowski difference {@code a - b}, which contains the origin if and only if a and b overlap.
+ * GJK walks a simplex of at most 3 points of it towards the origin. If the shapes are separated, the point of the simplex closest to
+ * the origin gives the distance and the closest points. If the simplex encloses the origin, EPA grows it into a polygon until it's
+ * edge closest to the origin lies on the boundary of the difference, which gives the penetration depth and normal.<br><br>
+ * 
+ * A query holds state, so every thread needs it's own.
+ */
+public final class GJK {
+	
+	private static final int MAX_ITERATIONS = 64;
+	/** relative progress below which GJK and EPA are considered converged */
+	private static final double TOLERANCE = 1E-10;
+	
+	private Convex a, b;
+	
+	// simplex, points of a-b and the points of a and b they were made of
+	private final double[] wx = new double[3], wy = new double[3];
+	private final double[] ax = new double[3], ay = new double[3];
+	private final double[] bx = new double[3], by = new double[3];
+	private final double[] lambda = new double[3];
+	private int count;
+	
+	// polytope of EPA, counterclockwise
+	private double[] px = new double[16], py = new double[16];
+	private double[] pax = new double[16], pay = new double[16];
+	private double[] pbx = new double[16], pby = new double[16];
+	private int polytopeSize;
+	
+	// support point found by support()
+	private double supportX, supportY, supportAX, supportAY, supportBX, supportBY;
+	// support point of one shape, found by shapeSupport()
+	private double shapeSupportX, shapeSupportY;
+	
+	private boolean intersecting;
+	private double distance;
+	private double normalX, normalY;
+	private double pointAX, pointAY, pointBX, pointBY;
+	
+	/**
+	 * Finds out if {@code a} and {@code b} overlap, and either their distance and closest points or their penetration depth
+	 * 
+	 * @return true if the shapes overlap
+	 */
+	public boolean query(Convex a, Convex b){
+		this.a = a;
+		this.b = b;
+		
+		count = 0;
+		support(1.0, 0.0);
+		push();
+		lambda[0] = 1.0;
+		double vx = wx[0], vy = wy[0];
+		
+		boolean enclosed = false;
+		for(int iteration = 0; iteration < MAX_ITERATIONS; iteration++){
+			double vv = vx*vx+vy*vy;
+			if(vv <= TOLERANCE*TOLERANCE*scale()){
+				enclosed = true;
+				break;
+			}
+			
+			support(-vx, -vy);
+			double vw = vx*supportX+vy*supportY;
+			if(vv - vw <= TOLERANCE*vv || isInSimplex(supportX, supportY)) break;
+			
+			push();
+			if(!solveSimplex()){
+				enclosed = true;
+				break;
+			}
+			
+			vx = 0; vy = 0;
+			for(int i = 0; i < count; i++){
+				vx += lambda[i]*wx[i];
+				vy += lambda[i]*wy[i];
+			}
+		}
+		
+		if(!enclosed){
+			intersecting = false;
+			pointAX = 0; pointAY = 0; pointBX = 0; pointBY = 0;
+			for(int i = 0; i < count; i++){
+				pointAX += lambda[i]*ax[i];
+				pointAY += lambda[i]*ay[i];
+				pointBX += lambda[i]*bx[i];
+				pointBY += lambda[i]*by[i];
+			}
+			distance = Math.sqrt(vx*vx+vy*vy);
+			normalX = -vx/distance;
+			normalY = -vy/distance;
+			return false;
+		}
+		
+		intersecting = true;
+		expandPolytope();
+		return true;
+	}
+	
+	/**
+	 * Finds the point of the Minkowski difference furthest along (dx, dy)
+	 */
+	private void support(double dx, double dy){
+		shapeSupport(a, dx, dy);
+		supportAX = shapeSupportX; supportAY = shapeSupportY;
+		shapeSupport(b, -dx, -dy);
+		supportBX = shapeSupportX; supportBY = shapeSupportY;
+		supportX = supportAX-supportBX;
+		supportY = supportAY-supportBY;
+	}
+	
+	/**
+	 * Finds the same point as {@link Convex#getSupport(Vec2)} into shapeSupportX and shapeSupportY.
+	 * Polygons, circles and rounded polygons are read directly, so a query doesn't allocate for the shapes of the engine
+	 */
+	private void shapeSupport(Convex shape, double dx, double dy){
+		if(shape instanceof ConvexPolygon){
+			double[] corners = ((ConvexPolygon) shape).getPackedCorners();
+			int best = ConvexPolygon.getSupportIndex(corners, dx, dy);
+			shapeSupportX = corners[best]; shapeSupportY = corners[best+1];
+		}else if(shape instanceof RoundedPolygon){
+			RoundedPolygon rounded = (RoundedPolygon) shape;
+			double[] corners = rounded.core.getPackedCorners();
+			int best = ConvexPolygon.getSupportIndex(corners, dx, dy);
+			shapeSupportX = corners[best]; shapeSupportY = corners[best+1];
+			double length = Math.sqrt(dx*dx+dy*dy);
+			if(length != 0){
+				shapeSupportX += dx*(rounded.radius/length);
+				shapeSupportY += dy*(rounded.radius/length);
+			}
+		}else if(shape instanceof Circle){
+			Circle circle = (Circle) shape;
+			double length = Math.sqrt(dx*dx+dy*dy);
+			if(length == 0){
+				shapeSupportX = circle.center.x+circle.radius; shapeSupportY = circle.center.y;
+			}else{
+				shapeSupportX = circle.center.x+dx*(circle.radius/length); shapeSupportY = circle.center.y+dy*(circle.radius/length);
+			}
+		}else{
+			Vec2 p = shape.getSupport(new Vec2(dx, dy));
+			shapeSupportX = p.x; shapeSupportY = p.y;
+		}
+	}
+	
+	/**
+	 * @return the squared size of the difference of both shapes so far, to make tolerances independent of scale
+	 */
+	private double scale(){
+		double max = 0;
+		for(int i = 0; i < count; i++)
+			max = Math.max(max, wx[i]*wx[i]+wy[i]*wy[i]);
+		return Math.max(max, 1E-300);
+	}
+	
+	private boolean isInSimplex(double x, double y){
+		for(int i = 0; i < count; i++)
+			if(wx[i] == x && wy[i] == y) return true;
+		return false;
+	}
+	
+	private void push(){
+		wx[count] = supportX; wy[count] = supportY;
+		ax[count] = supportAX; ay[count] = supportAY;
+		bx[count] = supportBX; by[count] = supportBY;
+		count++;
+	}
+	
+	/**
+	 * Moves simplex point from to index to
+	 */
+	private void move(int from, int to){
+		wx[to] = wx[from]; wy[to] = wy[from];
+		ax[to] = ax[from]; ay[to] = ay[from];
+		bx[to] = bx[from]; by[to] = by[from];
+	}
+	
+	/**
+	 * Reduces the simplex to the smallest part containing it's point closest to the origin, and sets lambda to that point
+	 * @return false if the simplex is a triangle containing the origin
+	 */
+	private boolean solveSimplex(){
+		if(count == 2){
+			solveSegment(0, 1);
+			return true;
+		}
+		
+		// triangle, the origin is inside if it is on the inner side of all edges
+		double area = cross(wx[1]-wx[0], wy[1]-wy[0], wx[2]-wx[0], wy[2]-wy[0]);
+		double u0 = cross(wx[1], wy[1], wx[2], wy[2]);
+		double u1 = cross(wx[2], wy[2], wx[0], wy[0]);
+		double u2 = cross(wx[0], wy[0], wx[1], wy[1]);
+		if((area > 0 && u0 >= 0 && u1 >= 0 && u2 >= 0) || (area < 0 && u0 <= 0 && u1 <= 0 && u2 <= 0))
+			return false;
+		
+		// otherwise the closest point is on one of the edges, the newest point 2 is always part of it
+		double d02 = segmentDistanceSquared(0, 2), d12 = segmentDistanceSquared(1, 2);
+		if(d02 >= d12)
+			move(1, 0);
+		move(2, 1);
+		count = 2;
+		solveSegment(0, 1);
+		return true;
+	}
+	
+	/**
+	 * Sets lambda to the point of the segment between simplex points i and j closest to the origin, dropping a point if it isn't needed
+	 */
+	private void solveSegment(int i, int j){
+		double t = segmentParameter(i, j);
+		if(t <= 0 || t >= 1){
+			move((t <= 0)? i : j, 0);
+			count = 1;
+			lambda[0] = 1;
+		}else{
+			lambda[i] = 1-t;
+			lambda[j] = t;
+		}
+	}
+	
+	private double segmentParameter(int i, int j){
+		double ex = wx[j]-wx[i], ey = wy[j]-wy[i];
+		double ee = ex*ex+ey*ey;
+		if(ee == 0) return 0;
+		return -(wx[i]*ex+wy[i]*ey)/ee;
+	}
+	
+	private double segmentDistanceSquared(int i, int j){
+		double t = Math.max(0, Math.min(1, segmentParameter(i, j)));
+		double x = wx[i]+(wx[j]-wx[i])*t, y = wy[i]+(wy[j]-wy[i])*t;
+		return x*x+y*y;
+	}
+	
+	/**
+	 * Grows the simplex around the origin into a polygon until the edge closest to the origin is on the edge of the Minkowski difference
+	 */
+	private void expandPolytope(){
+		completeTriangle();
+		if(count < 3){
+			// the difference is flat, the shapes only touch
+			distance = 0;
+			setNormalAndPoints(0, (count == 2)? 1 : 0);
+			return;
+		}
+		
+		polytopeSize = 0;
+		boolean counterClockwise = cross(wx[1]-wx[0], wy[1]-wy[0], wx[2]-wx[0], wy[2]-wy[0]) > 0;
+		for(int i = 0; i < 3; i++){
+			int s = counterClockwise? i : 2-i;
+			insertPolytopePoint(polytopeSize, wx[s], wy[s], ax[s], ay[s], bx[s], by[s]);
+		}
+		
+		int closest = 0;
+		for(int iteration = 0; iteration < MAX_ITERATIONS; iteration++){
+			closest = 0;
+			double closestDistance = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < polytopeSize; i++){
+				int j = (i+1 == polytopeSize)? 0 : i+1;
+				double ex = px[j]-px[i], ey = py[j]-py[i];
+				double length = Math.sqrt(ex*ex+ey*ey);
+				if(length == 0) continue;
+				double d = (ey*px[i]-ex*py[i])/length;
+				if(d < closestDistance){
+					closestDistance = d;
+					closest = i;
+				}
+			}
+			
+			int j = (closest+1 == polytopeSize)? 0 : closest+1;
+			double ex = px[j]-px[closest], ey = py[j]-py[closest];
+			double length = Math.sqrt(ex*ex+ey*ey);
+			double nx = ey/length, ny = -ex/length;
+			
+			support(nx, ny);
+			double supportDistance = nx*supportX+ny*supportY;
+			if(supportDistance - closestDistance <= TOLERANCE*Math.max(1.0, Math.abs(supportDistance)) || isInPolytope(supportX, supportY))
+				break;
+			
+			insertPolytopePoint(closest+1, supportX, supportY, supportAX, supportAY, supportBX, supportBY);
+		}
+		
+		int j = (closest+1 == polytopeSize)? 0 : closest+1;
+		double ex = px[j]-px[closest], ey = py[j]-py[closest];
+		double length = Math.sqrt(ex*ex+ey*ey);
+		normalX = ey/length;
+		normalY = -ex/length;
+		distance = normalX*px[closest]+normalY*py[closest];
+		
+		double ee = ex*ex+ey*ey;
+		double t = Math.max(0, Math.min(1, -(px[closest]*ex+py[closest]*ey)/ee));
+		pointAX = pax[closest]+(pax[j]-pax[closest])*t;
+		pointAY = pay[closest]+(pay[j]-pay[closest])*t;
+		pointBX = pbx[closest]+(pbx[j]-pbx[closest])*t;
+		pointBY = pby[closest]+(pby[j]-pby[closest])*t;
+	}
+	
+	/**
+	 * Adds points to a simplex which reached the origin before it became a triangle
+	 */
+	private void completeTriangle(){
+		if(count == 1){
+			double dx = -wx[0], dy = -wy[0];
+			if(dx == 0 && dy == 0) dx = 1;
+			support(dx, dy);
+			if(!isInSimplex(supportX, supportY)) push();
+			else{
+				support(-dx, -dy);
+				if(!isInSimplex(supportX, supportY)) push();
+			}
+		}
+		if(count == 2){
+			double ex = wx[1]-wx[0], ey = wy[1]-wy[0];
+			support(-ey, ex);
+			if(cross(ex, ey, supportX-wx[0], supportY-wy[0]) != 0){
+				push();
+				return;
+			}
+			support(ey, -ex);
+			if(cross(ex, ey, supportX-wx[0], supportY-wy[0]) != 0)
+				push();
+		}
+	}
+	
+	private void setNormalAndPoints(int i, int j){
+		double ex = wx[j]-wx[i], ey = wy[j]-wy[i];
+		double length = Math.sqrt(ex*ex+ey*ey);
+		if(length == 0){
+			normalX = 1;
+			normalY = 0;
+		}else{
+			normalX = ey/length;
+			normalY = -ex/length;
+		}
+		pointAX = ax[i]; pointAY = ay[i];
+		pointBX = bx[i]; pointBY = by[i];
+	}
+	
+	private boolean isInPolytope(double x, double y){
+		for(int i = 0; i < polytopeSize; i++)
+			if(px[i] == x && py[i] == y) return true;
+		return false;
+	}
+	
+	private void insertPolytopePoint(int index, double x, double y, double pointAX, double pointAY, double pointBX, double pointBY){
+		if(polytopeSize == px.length){
+			int capacity = px.length*2;
+			px = Arrays.copyOf(px, capacity); py = Arrays.copyOf(py, capacity);
+			pax = Arrays.copyOf(pax, capacity); pay = Arrays.copyOf(pay, capacity);
+			pbx = Arrays.copyOf(pbx, capacity); pby = Arrays.copyOf(pby, capacity);
+		}
+		int moved = polytopeSize-index;
+		System.arraycopy(px, index, px, index+1, moved); System.arraycopy(py, index, py, index+1, moved);
+		System.arraycopy(pax, index, pax, index+1, moved); System.arraycopy(pay, index, pay, index+1, moved);
+		System.arraycopy(pbx, index, pbx, index+1, moved); System.arraycopy(pby, index, pby, index+1, moved);
+		px[index] = x; py[index] = y;
+		pax[index] = pointAX; pay[index] = pointAY;
+		pbx[index] = pointBX; pby[index] = pointBY;
+		polytopeSize++;
+	}
+	
+	private static double cross(double x1, double y1, double x2, double y2){
+		return x1*y2-y1*x2;
+	}
+	
+	/**
+	 * @return true if the shapes of the last query overlap
+	 */
+	public boolean isIntersecting(){
+		return intersecting;
+	}
+	
+	/**
+	 * @return the distance between the shapes if they are separated, or the penetration depth if they overlap
+	 */
+	public double getDistance(){
+		return distance;
+	}
+	
+	/**
+	 * @return unit vector pointing from a to b, a has to move along -normal to exit b
+	 */
+	public Vec2 getNormal(){
+		return new Vec2(normalX, normalY);
+	}
+	
+	/**
+	 * @return the closest point of a to b if they are separated, the deepest point of a in b if they overlap
+	 */
+	public Vec2 getPointA(){
+		return new Vec2(pointAX, pointAY);
+	}
+	
+	/**
+	 * @return the closest point of b to a if they are separated, the deepest point of b in a if they overlap
+	 */
+	public Vec2 getPointB(){
+		return new Vec2(pointBX, pointBY);
+	}
+	
+	/**
+	 * @return the same vector as {@link Convex#getNearestExit(Convex) a.getNearestExit(b)}, b has to move along it to exit a.
+	 * Only valid if the shapes overlap
+	 */
+	public Vec2 getExit(){
+		return new Vec2(normalX*distance, normalY*distance);
+	}
+}
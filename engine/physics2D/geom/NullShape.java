@@ -47,7 +47,7 @@ public final class NullShape implements Shape, Convex {
 	}
 
 	@Override
-	public Shape transformToCFrame(CFrame frame) {
+	public NullShape transformToCFrame(CFrame frame) {
 		return this;
 	}
 
@@ -61,6 +61,11 @@ public final class NullShape implements Shape, Convex {
 		return null;
 	}
 
+	@Override
+	public Vec2 getSupport(Vec2 direction) {
+		return null;
+	}
+	
 	@Override
 	public Vec2[] getSATDirections() {
 		return new Vec2[0];
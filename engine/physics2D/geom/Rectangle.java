@@ -1,6 +1,7 @@
 package physics2D.geom;
 
 import physics2D.math.CFrame;
+import physics2D.math.RotMat2;
 import physics2D.math.Vec2;
 
 public class Rectangle extends SimpleConvexPolygon {
@@ -27,6 +28,41 @@ public class Rectangle extends SimpleConvexPolygon {
 		this.height = height;
 	}
 	
+	/**
+	 * used by transformations, corners must be those of a width by height rectangle in the order of the constructors above
+	 */
+	private Rectangle(Vec2[] corners, double width, double height){
+		super(corners);
+		this.width = width;
+		this.height = height;
+	}
+	
+	@Override
+	public Rectangle transformToCFrame(CFrame frame){
+		return new Rectangle(Polygon.transformToCFrame(getCorners(), frame), width, height);
+	}
+	
+	@Override
+	public Rectangle translate(Vec2 offset){
+		return new Rectangle(Polygon.translate(getCorners(), offset), width, height);
+	}
+	
+	@Override
+	public Rectangle rotate(RotMat2 rotation){
+		return new Rectangle(Polygon.rotate(getCorners(), rotation), width, height);
+	}
+	
+	@Override
+	public Rectangle rotate(double angle){
+		return rotate(RotMat2.rotTransform(angle));
+	}
+	
+	@Override
+	public Rectangle scale(double factor){
+		// a negative factor turns the corners half a turn, the size stays positive
+		return new Rectangle(Polygon.scaled(getCorners(), factor), width*Math.abs(factor), height*Math.abs(factor));
+	}
+	
 	@Override
 	public double getArea() {
 		return width * height;
@@ -41,4 +77,86 @@ public class Rectangle extends SimpleConvexPolygon {
 	public String toString(){
 		return String.format("Rectangle(w=%.9f, h=%.9f)", width, height);
 	}
+	
+	/**
+	 * A rectangle as it's center, unit axes and half extents, the axis u is along it's width
+	 */
+	private static final class OrientedBox {
+		final double cx, cy, ux, uy, vx, vy, halfWidth, halfHeight;
+		
+		OrientedBox(Rectangle r){
+			// corner 0 is at (+w/2, +h/2), corner 1 at (-w/2, +h/2) and corner 2 at (-w/2, -h/2)
+			double[] c = r.getPackedCorners();
+			cx = (c[0]+c[4])/2;
+			cy = (c[1]+c[5])/2;
+			ux = (c[0]-c[2])/r.width;
+			uy = (c[1]-c[3])/r.width;
+			vx = (c[2]-c[4])/r.height;
+			vy = (c[3]-c[5])/r.height;
+			halfWidth = r.width/2;
+			halfHeight = r.height/2;
+		}
+		
+		/** half of the length of the projection of this box on (x, y), which must be normalized */
+		double radiusAlong(double x, double y){
+			return halfWidth*Math.abs(ux*x+uy*y) + halfHeight*Math.abs(vx*x+vy*y);
+		}
+	}
+	
+	/**
+	 * Finds the contact between two rectangles with the separating axis test of oriented boxes, which only needs the 2+2 axes of both boxes.<br>
+	 * The manifold is found on the face of the box owning the axis of least overlap, see {@link SeparatingAxis#manifold(double[], double[], SeparatingAxis.Result, Contact)}
+	 * 
+	 * @param a first rectangle, the normal points away from it
+	 * @param b second rectangle
+	 * @param contact receives the contact, it's axis is tested first. Axes 0 and 1 are the width and height of a, 2 and 3 those of b.
+	 * If separated, only the separating axis is set
+	 * @return true if the rectangles overlap
+	 */
+	public static boolean collide(Rectangle a, Rectangle b, Contact contact){
+		OrientedBox boxA = new OrientedBox(a), boxB = new OrientedBox(b);
+		double dx = boxB.cx-boxA.cx, dy = boxB.cy-boxA.cy;
+		
+		int firstAxis = contact.axis;
+		if(firstAxis >= 0 && firstAxis < 4 && overlap(boxA, boxB, firstAxis, dx, dy) <= 0) return false;
+		
+		double bestOverlap = Double.POSITIVE_INFINITY;
+		int bestAxis = -1;
+		for(int axis = 0; axis < 4; axis++){
+			double overlap = overlap(boxA, boxB, axis, dx, dy);
+			if(overlap <= 0){
+				contact.axis = axis;
+				return false;
+			}
+			if(overlap < bestOverlap){
+				bestOverlap = overlap;
+				bestAxis = axis;
+			}
+		}
+		
+		// the normal from a to b
+		OrientedBox reference = (bestAxis < 2)? boxA : boxB;
+		double nx = (bestAxis%2 == 0)? reference.ux : reference.vx, ny = (bestAxis%2 == 0)? reference.uy : reference.vy;
+		if(nx*dx+ny*dy < 0){
+			nx = -nx;
+			ny = -ny;
+		}
+		
+		contact.setNormal(nx, ny, bestOverlap);
+		if(bestAxis < 2)
+			SeparatingAxis.clipIncidentFace(a.getPackedCorners(), b.getPackedCorners(), nx, ny, false, contact);
+		else
+			SeparatingAxis.clipIncidentFace(b.getPackedCorners(), a.getPackedCorners(), -nx, -ny, true, contact);
+		contact.axis = bestAxis;
+		return true;
+	}
+	
+	/**
+	 * @return the overlap of both boxes along the given axis, not positive if the axis separates them
+	 */
+	private static double overlap(OrientedBox a, OrientedBox b, int axis, double dx, double dy){
+		OrientedBox owner = (axis < 2)? a : b;
+		double x = (axis%2 == 0)? owner.ux : owner.vx, y = (axis%2 == 0)? owner.uy : owner.vy;
+		return a.radiusAlong(x, y)+b.radiusAlong(x, y)-Math.abs(dx*x+dy*y);
+	}
 }
@@ -0,0 +1,378 @@
+package physics2D.geom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import physics2D.math.BoundingBox;
+import physics2D.math.CFrame;
+import physics2D.math.Range;
+import physics2D.math.RotMat2;
+import physics2D.math.Vec2;
+
+/**
+ * A convex polygon with a skin of {@code radius} around it, all points within {@code radius} of the core polygon.<br>
+ * The core may also be a segment of two corners, see {@link Capsule}.<br><br>
+ * 
+ * Collisions are found on the core geometry, the distance between both cores is offset by the radii,
+ * so a few corners and a radius replace the many corners otherwise needed for a rounded shape.
+ * Only when the cores themselves overlap does it fall back to {@link SeparatingAxis} on the cores,
+ * the skin acts as a contact margin which keeps that rare.<br><br>
+ * 
+ * The area, inertia and bounds are exact, the shape is only tessellated for drawing, and for the generic
+ * {@link #leftSlice(Vec2, Vec2)} and {@link #intersection(Convex)}.
+ */
+public class RoundedPolygon implements Convex {
+	
+	/** amount of corners used for a full turn when drawing the rounded corners */
+	private static final int DRAWING_SEGMENTS = 32;
+	
+	public final ConvexPolygon core;
+	public final double radius;
+	
+	private final double area;
+	private final double inertialArea;
+	private final Vec2 centerOfMass;
+	
+	public RoundedPolygon(ConvexPolygon core, double radius){
+		this.core = core;
+		this.radius = radius;
+		
+		// the shape is made of the core, a rectangle on every edge and a circle sector on every corner
+		Vec2[] corners = core.getCorners();
+		Vec2 ref = corners[0];
+		double totalArea = 0, momentX = 0, momentY = 0, inertia = 0;
+		
+		double coreArea = core.getArea();
+		if(coreArea > 0){
+			Vec2 coreCenter = core.getCenterOfMass().subtract(ref);
+			totalArea += coreArea;
+			momentX += coreArea*coreCenter.x;
+			momentY += coreArea*coreCenter.y;
+			inertia += Polygon.getInertialArea(corners, ref);
+		}
+		
+		int n = corners.length;
+		for(int i = 0; i < n; i++){
+			Vec2 prev = corners[(i+n-1)%n], cur = corners[i], next = corners[(i+1)%n];
+			Vec2 prevNormal = outwardNormal(prev, cur), normal = outwardNormal(cur, next);
+			
+			// rectangle on the edge from cur to next
+			double length = next.subtract(cur).length();
+			double rectArea = length*radius;
+			Vec2 rectCenter = Vec2.avg(cur, next).add(normal.mul(radius/2)).subtract(ref);
+			totalArea += rectArea;
+			momentX += rectArea*rectCenter.x;
+			momentY += rectArea*rectCenter.y;
+			inertia += rectArea*(length*length+radius*radius)/12 + rectArea*rectCenter.lengthSquared();
+			
+			// sector on cur, between the normals of both edges
+			double angle = cornerAngle(prevNormal, normal);
+			if(angle > 0){
+				double halfAngle = angle/2;
+				double sectorArea = angle*radius*radius/2;
+				double centerDistance = 2*radius*Math.sin(halfAngle)/(3*halfAngle);
+				Vec2 bisector = prevNormal.mul(Math.cos(halfAngle)).add(prevNormal.rotate90CounterClockwise().mul(Math.sin(halfAngle)));
+				Vec2 sectorCenter = cur.add(bisector.mul(centerDistance)).subtract(ref);
+				totalArea += sectorArea;
+				momentX += sectorArea*sectorCenter.x;
+				momentY += sectorArea*sectorCenter.y;
+				// inertia around the tip is r^4*angle/4, moved to the center of the sector and then to ref
+				inertia += radius*radius*radius*radius*angle/4 - sectorArea*centerDistance*centerDistance + sectorArea*sectorCenter.lengthSquared();
+			}
+		}
+		
+		Vec2 center = new Vec2(momentX/totalArea, momentY/totalArea);
+		this.area = totalArea;
+		this.centerOfMass = ref.add(center);
+		this.inertialArea = inertia - totalArea*center.lengthSquared();
+	}
+	
+	/**
+	 * used by transformations, which don't change the mass properties
+	 */
+	protected RoundedPolygon(ConvexPolygon core, double radius, double area, double inertialArea, Vec2 centerOfMass){
+		this.core = core;
+		this.radius = radius;
+		this.area = area;
+		this.inertialArea = inertialArea;
+		this.centerOfMass = centerOfMass;
+	}
+	
+	private static Vec2 outwardNormal(Vec2 from, Vec2 to){
+		return to.subtract(from).rotate90Clockwise().normalize();
+	}
+	
+	/**
+	 * @return the counterclockwise angle from {@code prevNormal} to {@code normal}, in [0, 2pi)
+	 */
+	private static double cornerAngle(Vec2 prevNormal, Vec2 normal){
+		double angle = Math.atan2(prevNormal.cross(normal), prevNormal.dot(normal));
+		return (angle < 0)? angle + 2*Math.PI : angle;
+	}
+	
+	@Override
+	public boolean containsPoint(Vec2 point){
+		return Circle.collide(new Circle(point, radius), core.getPackedCorners(), new Contact());
+	}
+	
+	@Override
+	public Vec2[] getDrawingVertexes(){
+		return tessellate().getCorners();
+	}
+	
+	private ConvexPolygon tessellate(){
+		Vec2[] corners = core.getCorners();
+		int n = corners.length;
+		List<Vec2> outline = new ArrayList<>();
+		for(int i = 0; i < n; i++){
+			Vec2 prev = corners[(i+n-1)%n], cur = corners[i], next = corners[(i+1)%n];
+			Vec2 prevNormal = outwardNormal(prev, cur);
+			double angle = cornerAngle(prevNormal, outwardNormal(cur, next));
+			int steps = (int) Math.ceil(angle/(2*Math.PI)*DRAWING_SEGMENTS);
+			for(int s = 0; s <= steps; s++)
+				outline.add(cur.add(new RotMat2(angle*s/steps).mul(prevNormal).mul(radius)));
+		}
+		return new SimpleConvexPolygon(outline.toArray(new Vec2[outline.size()]));
+	}
+	
+	@Override
+	public double getArea(){
+		return area;
+	}
+	
+	/**
+	 * @return the inertial area around the center of mass
+	 */
+	@Override
+	public double getInertialArea(){
+		return inertialArea;
+	}
+	
+	@Override
+	public Vec2 getCenterOfMass(){
+		return centerOfMass;
+	}
+	
+	@Override
+	public BoundingBox getBoundingBox(){
+		BoundingBox b = core.getBoundingBox();
+		return new BoundingBox(b.xmin-radius, b.ymin-radius, b.xmax+radius, b.ymax+radius);
+	}
+	
+	@Override
+	public Range getBoundsAlongDirection(Vec2 direction){
+		Range r = core.getBoundsAlongDirection(direction);
+		double skin = radius*direction.length();
+		return new Range(r.min-skin, r.max+skin);
+	}
+	
+	@Override
+	public Vec2 getSupport(Vec2 direction){
+		double length = direction.length();
+		Vec2 support = core.getSupport(direction);
+		if(length == 0) return support;
+		return support.add(direction.mul(radius/length));
+	}
+	
+	/**
+	 * The directions of the drawing polygon, the shape itself never needs them, see {@link #getNearestExit(Convex)}
+	 */
+	@Override
+	public Vec2[] getSATDirections(){
+		return tessellate().getSATDirections();
+	}
+	
+	/**
+	 * Exact for circles, polygons and rounded polygons, other shapes fall back to {@link GJK}
+	 */
+	@Override
+	public Vec2 getNearestExit(Convex other){
+		Contact contact = new Contact();
+		if(!CollisionDispatch.collide(this, other, contact)) return null;
+		return contact.getExit();
+	}
+	
+	@Override
+	public boolean intersects(Convex other){
+		return CollisionDispatch.collide(this, other, new Contact());
+	}
+	
+	/**
+	 * Finds the contact between a circle and a rounded polygon, the circle's radius is added to the skin of the polygon
+	 * @param a the circle, the normal points away from it
+	 * @param b the rounded polygon
+	 * @param contact receives the contact, untouched if they don't touch
+	 * @return true if they overlap
+	 */
+	public static boolean collide(Circle a, RoundedPolygon b, Contact contact){
+		if(!Circle.collide(new Circle(a.center, a.radius+b.radius), b.core.getPackedCorners(), contact)) return false;
+		// the deepest point of b lies b.radius further back along the normal than that of it's core
+		contact.pointsX[0] -= contact.normalX*b.radius;
+		contact.pointsY[0] -= contact.normalY*b.radius;
+		return true;
+	}
+	
+	/**
+	 * Finds the contact between two rounded polygons given by their cores and radii, a radius of 0 gives a plain polygon
+	 * @param coreA packed corners of the first core, see {@link ConvexPolygon#getPackedCorners()}, the normal points away from it
+	 * @param radiusA skin radius of the first shape
+	 * @param coreB packed corners of the second core
+	 * @param radiusB skin radius of the second shape
+	 * @param contact receives the contact, untouched if they don't touch
+	 * @return true if the shapes overlap
+	 */
+	public static boolean collide(double[] coreA, double radiusA, double[] coreB, double radiusB, Contact contact){
+		double radii = radiusA+radiusB;
+		SeparatingAxis.Result result = new SeparatingAxis.Result();
+		if(!SeparatingAxis.contact(coreA, coreB, -1, result)){
+			// the closest points of two separated convex polygons always include a corner of one of them
+			double bestDistanceSquared = Double.POSITIVE_INFINITY;
+			double ax = 0, ay = 0, bx = 0, by = 0;
+			for(int i = 0; i < coreA.length; i += 2){
+				for(int j = 0; j < coreB.length; j += 2){
+					int nextJ = (j+2 == coreB.length)? 0 : j+2;
+					double t = closestOnSegment(coreA[i], coreA[i+1], coreB[j], coreB[j+1], coreB[nextJ], coreB[nextJ+1]);
+					double x = coreB[j]+(coreB[nextJ]-coreB[j])*t, y = coreB[j+1]+(coreB[nextJ+1]-coreB[j+1])*t;
+					double distanceSquared = (x-coreA[i])*(x-coreA[i])+(y-coreA[i+1])*(y-coreA[i+1]);
+					if(distanceSquared < bestDistanceSquared){
+						bestDistanceSquared = distanceSquared;
+						ax = coreA[i]; ay = coreA[i+1];
+						bx = x; by = y;
+					}
+				}
+			}
+			for(int j = 0; j < coreB.length; j += 2){
+				for(int i = 0; i < coreA.length; i += 2){
+					int nextI = (i+2 == coreA.length)? 0 : i+2;
+					double t = closestOnSegment(coreB[j], coreB[j+1], coreA[i], coreA[i+1], coreA[nextI], coreA[nextI+1]);
+					double x = coreA[i]+(coreA[nextI]-coreA[i])*t, y = coreA[i+1]+(coreA[nextI+1]-coreA[i+1])*t;
+					double distanceSquared = (x-coreB[j])*(x-coreB[j])+(y-coreB[j+1])*(y-coreB[j+1]);
+					if(distanceSquared < bestDistanceSquared){
+						bestDistanceSquared = distanceSquared;
+						ax = x; ay = y;
+						bx = coreB[j]; by = coreB[j+1];
+					}
+				}
+			}
+			if(bestDistanceSquared >= radii*radii) return false;
+			
+			double distance = Math.sqrt(bestDistanceSquared);
+			double nx = (bx-ax)/distance, ny = (by-ay)/distance;
+			double depth = radii-distance;
+			// halfway between the deepest point of a in b and that of b in a
+			double px = (ax+nx*radiusA + bx-nx*radiusB)/2, py = (ay+ny*radiusA + by-ny*radiusB)/2;
+			contact.set(nx, ny, depth, px, py);
+			return true;
+		}
+		
+		// the cores overlap, exit them along the shortest SAT axis and add the skins
+		double sign = (result.axis < SeparatingAxis.edgeCount(coreA))? 1 : -1;
+		double coreDepth = Math.sqrt(result.x*result.x+result.y*result.y);
+		double nx, ny;
+		if(coreDepth != 0){
+			nx = sign*result.x/coreDepth;
+			ny = sign*result.y/coreDepth;
+		}else{
+			// cores which just touch have no exit, the skins still overlap by their radii along the touching edge's normal
+			double[] corners = (result.axis < SeparatingAxis.edgeCount(coreA))? coreA : coreB;
+			int i = 2*((result.axis < SeparatingAxis.edgeCount(coreA))? result.axis : result.axis-SeparatingAxis.edgeCount(coreA));
+			int next = (i+2 == corners.length)? 0 : i+2;
+			double ex = corners[next]-corners[i], ey = corners[next+1]-corners[i+1];
+			double length = Math.hypot(ex, ey);
+			nx = -ey/length;
+			ny = ex/length;
+			// pointing from a to b
+			double cx = centroidX(coreB)-centroidX(coreA), cy = centroidY(coreB)-centroidY(coreA);
+			if(nx*cx+ny*cy < 0){
+				nx = -nx;
+				ny = -ny;
+			}
+		}
+		
+		int deepestA = support(coreA, nx, ny), deepestB = support(coreB, -nx, -ny);
+		double px = (coreA[deepestA]+nx*radiusA + coreB[deepestB]-nx*radiusB)/2;
+		double py = (coreA[deepestA+1]+ny*radiusA + coreB[deepestB+1]-ny*radiusB)/2;
+		contact.set(nx, ny, coreDepth+radii, px, py);
+		return true;
+	}
+	
+	private static double centroidX(double[] corners){
+		double sum = 0;
+		for(int i = 0; i < corners.length; i += 2) sum += corners[i];
+		return sum/(corners.length/2);
+	}
+	
+	private static double centroidY(double[] corners){
+		double sum = 0;
+		for(int i = 1; i < corners.length; i += 2) sum += corners[i];
+		return sum/(corners.length/2);
+	}
+	
+	/**
+	 * @return the parameter in [0, 1] of the point on the segment from (sx, sy) to (ex, ey) closest to (px, py)
+	 */
+	private static double closestOnSegment(double px, double py, double sx, double sy, double ex, double ey){
+		double dx = ex-sx, dy = ey-sy;
+		double lengthSquared = dx*dx+dy*dy;
+		if(lengthSquared == 0) return 0;
+		double t = ((px-sx)*dx+(py-sy)*dy)/lengthSquared;
+		return Math.max(0, Math.min(1, t));
+	}
+	
+	/**
+	 * @return index of the x coordinate of the corner furthest along (dx, dy)
+	 */
+	private static int support(double[] corners, double dx, double dy){
+		int best = 0;
+		double bestValue = corners[0]*dx+corners[1]*dy;
+		for(int i = 2; i < corners.length; i += 2){
+			double value = corners[i]*dx+corners[i+1]*dy;
+			if(value > bestValue){
+				bestValue = value;
+				best = i;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Approximated by slicing the drawing polygon
+	 */
+	@Override
+	public Convex leftSlice(Vec2 origin, Vec2 direction){
+		return tessellate().leftSlice(origin, direction);
+	}
+	
+	/**
+	 * Approximated by intersecting the drawing polygon
+	 */
+	@Override
+	public Convex intersection(Convex other){
+		return tessellate().intersection(other);
+	}
+	
+	@Override
+	public RoundedPolygon transformToCFrame(CFrame frame){
+		return new RoundedPolygon(core.transformToCFrame(frame), radius, area, inertialArea, frame.localToGlobal(centerOfMass));
+	}
+	
+	@Override
+	public RoundedPolygon translate(Vec2 offset){
+		return new RoundedPolygon(core.translate(offset), radius, area, inertialArea, centerOfMass.add(offset));
+	}
+	
+	@Override
+	public RoundedPolygon rotate(RotMat2 rotation){
+		return new RoundedPolygon(core.rotate(rotation), radius, area, inertialArea, rotation.mul(centerOfMass));
+	}
+	
+	@Override
+	public RoundedPolygon scale(double factor){
+		return new RoundedPolygon(core.scale(factor), radius*Math.abs(factor), area*factor*factor, inertialArea*factor*factor*factor*factor, centerOfMass.mul(factor));
+	}
+	
+	@Override
+	public String toString(){
+		return "RoundedPolygon(" + core + ", " + radius + ")";
+	}
+}
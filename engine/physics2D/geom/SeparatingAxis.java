@@ -0,0 +1,347 @@
+package physics2D.geom;
+
+import physics2D.math.Vec2;
+
+/**
+ * Separating Axis Theorem tests on packed polygon corners, see {@link ConvexPolygon#getPackedCorners()}.<br><br>
+ * 
+ * These do exactly the same arithmetic as {@link Convex#getNearestExit(Convex)} and {@link Convex#intersects(Convex)},
+ * so they give identical results, but they project the corners into local doubles instead of allocating
+ * the SAT directions, a {@link physics2D.math.Range} per projection and a {@link Vec2} per candidate exit.
+ */
+public final class SeparatingAxis {
+	
+	private SeparatingAxis(){}
+	
+	/**
+	 * Reusable holder for the exit vector found by {@link SeparatingAxis#nearestExit(double[], double[], Result)}
+	 * and {@link SeparatingAxis#contact(double[], double[], int, Result)}
+	 */
+	public static final class Result {
+		public double x, y;
+		/** the axis found by {@link SeparatingAxis#contact(double[], double[], int, Result) contact}, -1 if none */
+		public int axis;
+		
+		/** the best axis so far while searching, exits are compared on their length first and their rank second */
+		private double bestLengthSquared;
+		private int bestRank;
+		
+		public Vec2 toVec2(){
+			return new Vec2(x, y);
+		}
+	}
+	
+	/**
+	 * Finds the shortest distance the polygon {@code corners} would have to move along one of it's edges to exit {@code other}
+	 * 
+	 * @param corners packed corners of the moving polygon, it's edges are the SAT directions
+	 * @param other packed corners of the other polygon
+	 * @param result receives the exit vector, untouched if the polygons are separated
+	 * @return false if one of the edges of {@code corners} separates both polygons
+	 */
+	public static boolean nearestExit(double[] corners, double[] other, Result result){
+		int n = corners.length;
+		double bestX = Double.POSITIVE_INFINITY, bestY = Double.POSITIVE_INFINITY;
+		double bestLengthSquared = bestX*bestX+bestY*bestY;
+		
+		for(int i = 0; i < n; i += 2){
+			int next = (i+2 == n)? 0 : i+2;
+			double dx = corners[next]-corners[i];
+			double dy = corners[next+1]-corners[i+1];
+			
+			double min1 = dx*corners[1]-dy*corners[0], max1 = min1;
+			for(int j = 2; j < n; j += 2){
+				double value = dx*corners[j+1]-dy*corners[j];
+				min1 = Math.min(min1, value);
+				max1 = Math.max(max1, value);
+			}
+			double min2 = dx*other[1]-dy*other[0], max2 = min2;
+			for(int j = 2; j < other.length; j += 2){
+				double value = dx*other[j+1]-dy*other[j];
+				min2 = Math.min(min2, value);
+				max2 = Math.max(max2, value);
+			}
+			if(max2 < min1 || min2 > max1) return false;
+			
+			double d1 = max2-min1;
+			double d2 = max1-min2;
+			double w = (d1 < d2)? -d1:d2;
+			
+			double f = w/(dx*dx+dy*dy);
+			double depthX = dx*f, depthY = dy*f;
+			double lengthSquared = depthX*depthX+depthY*depthY;
+			if(lengthSquared < bestLengthSquared){
+				bestX = depthX;
+				bestY = depthY;
+				bestLengthSquared = lengthSquared;
+			}
+		}
+		
+		// rotate 90 degrees counterclockwise
+		result.x = -bestY;
+		result.y = bestX;
+		return true;
+	}
+	
+	/**
+	 * Full SAT between two polygons, which may start with the axis found last tick.<br>
+	 * Axis {@code i < edgeCount(corners)} is edge i of corners, the other axes are the edges of {@code other} after those.<br><br>
+	 * 
+	 * The contact is the same as that of comparing {@code nearestExit(corners, other)} to {@code nearestExit(other, corners)}
+	 * and taking the shortest, preferring the exit of other on a tie, whatever {@code firstAxis} is.
+	 * 
+	 * @param corners packed corners of the first polygon
+	 * @param other packed corners of the second polygon
+	 * @param firstAxis axis to test first, ignored if it is not an axis of these polygons
+	 * @param result if the polygons are separated it's axis is the first separating axis found. Otherwise it receives the shortest exit,
+	 * which moves corners out of other if it's axis is an edge of corners, and other out of corners if it isn't
+	 * @return false if the polygons are separated
+	 */
+	public static boolean contact(double[] corners, double[] other, int firstAxis, Result result){
+		int edges = corners.length/2;
+		int axisCount = edges + other.length/2;
+		
+		result.x = Double.POSITIVE_INFINITY;
+		result.y = Double.POSITIVE_INFINITY;
+		result.bestLengthSquared = Double.POSITIVE_INFINITY;
+		result.bestRank = -1;
+		result.axis = -1;
+		
+		if(firstAxis >= 0 && firstAxis < axisCount && !testAxis(corners, other, firstAxis, result)) return false;
+		for(int axis = 0; axis < axisCount; axis++)
+			if(axis != firstAxis && !testAxis(corners, other, axis, result)) return false;
+		
+		// rotate 90 degrees counterclockwise
+		double bestX = result.x;
+		result.x = -result.y;
+		result.y = bestX;
+		return true;
+	}
+	
+	/**
+	 * Projects both polygons on one axis of {@link #contact(double[], double[], int, Result) contact}, keeping the best exit in result
+	 * @return false if the axis separates the polygons
+	 */
+	private static boolean testAxis(double[] corners, double[] other, int axis, Result result){
+		int edges = corners.length/2;
+		double[] a = corners, b = other;
+		int edge = axis;
+		// other exits win ties from corners, and earlier edges win ties within a polygon, as in nearestExit
+		int rank = axis + other.length/2;
+		if(axis >= edges){
+			a = other;
+			b = corners;
+			edge = axis-edges;
+			rank = edge;
+		}
+		
+		int n = a.length;
+		int i = 2*edge;
+		int next = (i+2 == n)? 0 : i+2;
+		double dx = a[next]-a[i];
+		double dy = a[next+1]-a[i+1];
+		
+		double min1 = dx*a[1]-dy*a[0], max1 = min1;
+		for(int j = 2; j < n; j += 2){
+			double value = dx*a[j+1]-dy*a[j];
+			min1 = Math.min(min1, value);
+			max1 = Math.max(max1, value);
+		}
+		double min2 = dx*b[1]-dy*b[0], max2 = min2;
+		for(int j = 2; j < b.length; j += 2){
+			double value = dx*b[j+1]-dy*b[j];
+			min2 = Math.min(min2, value);
+			max2 = Math.max(max2, value);
+		}
+		if(max2 < min1 || min2 > max1){
+			result.axis = axis;
+			return false;
+		}
+		
+		double d1 = max2-min1;
+		double d2 = max1-min2;
+		double w = (d1 < d2)? -d1:d2;
+		
+		double f = w/(dx*dx+dy*dy);
+		double depthX = dx*f, depthY = dy*f;
+		double lengthSquared = depthX*depthX+depthY*depthY;
+		if(lengthSquared < result.bestLengthSquared || (lengthSquared == result.bestLengthSquared && rank < result.bestRank)){
+			result.x = depthX;
+			result.y = depthY;
+			result.bestLengthSquared = lengthSquared;
+			result.bestRank = rank;
+			result.axis = axis;
+		}
+		return true;
+	}
+	
+	/**
+	 * Builds the contact manifold of two polygons which {@link #contact(double[], double[], int, Result) contact} found touching.<br><br>
+	 * 
+	 * The edge of the polygon owning the axis of the exit is the reference face, the edge of the other polygon facing it the most is the incident face.
+	 * The incident face is clipped to the sides of the reference face, every remaining end below the reference face is a contact point.
+	 * These points lie on the incident face, inside both polygons.<br><br>
+	 * 
+	 * The feature id of a point holds the index of the reference edge, that of the incident edge and which end of the incident edge it is,
+	 * and whether the reference edge belongs to the second polygon.
+	 * 
+	 * @param corners packed corners of the first polygon, the normal points away from it
+	 * @param other packed corners of the second polygon
+	 * @param result the exit found by contact
+	 * @param contact receives the manifold
+	 * @return false if the exit has no length, the polygons just touch
+	 */
+	public static boolean manifold(double[] corners, double[] other, Result result, Contact contact){
+		double depth = Math.sqrt(result.x*result.x+result.y*result.y);
+		if(depth == 0) return false;
+		
+		// the exit of other out of corners is along the normal, that of corners out of other against it
+		double sign = (result.axis < edgeCount(corners))? 1 : -1;
+		double nx = sign*result.x/depth, ny = sign*result.y/depth;
+		contact.setNormal(nx, ny, depth);
+		if(sign > 0)
+			clipIncidentFace(corners, other, nx, ny, false, contact);
+		else
+			clipIncidentFace(other, corners, -nx, -ny, true, contact);
+		return true;
+	}
+	
+	/**
+	 * Adds the contact points of the incident face of {@code incident} on the reference face of {@code reference}
+	 * @param nx x of the normal pointing out of reference towards incident
+	 * @param ny y of the normal
+	 * @param flipped true if reference is the second shape of the contact, it is kept in the feature ids
+	 */
+	static void clipIncidentFace(double[] reference, double[] incident, double nx, double ny, boolean flipped, Contact contact){
+		// the reference face is the edge with the outward normal closest to the normal, corners are counterclockwise so (dy, -dx) points outward
+		int n = reference.length;
+		int ref = 0;
+		double best = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < n; i += 2){
+			int next = (i+2 == n)? 0 : i+2;
+			double dx = reference[next]-reference[i], dy = reference[next+1]-reference[i+1];
+			double dot = (dy*nx-dx*ny)/Math.sqrt(dx*dx+dy*dy);
+			if(dot > best){
+				best = dot;
+				ref = i;
+			}
+		}
+		int refNext = (ref+2 == n)? 0 : ref+2;
+		double r1x = reference[ref], r1y = reference[ref+1];
+		double tx = reference[refNext]-r1x, ty = reference[refNext+1]-r1y;
+		double length = Math.sqrt(tx*tx+ty*ty);
+		tx /= length;
+		ty /= length;
+		// normal of the reference face itself
+		double fx = ty, fy = -tx;
+		
+		// the incident face is the edge with the outward normal most opposed to it
+		int m = incident.length;
+		int inc = 0;
+		best = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < m; i += 2){
+			int next = (i+2 == m)? 0 : i+2;
+			double dx = incident[next]-incident[i], dy = incident[next+1]-incident[i+1];
+			double dot = (dy*fx-dx*fy)/Math.sqrt(dx*dx+dy*dy);
+			if(dot < best){
+				best = dot;
+				inc = i;
+			}
+		}
+		int incNext = (inc+2 == m)? 0 : inc+2;
+		double p1x = incident[inc], p1y = incident[inc+1];
+		double p2x = incident[incNext], p2y = incident[incNext+1];
+		
+		// clip it to the sides of the reference face
+		double s1 = (p1x-r1x)*tx+(p1y-r1y)*ty, s2 = (p2x-r1x)*tx+(p2y-r1y)*ty;
+		double t1 = 0, t2 = 1;
+		if(s1 != s2){
+			double ta = -s1/(s2-s1), tb = (length-s1)/(s2-s1);
+			t1 = Math.max(0, Math.min(ta, tb));
+			t2 = Math.min(1, Math.max(ta, tb));
+			if(t1 > t2) t1 = t2 = (t1+t2)/2;
+		}
+		
+		// keep the ends below the reference face, they lie in both polygons
+		double deepestX = 0, deepestY = 0, deepestSeparation = Double.POSITIVE_INFINITY;
+		int deepestEnd = 0;
+		for(int i = 0; i < 2; i++){
+			double t = (i == 0)? t1 : t2;
+			if(i == 1 && t2 == t1) break;
+			double qx = p1x+(p2x-p1x)*t, qy = p1y+(p2y-p1y)*t;
+			double separation = (qx-r1x)*fx+(qy-r1y)*fy;
+			if(separation < 0)
+				contact.addPoint(qx, qy, -separation, feature(ref, inc, i, flipped));
+			if(separation < deepestSeparation){
+				deepestSeparation = separation;
+				deepestX = qx;
+				deepestY = qy;
+				deepestEnd = i;
+			}
+		}
+		// rounding may leave no end below the face of polygons which barely touch, a point without depth would push with no direction
+		if(contact.pointCount == 0)
+			contact.addPoint(deepestX, deepestY, contact.depth, feature(ref, inc, deepestEnd, flipped));
+	}
+	
+	/**
+	 * packs the feature id of a clipped point, edges are given by the index of their first corner in the packed corners
+	 * @param end 0 for the end of the incident edge at it's first corner, 1 for the other end
+	 */
+	private static int feature(int referenceEdge, int incidentEdge, int end, boolean flipped){
+		return (flipped? 1 << 30 : 0) | (referenceEdge/2 & 0x7FFF) << 15 | (incidentEdge/2 & 0x3FFF) << 1 | end;
+	}
+	
+	/**
+	 * @return the amount of edges of the packed polygon
+	 */
+	public static int edgeCount(double[] corners){
+		return corners.length/2;
+	}
+	
+	/**
+	 * @return true if no edge of either polygon separates them
+	 */
+	public static boolean intersects(double[] corners, double[] other){
+		return !separatedByEdgeOf(corners, other) && !separatedByEdgeOf(other, corners);
+	}
+	
+	/**
+	 * @return true if one of the edges of {@code corners} separates both polygons
+	 */
+	private static boolean separatedByEdgeOf(double[] corners, double[] other){
+		int n = corners.length;
+		for(int i = 0; i < n; i += 2){
+			int next = (i+2 == n)? 0 : i+2;
+			double dx = corners[next]-corners[i];
+			double dy = corners[next+1]-corners[i+1];
+			
+			double min1 = dx*corners[1]-dy*corners[0], max1 = min1;
+			for(int j = 2; j < n; j += 2){
+				double value = dx*corners[j+1]-dy*corners[j];
+				min1 = Math.min(min1, value);
+				max1 = Math.max(max1, value);
+			}
+			double min2 = dx*other[1]-dy*other[0], max2 = min2;
+			for(int j = 2; j < other.length; j += 2){
+				double value = dx*other[j+1]-dy*other[j];
+				min2 = Math.min(min2, value);
+				max2 = Math.max(max2, value);
+			}
+			if(max2 < min1 || min2 > max1) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the corners as {x0, y0, x1, y1, ...}
+	 */
+	public static double[] pack(Vec2[] corners){
+		double[] packed = new double[corners.length*2];
+		for(int i = 0; i < corners.length; i++){
+			packed[2*i] = corners[i].x;
+			packed[2*i+1] = corners[i].y;
+		}
+		return packed;
+	}
+}
@@ -6,14 +6,21 @@ import physics2D.math.Vec2;
 
 public class SimpleConvexPolygon implements ConvexPolygon {
 	public final Vec2[] corners;
+	private final double[] packedCorners;
 	public SimpleConvexPolygon(Vec2[] polygon) {
 		this.corners = polygon;
+		this.packedCorners = SeparatingAxis.pack(polygon);
 	}
 	@Override
 	public Vec2[] getCorners() {
 		return corners;
 	}
 	
+	@Override
+	public double[] getPackedCorners() {
+		return packedCorners;
+	}
+	
 	@Override
 	public SimpleConvexPolygon leftSlice(Vec2 origin, Vec2 direction){
 		return SimpleConvexPolygon.leftSlice(getCorners(), origin, direction);
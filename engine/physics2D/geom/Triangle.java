@@ -6,11 +6,13 @@ import physics2D.math.Vec2;
 
 public class Triangle implements ConvexPolygon {
 	public final Vec2 v1, v2, v3;
+	private final double[] packedCorners;
 	
 	public Triangle(Vec2 v1, Vec2 v2, Vec2 v3){
 		this.v1 = v1;
 		this.v2 = v2;
 		this.v3 = v3;
+		this.packedCorners = new double[]{v1.x, v1.y, v2.x, v2.y, v3.x, v3.y};
 	}
 	
 	public double getArea() {
@@ -37,6 +39,11 @@ public class Triangle implements ConvexPolygon {
 		return String.format("Triangle(%s, %s, %s)", v1, v2, v3);
 	}
 
+	@Override
+	public double[] getPackedCorners() {
+		return packedCorners;
+	}
+	
 	@Override
 	public Vec2[] getSATDirections() {
 		return new Vec2[]{v2.subtract(v1), v3.subtract(v2), v1.subtract(v3)};
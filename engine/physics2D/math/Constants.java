@@ -8,6 +8,60 @@ public class Constants {
 	public static final double MAGNET_MOVEMENT_CANCEL_FACTOR = 500.0;
 	public static final double MAGNET_ROTATION_CANCEL_FACTOR = 1;
 	
+	/**
+	 * bodies which stay slower than SLEEP_VELOCITY for SLEEP_TIME seconds are put to sleep<br>
+	 * SLEEP_ANGULAR_VELOCITY limits the speed of the body's furthest point caused by it's rotation, so small bodies may spin faster
+	 */
+	public static final double SLEEP_VELOCITY = 0.05;
+	public static final double SLEEP_ANGULAR_VELOCITY = 0.05;
+	public static final double SLEEP_TIME = 0.5;
+	
+	/**
+	 * polygon pairs where one of the polygons has at least this many corners collide with GJK instead of SAT and clipping,
+	 * the SAT gets slow for many corners, and such polygons are nearly round so their contact is close to a single point anyway
+	 */
+	public static final int GJK_MIN_CORNERS = 16;
+	
+	/**
+	 * the contacts of a pair of bodies are reduced to at most MAX_CONTACTS_PER_PAIR points<br>
+	 * contacts closer than CONTACT_MERGE_DISTANCE with normals at most acos(CONTACT_MERGE_NORMAL_DOT) apart are merged into one
+	 */
+	public static final int MAX_CONTACTS_PER_PAIR = 4;
+	public static final double CONTACT_MERGE_DISTANCE = 0.01;
+	public static final double CONTACT_MERGE_NORMAL_DOT = 0.95;
+	
+	/**
+	 * default tolerances of the reuse of contacts, the distance and angle a body may move relative to the body it touches
+	 * before their contacts are found again, see {@link physics2D.physics.ContactCache}
+	 */
+	public static final double CONTACT_CACHE_TRANSLATION_TOLERANCE = 1E-4;
+	public static final double CONTACT_CACHE_ROTATION_TOLERANCE = 1E-3;
+	
+	/**
+	 * settings of {@link physics2D.physics.SolverMode#IMPULSE}<br>
+	 * IMPULSE_ITERATIONS is the default amount of passes over the contacts of an island per tick<br>
+	 * IMPULSE_BAUMGARTE_FACTOR is the part of the penetration deeper than IMPULSE_PENETRATION_SLOP removed per tick<br>
+	 * IMPULSE_FRICTION_FACTOR turns friction in PhysicalProperties into friction coefficients, which are clamped to IMPULSE_MAX_FRICTION_COEFFICIENT
+	 */
+	public static final int IMPULSE_ITERATIONS = 10;
+	public static final double IMPULSE_BAUMGARTE_FACTOR = 0.2;
+	public static final double IMPULSE_PENETRATION_SLOP = 0.001;
+	public static final double IMPULSE_FRICTION_FACTOR = 10.0;
+	public static final double IMPULSE_MAX_FRICTION_COEFFICIENT = 1.0;
+	
+	/**
+	 * settings of {@link physics2D.physics.SolverMode#XPBD}<br>
+	 * XPBD_SUBSTEPS is the default amount of substeps per tick<br>
+	 * XPBD_PENETRATION_SLOP is how deep contacts are left, so resting contacts are still found the next tick
+	 */
+	public static final int XPBD_SUBSTEPS = 6;
+	public static final double XPBD_PENETRATION_SLOP = 0.0005;
+	
+	/**
+	 * most iterations of the conjugate gradient solve of {@link physics2D.physics.World#implicitSprings}, an island with n bodies needs at most 3n
+	 */
+	public static final int IMPLICIT_SPRING_ITERATIONS = 50;
+	
 	private Constants() {}
 
 }
@@ -0,0 +1,87 @@
+package physics2D.physics;
+
+import java.util.Arrays;
+
+import physics2D.physics.broadphase.BodyPair;
+
+/**
+ * Remembers, for every pair of convex pieces of a {@link BodyPair}, the separating or shortest exit axis found last tick.<br><br>
+ * 
+ * Pieces which were separated usually stay separated along the same axis, and touching pieces which come apart usually do so
+ * along their shortest exit, so that axis is tested first and the SAT test stops right away if it still separates them.<br><br>
+ * 
+ * Pieces are identified by their leaf in the {@link PartTree} of their body, the pieces of {@link BodyPair#first} come first in the key.
+ * The cache lives in it's BodyPair, so it is dropped together with the pair when the bodies stop overlapping.
+ */
+public class AxisCache {
+	
+	private static final long EMPTY = -1L;
+	
+	private long[] keys = null;
+	private int[] axes;
+	private int mask;
+	private int size = 0;
+	
+	/** interacts the pieces of the bodies of the pair with the help of this cache */
+	final PartTree.PieceHandler handler = (part, piece, otherPart, otherPiece) -> part.interactWith(piece, otherPart, otherPiece, this);
+	
+	/**
+	 * @return the axis stored for the given pieces, -1 if there is none
+	 */
+	public int get(int leaf, int otherLeaf){
+		if(keys == null) return -1;
+		long key = key(leaf, otherLeaf);
+		int slot = findSlot(key);
+		return (keys[slot] == EMPTY)? -1 : axes[slot];
+	}
+	
+	public void put(int leaf, int otherLeaf, int axis){
+		if(keys == null) allocateTable(8);
+		long key = key(leaf, otherLeaf);
+		int slot = findSlot(key);
+		axes[slot] = axis;
+		if(keys[slot] == EMPTY){
+			keys[slot] = key;
+			size++;
+			if(size*2 > keys.length)
+				allocateTable(keys.length*2);
+		}
+	}
+	
+	/**
+	 * @return the amount of piece pairs with a stored axis
+	 */
+	public int size(){
+		return size;
+	}
+	
+	private static long key(int leaf, int otherLeaf){
+		return ((long) leaf << 32) | otherLeaf;
+	}
+	
+	private int findSlot(long key){
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while(keys[slot] != EMPTY && keys[slot] != key)
+			slot = (slot+1) & mask;
+		return slot;
+	}
+	
+	private void allocateTable(int capacity){
+		long[] oldKeys = keys;
+		int[] oldAxes = axes;
+		
+		keys = new long[capacity];
+		axes = new int[capacity];
+		mask = capacity-1;
+		Arrays.fill(keys, EMPTY);
+		
+		if(oldKeys == null) return;
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldKeys[i] != EMPTY){
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				axes[slot] = oldAxes[i];
+			}
+		}
+	}
+}
@@ -27,4 +27,33 @@ public class CoilPinConstraint extends PinConstraint {
 		
 		super.enact();
 	}
+	
+	/**
+	 * {@link #enact()} gives each part half the torque, see {@link RigidBody#actionRotaction(RigidBody, double)},
+	 * so the coil turns each part like a spring of half it's strength. Enacted implicitly and projected it keeps that stiffness
+	 * @return the torque per radian on each part
+	 */
+	public double getStiffness(){
+		return strength/2;
+	}
+	
+	@Override
+	void addSprings(ImplicitSpringSolver solver){
+		RotMat2 rot1 = part1.cframe.localToGlobal(attach1).rotation;
+		RotMat2 rot2 = part2.cframe.localToGlobal(attach2).rotation;
+		
+		solver.addAngle(part1, part2, rot2.mul(rot1.inv()).getAngle(), getStiffness(), 0);
+		
+		super.addSprings(solver);
+	}
+	
+	@Override
+	void project(XPBDSolver solver){
+		RotMat2 rot1 = part1.cframe.localToGlobal(attach1).rotation;
+		RotMat2 rot2 = part2.cframe.localToGlobal(attach2).rotation;
+		
+		solver.projectAngle(part1, part2, rot2.mul(rot1.inv()).getAngle(), 1/getStiffness());
+		
+		super.project(solver);
+	}
 }
@@ -14,8 +14,37 @@ public abstract class Constraint {
 		this.attach2 = attach2;
 	}
 	
+	/**
+	 * Applies the forces of this constraint to part1 and part2. The constraints of large islands are enacted in parallel, see {@link Islands},
+	 * so it may not change anything else. The only other change made while enacting it is the world waking part1 or part2 just before,
+	 * when the other part moves, which also only touches the parts of this constraint
+	 */
 	public abstract void enact();
 	
+	/**
+	 * @return true if this constraint is a spring, added to the {@link ImplicitSpringSolver} when {@link World#implicitSprings} is set. Otherwise it is enacted
+	 */
+	boolean supportsImplicit(){
+		return false;
+	}
+	
+	/**
+	 * Adds the springs of this constraint to the solver of it's island, instead of {@link #enact()} if {@link #supportsImplicit()}
+	 */
+	void addSprings(ImplicitSpringSolver solver){}
+	
+	/**
+	 * @return true if this constraint is projected every substep of {@link SolverMode#XPBD}, otherwise it is enacted as forces once per tick
+	 */
+	boolean supportsProjection(){
+		return false;
+	}
+	
+	/**
+	 * Moves the physicals to satisfy this constraint, called once every substep of {@link SolverMode#XPBD} if {@link #supportsProjection()}
+	 */
+	void project(XPBDSolver solver){}
+	
 	public CFrame getGlobalAttach1(){
 		return part1.getCFrame().localToGlobal(attach1);
 	}
@@ -0,0 +1,194 @@
+package physics2D.physics;
+
+import java.util.Arrays;
+
+import physics2D.Debug;
+import physics2D.math.CFrame;
+import physics2D.math.Vec2;
+import physics2D.physics.broadphase.BodyPair;
+
+/**
+ * Remembers the reduced contact points of a {@link BodyPair} found last time the narrowphase ran, together with the pose of
+ * {@link BodyPair#second} relative to {@link BodyPair#first} at that time.<br><br>
+ * 
+ * Bodies resting on eachother barely move relative to eachother, so their contacts hardly change from tick to tick.
+ * As long as the relative pose stays within the tolerances of the {@link World}, the remembered points are reused instead of
+ * running the narrowphase again. Each point is moved along with the small change in pose, and it's depth is corrected by how far
+ * that change pushes the bodies into or out of eachother along the normal. Points which come apart are dropped.<br><br>
+ * 
+ * Points and exits are stored local to the first body, so moving both bodies together doesn't invalidate them.
+ * Only pairs which were touching are reused, separated pairs are cheap already thanks to the {@link AxisCache}.<br><br>
+ * 
+ * The cache also keeps the impulses the {@link ImpulseSolver} found for every point, to warm start it next tick.
+ * When the narrowphase runs again, a new point takes over the impulses of the old point with the same {@link #featureKey(int, int, int) feature key}.
+ */
+public class ContactCache {
+	
+	/** pose of the second body relative to the first for which the points were found, null if there are none */
+	private CFrame relativeCFrame = null;
+	
+	private int count = 0;
+	private Part[] bases = new Part[4];
+	private Part[] intersectors = new Part[4];
+	private double[] pointsX = new double[4], pointsY = new double[4];
+	private double[] exitsX = new double[4], exitsY = new double[4];
+	private double[] shares = new double[4];
+	private long[] features = new long[4];
+	private double[] normalImpulses = new double[4], tangentImpulses = new double[4];
+	
+	/** the points before the narrowphase last ran, only their features and impulses are needed */
+	private int previousCount = 0;
+	private long[] previousFeatures = new long[4];
+	private double[] previousNormalImpulses = new double[4], previousTangentImpulses = new double[4];
+	
+	/**
+	 * Identifies a contact point from tick to tick, a collision of keys of different points only makes warm starting worse
+	 * @param leaf leaf of the piece of the first body in it's {@link PartTree}
+	 * @param otherLeaf leaf of the piece of the second body
+	 * @param feature feature id of the point, see {@link physics2D.geom.Contact#getFeature(int)}
+	 */
+	static long featureKey(int leaf, int otherLeaf, int feature){
+		return ((long) (leaf & 0xFFFF) << 47) | ((long) (otherLeaf & 0xFFFF) << 31) | (feature & 0x7FFFFFFFL);
+	}
+	
+	/**
+	 * @return the amount of remembered contact points
+	 */
+	public int size(){
+		return count;
+	}
+	
+	/**
+	 * Forgets the remembered points, the narrowphase runs again next time
+	 */
+	public void clear(){
+		Arrays.fill(bases, 0, count, null);
+		Arrays.fill(intersectors, 0, count, null);
+		count = 0;
+		previousCount = 0;
+		relativeCFrame = null;
+	}
+	
+	/**
+	 * Starts remembering the points found for the given relative pose, followed by {@link #add(RigidBody, Part, Part, Vec2, Vec2, double, long)} for every point
+	 */
+	void begin(CFrame relativeCFrame){
+		long[] features = previousFeatures;
+		double[] normalImpulses = previousNormalImpulses, tangentImpulses = previousTangentImpulses;
+		previousFeatures = this.features;
+		previousNormalImpulses = this.normalImpulses;
+		previousTangentImpulses = this.tangentImpulses;
+		this.features = features;
+		this.normalImpulses = normalImpulses;
+		this.tangentImpulses = tangentImpulses;
+		int count = this.count;
+		
+		clear();
+		previousCount = count;
+		this.relativeCFrame = relativeCFrame;
+	}
+	
+	/**
+	 * @param first first body of the pair, exit points away from it
+	 * @param point <i>global</i>
+	 * @param exit in global axes
+	 * @param feature key of the point, see {@link #featureKey(int, int, int)}
+	 * @return the index of the point
+	 */
+	int add(RigidBody first, Part base, Part intersector, Vec2 point, Vec2 exit, double share, long feature){
+		if(count == bases.length) grow();
+		
+		CFrame frame = first.getCFrame();
+		Vec2 localPoint = frame.globalToLocal(point);
+		Vec2 localExit = frame.globalToLocalRotation(exit);
+		
+		bases[count] = base;
+		intersectors[count] = intersector;
+		pointsX[count] = localPoint.x;
+		pointsY[count] = localPoint.y;
+		exitsX[count] = localExit.x;
+		exitsY[count] = localExit.y;
+		shares[count] = share;
+		features[count] = feature;
+		normalImpulses[count] = 0;
+		tangentImpulses[count] = 0;
+		for(int i = 0; i < previousCount; i++){
+			if(previousFeatures[i] == feature){
+				normalImpulses[count] = previousNormalImpulses[i];
+				tangentImpulses[count] = previousTangentImpulses[i];
+				break;
+			}
+		}
+		return count++;
+	}
+	
+	double getNormalImpulse(int index){
+		return normalImpulses[index];
+	}
+	
+	double getTangentImpulse(int index){
+		return tangentImpulses[index];
+	}
+	
+	/**
+	 * remembers the impulses the solver ended with for the given point
+	 */
+	void setImpulses(int index, double normalImpulse, double tangentImpulse){
+		normalImpulses[index] = normalImpulse;
+		tangentImpulses[index] = tangentImpulse;
+	}
+	
+	/**
+	 * Applies the remembered contacts if the pose of the second body relative to first is still close to the remembered one
+	 * @param first first body of the pair
+	 * @param relativeCFrame current pose of the second body relative to first
+	 * @param maxTranslation largest distance the second body may have moved relative to first
+	 * @param maxRotation largest angle the second body may have rotated relative to first
+	 * @return true if the contacts were applied, false if the narrowphase must run
+	 */
+	boolean reuse(RigidBody first, CFrame relativeCFrame, double maxTranslation, double maxRotation){
+		if(count == 0 || maxTranslation < 0 || maxRotation < 0) return false;
+		
+		if(relativeCFrame.position.subtract(this.relativeCFrame.position).lengthSquared() > maxTranslation*maxTranslation
+				|| Math.abs(relativeCFrame.rotation.mul(this.relativeCFrame.rotation.inv()).getAngle()) > maxRotation){
+			Debug.logContactCacheMiss();
+			return false;
+		}
+		Debug.logContactCacheHit();
+		
+		CFrame frame = first.getCFrame();
+		for(int i = 0; i < count; i++){
+			Vec2 point = new Vec2(pointsX[i], pointsY[i]);
+			// how far the second body moved at this point since it was found
+			Vec2 moved = relativeCFrame.localToGlobal(this.relativeCFrame.globalToLocal(point)).subtract(point);
+			
+			double depth = Math.hypot(exitsX[i], exitsY[i]);
+			double normalX = exitsX[i]/depth, normalY = exitsY[i]/depth;
+			double newDepth = depth - (moved.x*normalX+moved.y*normalY);
+			if(newDepth <= 0) continue;
+			
+			Vec2 forcePoint = frame.localToGlobal(point.add(moved.mul(0.5)));
+			Vec2 exit = frame.localToGlobalRotation(new Vec2(normalX*newDepth, normalY*newDepth));
+			
+			Part.applyContact(bases[i], intersectors[i], forcePoint, exit, shares[i], this, i);
+		}
+		return true;
+	}
+	
+	private void grow(){
+		int capacity = bases.length*2;
+		bases = Arrays.copyOf(bases, capacity);
+		intersectors = Arrays.copyOf(intersectors, capacity);
+		pointsX = Arrays.copyOf(pointsX, capacity);
+		pointsY = Arrays.copyOf(pointsY, capacity);
+		exitsX = Arrays.copyOf(exitsX, capacity);
+		exitsY = Arrays.copyOf(exitsY, capacity);
+		shares = Arrays.copyOf(shares, capacity);
+		features = Arrays.copyOf(features, capacity);
+		normalImpulses = Arrays.copyOf(normalImpulses, capacity);
+		tangentImpulses = Arrays.copyOf(tangentImpulses, capacity);
+		previousFeatures = Arrays.copyOf(previousFeatures, capacity);
+		previousNormalImpulses = Arrays.copyOf(previousNormalImpulses, capacity);
+		previousTangentImpulses = Arrays.copyOf(previousTangentImpulses, capacity);
+	}
+}
@@ -0,0 +1,227 @@
+package physics2D.physics;
+
+import java.util.Arrays;
+
+import physics2D.Debug;
+import physics2D.math.CFrame;
+import physics2D.math.Constants;
+import physics2D.math.Vec2;
+
+/**
+ * Collects the contact points of all convex pieces of a pair of bodies, and reduces them before their forces are applied.<br><br>
+ * 
+ * Bodies made of many pieces, or resting on many pieces of another body, find the same contact several times,
+ * once for every pair of pieces meeting at a shared corner. Points closer than {@link Constants#CONTACT_MERGE_DISTANCE}
+ * with nearly the same normal are merged into the deepest of them. If more than {@link Constants#MAX_CONTACTS_PER_PAIR} points remain,
+ * the deepest point and the outermost points along it's contact plane are kept, as those hold the bodies flat, followed by the next deepest ones.<br><br>
+ * 
+ * A duplicate is the same contact found twice, so it's force is only applied once, and dropped points lie between the kept ones.
+ * Applying them all would make a body of many parts push back many times harder than the same body made of a single part,
+ * enough for a bar of a few boxes to bounce off the floor.<br><br>
+ * 
+ * There is one reducer per thread as islands may be solved in parallel, see {@link #get()}.
+ */
+final class ContactReducer {
+	
+	private static final ThreadLocal<ContactReducer> reducer = ThreadLocal.withInitial(ContactReducer::new);
+	
+	/**
+	 * @return the reducer of the current thread
+	 */
+	static ContactReducer get(){
+		return reducer.get();
+	}
+	
+	/** the body all exits point away from, null when not collecting */
+	private RigidBody first = null;
+	
+	private int count = 0;
+	private Part[] bases = new Part[16];
+	private Part[] intersectors = new Part[16];
+	private double[] pointsX = new double[16], pointsY = new double[16];
+	private double[] exitsX = new double[16], exitsY = new double[16];
+	private double[] depths = new double[16];
+	private double[] shares = new double[16];
+	private long[] features = new long[16];
+	private boolean[] kept = new boolean[16];
+	private boolean[] selected = new boolean[16];
+	
+	private ContactReducer(){}
+	
+	/**
+	 * Starts collecting the contacts between first and another body, until {@link #finish(ContactCache, CFrame)}
+	 */
+	void begin(RigidBody first){
+		this.first = first;
+		this.count = 0;
+	}
+	
+	boolean isCollecting(){
+		return first != null;
+	}
+	
+	/**
+	 * @param base part the exit points away from
+	 * @param intersector part which must move along exit to leave base
+	 * @param point <i>global</i>
+	 * @param exit in global axes
+	 * @param share part of the force of it's contact this point stands for
+	 * @param feature identifies the point from tick to tick, see {@link ContactCache#featureKey(int, int, int)}
+	 */
+	void add(Part base, Part intersector, Vec2 point, Vec2 exit, double share, long feature){
+		if(count == bases.length) grow();
+		
+		// exits always point away from first, the contact forces are symmetric in base and intersector
+		if(base.parent != first){
+			Part swap = base;
+			base = intersector;
+			intersector = swap;
+			exit = exit.neg();
+		}
+		
+		bases[count] = base;
+		intersectors[count] = intersector;
+		pointsX[count] = point.x;
+		pointsY[count] = point.y;
+		exitsX[count] = exit.x;
+		exitsY[count] = exit.y;
+		depths[count] = exit.length();
+		shares[count] = share;
+		features[count] = feature;
+		kept[count] = true;
+		count++;
+	}
+	
+	/**
+	 * Reduces the collected contacts and applies their forces
+	 * @param cache remembers the reduced contacts for the given relative pose of the bodies, may be null
+	 * @param relativeCFrame pose of the other body relative to the first
+	 */
+	void finish(ContactCache cache, CFrame relativeCFrame){
+		RigidBody first = this.first;
+		this.first = null;
+		if(cache != null) cache.begin(relativeCFrame);
+		if(count == 0) return;
+		
+		int remaining = mergeDuplicates();
+		if(remaining > Constants.MAX_CONTACTS_PER_PAIR)
+			remaining = selectExtremes(Constants.MAX_CONTACTS_PER_PAIR);
+		
+		Debug.logContactReduction(count, remaining);
+		
+		for(int i = 0; i < count; i++){
+			if(!kept[i]) continue;
+			Vec2 point = new Vec2(pointsX[i], pointsY[i]);
+			
+			Vec2 exit = new Vec2(exitsX[i], exitsY[i]);
+			int index = (cache == null)? -1 : cache.add(first, bases[i], intersectors[i], point, exit, shares[i], features[i]);
+			Part.applyContact(bases[i], intersectors[i], point, exit, shares[i], cache, index);
+		}
+		
+		// don't keep the parts alive
+		Arrays.fill(bases, 0, count, null);
+		Arrays.fill(intersectors, 0, count, null);
+		count = 0;
+	}
+	
+	/**
+	 * merges every point into an earlier one it is a near-duplicate of, the deeper of both is kept with the largest share of both
+	 * @return the amount of points left
+	 */
+	private int mergeDuplicates(){
+		double maxDistanceSquared = Constants.CONTACT_MERGE_DISTANCE*Constants.CONTACT_MERGE_DISTANCE;
+		int remaining = count;
+		for(int i = 0; i < count; i++){
+			if(!kept[i]) continue;
+			for(int j = i+1; j < count; j++){
+				if(!kept[j]) continue;
+				double dx = pointsX[j]-pointsX[i], dy = pointsY[j]-pointsY[i];
+				if(dx*dx+dy*dy > maxDistanceSquared) continue;
+				double normalDot = (exitsX[i]*exitsX[j]+exitsY[i]*exitsY[j])/(depths[i]*depths[j]);
+				if(!(normalDot >= Constants.CONTACT_MERGE_NORMAL_DOT)) continue;
+				
+				if(depths[j] > depths[i]){
+					bases[i] = bases[j];
+					intersectors[i] = intersectors[j];
+					pointsX[i] = pointsX[j];
+					pointsY[i] = pointsY[j];
+					exitsX[i] = exitsX[j];
+					exitsY[i] = exitsY[j];
+					depths[i] = depths[j];
+					features[i] = features[j];
+				}
+				shares[i] = Math.max(shares[i], shares[j]);
+				kept[j] = false;
+				remaining--;
+			}
+		}
+		return remaining;
+	}
+	
+	/**
+	 * keeps the deepest point, the outermost points along it's contact plane, and then the deepest of the rest
+	 * @param max amount of points to keep
+	 * @return the amount of points left
+	 */
+	private int selectExtremes(int max){
+		int deepest = -1;
+		for(int i = 0; i < count; i++){
+			selected[i] = false;
+			if(kept[i] && (deepest == -1 || depths[i] > depths[deepest])) deepest = i;
+		}
+		selected[deepest] = true;
+		int selectedCount = 1;
+		
+		// the contact plane of the deepest point
+		double tangentX = -exitsY[deepest], tangentY = exitsX[deepest];
+		int lowest = -1, highest = -1;
+		double low = Double.POSITIVE_INFINITY, high = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < count; i++){
+			if(!kept[i]) continue;
+			double position = pointsX[i]*tangentX+pointsY[i]*tangentY;
+			if(position < low){
+				low = position;
+				lowest = i;
+			}
+			if(position > high){
+				high = position;
+				highest = i;
+			}
+		}
+		if(selectedCount < max && !selected[lowest]){
+			selected[lowest] = true;
+			selectedCount++;
+		}
+		if(selectedCount < max && !selected[highest]){
+			selected[highest] = true;
+			selectedCount++;
+		}
+		
+		while(selectedCount < max){
+			int next = -1;
+			for(int i = 0; i < count; i++)
+				if(kept[i] && !selected[i] && (next == -1 || depths[i] > depths[next])) next = i;
+			selected[next] = true;
+			selectedCount++;
+		}
+		
+		System.arraycopy(selected, 0, kept, 0, count);
+		
+		return selectedCount;
+	}
+	
+	private void grow(){
+		int capacity = bases.length*2;
+		bases = Arrays.copyOf(bases, capacity);
+		intersectors = Arrays.copyOf(intersectors, capacity);
+		pointsX = Arrays.copyOf(pointsX, capacity);
+		pointsY = Arrays.copyOf(pointsY, capacity);
+		exitsX = Arrays.copyOf(exitsX, capacity);
+		exitsY = Arrays.copyOf(exitsY, capacity);
+		depths = Arrays.copyOf(depths, capacity);
+		shares = Arrays.copyOf(shares, capacity);
+		features = Arrays.copyOf(features, capacity);
+		kept = Arrays.copyOf(kept, capacity);
+		selected = Arrays.copyOf(selected, capacity);
+	}
+}
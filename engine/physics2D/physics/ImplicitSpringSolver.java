@@ -0,0 +1,281 @@
+package physics2D.physics;
+
+import java.util.Arrays;
+
+import physics2D.math.Constants;
+import physics2D.math.Vec2;
+
+/**
+ * Backward Euler solver for the springs of one island, used when {@link World#implicitSprings} is set.<br><br>
+ * 
+ * An explicit spring applies the force of the spring as it is at the start of the tick. A stiff spring overshoots it's rest length within the tick,
+ * and swings up further every tick once deltaT nears {@code 2/sqrt(stiffness/mass)}. Here the springs apply the force they have at the end of the tick instead,
+ * which depends on the velocities that force gives the bodies. Springs sharing a body change eachothers force,
+ * so the velocity changes of all bodies of the island are solved together.<br><br>
+ * 
+ * Every spring is made of rows, each keeps one coordinate at 0: the offset between two points along x or y, or the angle between two bodies.
+ * A row has an error e, a jacobian J giving the rate of the error {@code J*v} from the velocities v of the bodies, a stiffness k and a damping c.
+ * It's force on the bodies is {@code -J^T*(k*e + c*J*v)}, the error after the tick is estimated as {@code e + deltaT*J*v'}.
+ * With M the masses and inertias, the velocity change dv of the tick then solves
+ * <pre>(M + deltaT*sum J^T*D*J) dv = -deltaT*sum J^T*(k*e + D*J*v),    D = k*deltaT + c</pre>
+ * The matrix is symmetric and positive definite, it is solved with conjugate gradients preconditioned with it's diagonal,
+ * for at most {@link Constants#IMPLICIT_SPRING_ITERATIONS} iterations. The bodies then get the force {@code M*dv/deltaT},
+ * which the next update integrates like any other force.<br><br>
+ * 
+ * However stiff, the springs never overshoot, a very stiff spring approaches the force which removes it's error within one tick.
+ * Anchored and sleeping bodies don't move, they act as infinitely heavy.
+ * There is one solver per thread as islands may be solved in parallel, see {@link #get()}.
+ */
+final class ImplicitSpringSolver {
+	
+	private static final ThreadLocal<ImplicitSpringSolver> solver = ThreadLocal.withInitial(ImplicitSpringSolver::new);
+	
+	/**
+	 * @return the solver of the current thread
+	 */
+	static ImplicitSpringSolver get(){
+		return solver.get();
+	}
+	
+	private double deltaT;
+	
+	/** the bodies the springs are attached to, body i has the coordinates 3i, 3i+1 and 3i+2: it's velocity and angular velocity */
+	private int bodyCount = 0;
+	private Physical[] bodies = new Physical[16];
+	/** mass or inertia of every coordinate */
+	private double[] masses = new double[48];
+	
+	private int rowCount = 0;
+	/** index of the bodies of every row, -1 for bodies which don't move */
+	private int[] rowBodiesA = new int[16], rowBodiesB = new int[16];
+	/** six entries per row, for the velocity and angular velocity of a and of b */
+	private double[] jacobians = new double[96];
+	private double[] errors = new double[16];
+	private double[] stiffnesses = new double[16], dampings = new double[16];
+	
+	/** conjugate gradient vectors, one entry per coordinate */
+	private double[] velocityChanges = new double[48], residuals = new double[48], preconditioned = new double[48];
+	private double[] directions = new double[48], products = new double[48], diagonal = new double[48];
+	
+	private ImplicitSpringSolver(){}
+	
+	/**
+	 * Starts collecting the springs of an island, until {@link #solve()}
+	 * @param deltaT length of the tick
+	 */
+	void begin(double deltaT){
+		this.deltaT = deltaT;
+		this.bodyCount = 0;
+		this.rowCount = 0;
+	}
+	
+	/**
+	 * Adds a spring pulling pointA and pointB together, the force on a is {@code stiffness*(pointB-pointA)} plus the damping of their relative velocity
+	 * @param pointA <i>global</i>, attached to a
+	 * @param pointB <i>global</i>, attached to b
+	 */
+	void addPoints(Physical a, Vec2 pointA, Physical b, Vec2 pointB, double stiffness, double damping){
+		Vec2 relA = pointA.subtract(a.getCenterOfMass());
+		Vec2 relB = pointB.subtract(b.getCenterOfMass());
+		Vec2 delta = pointB.subtract(pointA);
+		// the velocity of a point is v + angularVelocity*(-rel.y, rel.x)
+		addRow(a, -1, 0, relA.y, b, 1, 0, -relB.y, delta.x, stiffness, damping);
+		addRow(a, 0, -1, -relA.x, b, 0, 1, relB.x, delta.y, stiffness, damping);
+	}
+	
+	/**
+	 * Adds a spring turning a and b to the same angle, the torque on a is {@code stiffness*angle} plus the damping of their relative angular velocity
+	 * @param angle angle of b relative to a
+	 */
+	void addAngle(Physical a, Physical b, double angle, double stiffness, double damping){
+		addRow(a, 0, 0, -1, b, 0, 0, 1, angle, stiffness, damping);
+	}
+	
+	private void addRow(Physical a, double ax, double ay, double aw, Physical b, double bx, double by, double bw, double error, double stiffness, double damping){
+		int indexA = indexOf(a), indexB = indexOf(b);
+		if(indexA == -1 && indexB == -1) return;
+		if(rowCount == errors.length) growRows();
+		
+		rowBodiesA[rowCount] = indexA;
+		rowBodiesB[rowCount] = indexB;
+		int j = rowCount*6;
+		jacobians[j] = ax;
+		jacobians[j+1] = ay;
+		jacobians[j+2] = aw;
+		jacobians[j+3] = bx;
+		jacobians[j+4] = by;
+		jacobians[j+5] = bw;
+		errors[rowCount] = error;
+		stiffnesses[rowCount] = stiffness;
+		dampings[rowCount] = damping;
+		rowCount++;
+	}
+	
+	/**
+	 * @return the index of the body, added if it wasn't yet. -1 for anchored and sleeping bodies
+	 */
+	private int indexOf(Physical body){
+		if(body.isAnchored() || body.isSleeping()) return -1;
+		int index = body.springIndex;
+		if(index >= 0 && index < bodyCount && bodies[index] == body) return index;
+		
+		if(bodyCount == bodies.length) growBodies();
+		index = bodyCount++;
+		bodies[index] = body;
+		masses[index*3] = body.getMass();
+		masses[index*3+1] = body.getMass();
+		masses[index*3+2] = body.getInertia();
+		body.springIndex = index;
+		return index;
+	}
+	
+	/**
+	 * Solves the velocity changes of the collected springs and applies their forces
+	 */
+	void solve(){
+		if(rowCount == 0){
+			bodyCount = 0;
+			return;
+		}
+		int n = bodyCount*3;
+		
+		// right hand side, and the diagonal of the matrix
+		for(int i = 0; i < n; i++){
+			residuals[i] = 0;
+			diagonal[i] = masses[i];
+			velocityChanges[i] = 0;
+		}
+		for(int row = 0; row < rowCount; row++){
+			double d = stiffnesses[row]*deltaT + dampings[row];
+			double rate = rowRate(row);
+			scatter(row, -deltaT*(stiffnesses[row]*errors[row] + d*rate), residuals);
+			scatterSquared(row, deltaT*d, diagonal);
+		}
+		
+		// conjugate gradients, starting from no velocity change
+		double rz = 0;
+		for(int i = 0; i < n; i++){
+			preconditioned[i] = residuals[i]/diagonal[i];
+			directions[i] = preconditioned[i];
+			rz += residuals[i]*preconditioned[i];
+		}
+		double tolerance = rz*1E-20;
+		for(int iteration = 0; iteration < Constants.IMPLICIT_SPRING_ITERATIONS && rz > tolerance; iteration++){
+			multiply(directions, products, n);
+			double directionProduct = 0;
+			for(int i = 0; i < n; i++) directionProduct += directions[i]*products[i];
+			double step = rz/directionProduct;
+			
+			double newRz = 0;
+			for(int i = 0; i < n; i++){
+				velocityChanges[i] += step*directions[i];
+				residuals[i] -= step*products[i];
+				preconditioned[i] = residuals[i]/diagonal[i];
+				newRz += residuals[i]*preconditioned[i];
+			}
+			for(int i = 0; i < n; i++) directions[i] = preconditioned[i] + newRz/rz*directions[i];
+			rz = newRz;
+		}
+		
+		for(int b = 0; b < bodyCount; b++){
+			int i = b*3;
+			bodies[b].applyForceAtCenterOfMass(new Vec2(masses[i]*velocityChanges[i]/deltaT, masses[i+1]*velocityChanges[i+1]/deltaT));
+			bodies[b].applyTorque(masses[i+2]*velocityChanges[i+2]/deltaT);
+		}
+		
+		// don't keep the bodies alive
+		Arrays.fill(bodies, 0, bodyCount, null);
+		bodyCount = 0;
+		rowCount = 0;
+	}
+	
+	/**
+	 * result = (M + deltaT*sum J^T*D*J)*vector
+	 */
+	private void multiply(double[] vector, double[] result, int n){
+		for(int i = 0; i < n; i++) result[i] = masses[i]*vector[i];
+		for(int row = 0; row < rowCount; row++){
+			double d = stiffnesses[row]*deltaT + dampings[row];
+			double rate = rowProduct(row, vector);
+			scatter(row, deltaT*d*rate, result);
+		}
+	}
+	
+	/**
+	 * @return J*v of the given row, the rate at which it's error changes
+	 */
+	private double rowRate(int row){
+		int j = row*6;
+		double rate = 0;
+		int a = rowBodiesA[row], b = rowBodiesB[row];
+		if(a != -1){
+			Physical body = bodies[a];
+			rate += jacobians[j]*body.velocity.x + jacobians[j+1]*body.velocity.y + jacobians[j+2]*body.angularVelocity;
+		}
+		if(b != -1){
+			Physical body = bodies[b];
+			rate += jacobians[j+3]*body.velocity.x + jacobians[j+4]*body.velocity.y + jacobians[j+5]*body.angularVelocity;
+		}
+		return rate;
+	}
+	
+	/**
+	 * @return J*vector of the given row
+	 */
+	private double rowProduct(int row, double[] vector){
+		int j = row*6;
+		double product = 0;
+		int a = rowBodiesA[row], b = rowBodiesB[row];
+		if(a != -1)
+			for(int k = 0; k < 3; k++) product += jacobians[j+k]*vector[a*3+k];
+		if(b != -1)
+			for(int k = 0; k < 3; k++) product += jacobians[j+3+k]*vector[b*3+k];
+		return product;
+	}
+	
+	/**
+	 * result += J^T*value of the given row
+	 */
+	private void scatter(int row, double value, double[] result){
+		int j = row*6;
+		int a = rowBodiesA[row], b = rowBodiesB[row];
+		if(a != -1)
+			for(int k = 0; k < 3; k++) result[a*3+k] += jacobians[j+k]*value;
+		if(b != -1)
+			for(int k = 0; k < 3; k++) result[b*3+k] += jacobians[j+3+k]*value;
+	}
+	
+	/**
+	 * result += the diagonal of J^T*value*J of the given row
+	 */
+	private void scatterSquared(int row, double value, double[] result){
+		int j = row*6;
+		int a = rowBodiesA[row], b = rowBodiesB[row];
+		if(a != -1)
+			for(int k = 0; k < 3; k++) result[a*3+k] += jacobians[j+k]*jacobians[j+k]*value;
+		if(b != -1)
+			for(int k = 0; k < 3; k++) result[b*3+k] += jacobians[j+3+k]*jacobians[j+3+k]*value;
+	}
+	
+	private void growBodies(){
+		int capacity = bodies.length*2;
+		bodies = Arrays.copyOf(bodies, capacity);
+		masses = Arrays.copyOf(masses, capacity*3);
+		velocityChanges = Arrays.copyOf(velocityChanges, capacity*3);
+		residuals = Arrays.copyOf(residuals, capacity*3);
+		preconditioned = Arrays.copyOf(preconditioned, capacity*3);
+		directions = Arrays.copyOf(directions, capacity*3);
+		products = Arrays.copyOf(products, capacity*3);
+		diagonal = Arrays.copyOf(diagonal, capacity*3);
+	}
+	
+	private void growRows(){
+		int capacity = errors.length*2;
+		rowBodiesA = Arrays.copyOf(rowBodiesA, capacity);
+		rowBodiesB = Arrays.copyOf(rowBodiesB, capacity);
+		jacobians = Arrays.copyOf(jacobians, capacity*6);
+		errors = Arrays.copyOf(errors, capacity);
+		stiffnesses = Arrays.copyOf(stiffnesses, capacity);
+		dampings = Arrays.copyOf(dampings, capacity);
+	}
+}
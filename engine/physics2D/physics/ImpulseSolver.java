@@ -0,0 +1,258 @@
+package physics2D.physics;
+
+import java.util.Arrays;
+
+import physics2D.Debug;
+import physics2D.math.Constants;
+import physics2D.math.Vec2;
+
+/**
+ * Velocity level contact solver of {@link SolverMode#IMPULSE}.<br><br>
+ * 
+ * While solving an island the contact points are collected here instead of being applied as penalty forces.
+ * {@link #solve(int)} then runs projected Gauss-Seidel over them: every iteration each contact in turn gets the impulse which
+ * stops it's bodies from moving into eachother, the total impulse of a contact may only push, never pull.
+ * Friction impulses are limited to the friction cone, {@link #getFrictionCoefficient(PhysicalProperties, PhysicalProperties)} times the normal impulse.<br><br>
+ * 
+ * Penetration is removed by asking the contact to separate a little, at {@link Constants#IMPULSE_BAUMGARTE_FACTOR} of the depth beyond
+ * {@link Constants#IMPULSE_PENETRATION_SLOP} per tick. There is no bounce, contacts are perfectly inelastic.<br><br>
+ * 
+ * With warm starting the solve begins by applying the impulses each contact ended with last tick, kept in the {@link ContactCache} of it's pair.
+ * Resting contacts need nearly the same impulses every tick, so only few iterations are needed to correct them.
+ * The total change of the impulses in every iteration, the residual, is logged to {@link Debug#logSolverResiduals(double[], int)}.<br><br>
+ * 
+ * Anchored and sleeping bodies don't move, they act as infinitely heavy.
+ * There is one solver per thread as islands may be solved in parallel, see {@link #get()}.
+ */
+final class ImpulseSolver {
+	
+	private static final ThreadLocal<ImpulseSolver> solver = ThreadLocal.withInitial(ImpulseSolver::new);
+	
+	/**
+	 * @return the solver of the current thread
+	 */
+	static ImpulseSolver get(){
+		return solver.get();
+	}
+	
+	private boolean collecting = false;
+	private double deltaT;
+	
+	private int count = 0;
+	private RigidBody[] bodiesA = new RigidBody[16], bodiesB = new RigidBody[16];
+	/** contact point relative to the centers of mass of a and b */
+	private double[] relAX = new double[16], relAY = new double[16];
+	private double[] relBX = new double[16], relBY = new double[16];
+	/** unit normal from a to b */
+	private double[] normalsX = new double[16], normalsY = new double[16];
+	/** inverse of the inertia of the contact along the normal and along the tangent */
+	private double[] normalMasses = new double[16], tangentMasses = new double[16];
+	/** separating velocity asked to remove penetration */
+	private double[] biases = new double[16];
+	private double[] frictions = new double[16];
+	/** impulses applied so far, the clamping is done on these */
+	private double[] normalImpulses = new double[16], tangentImpulses = new double[16];
+	/** where the impulses of each contact are kept between ticks, may be null */
+	private ContactCache[] caches = new ContactCache[16];
+	private int[] cacheIndices = new int[16];
+	
+	private double[] residuals = new double[Constants.IMPULSE_ITERATIONS];
+	
+	private ImpulseSolver(){}
+	
+	/**
+	 * Friction in {@link PhysicalProperties} is a damping factor of the penalty forces, it slows sliding in proportion to the speed
+	 * instead of limiting the friction to a cone, so no coefficient makes both behave the same. The default of 0.05 for both bodies
+	 * becomes a friction coefficient of 0.5. Rougher materials are clamped to {@link Constants#IMPULSE_MAX_FRICTION_COEFFICIENT},
+	 * a friction of sqrt(0.05) for both bodies would otherwise become 2.24, which makes sliding contacts stick.
+	 * @return the friction coefficient between the given properties, the ratio of the largest friction impulse to the normal impulse
+	 */
+	static double getFrictionCoefficient(PhysicalProperties a, PhysicalProperties b){
+		return Math.min(Constants.IMPULSE_FRICTION_FACTOR * Math.sqrt(a.getFrictionWith(b)), Constants.IMPULSE_MAX_FRICTION_COEFFICIENT);
+	}
+	
+	/**
+	 * Starts collecting the contacts of an island, until {@link #solve(int)}
+	 * @param deltaT length of the tick
+	 */
+	void begin(double deltaT){
+		this.deltaT = deltaT;
+		this.count = 0;
+		this.collecting = true;
+	}
+	
+	boolean isCollecting(){
+		return collecting;
+	}
+	
+	/**
+	 * @param base part the exit points away from
+	 * @param intersector part which must move along exit to leave base
+	 * @param point <i>global</i>
+	 * @param exit in global axes
+	 * @param cache cache keeping the impulses of this contact between ticks, may be null
+	 * @param index index of the contact in cache
+	 */
+	void add(Part base, Part intersector, Vec2 point, Vec2 exit, ContactCache cache, int index){
+		double depth = exit.length();
+		if(depth == 0) return;
+		if(count == bodiesA.length) grow();
+		
+		RigidBody a = base.parent, b = intersector.parent;
+		double nx = exit.x/depth, ny = exit.y/depth;
+		Vec2 ca = a.getCenterOfMass(), cb = b.getCenterOfMass();
+		double rax = point.x-ca.x, ray = point.y-ca.y;
+		double rbx = point.x-cb.x, rby = point.y-cb.y;
+		
+		double invMassA = inverseMass(a), invMassB = inverseMass(b);
+		double invInertiaA = inverseInertia(a), invInertiaB = inverseInertia(b);
+		
+		double rnA = rax*ny-ray*nx, rnB = rbx*ny-rby*nx;
+		double normalInverse = invMassA+invMassB+invInertiaA*rnA*rnA+invInertiaB*rnB*rnB;
+		// the tangent is (-ny, nx)
+		double rtA = rax*nx+ray*ny, rtB = rbx*nx+rby*ny;
+		double tangentInverse = invMassA+invMassB+invInertiaA*rtA*rtA+invInertiaB*rtB*rtB;
+		if(normalInverse == 0) return;
+		
+		bodiesA[count] = a;
+		bodiesB[count] = b;
+		relAX[count] = rax;
+		relAY[count] = ray;
+		relBX[count] = rbx;
+		relBY[count] = rby;
+		normalsX[count] = nx;
+		normalsY[count] = ny;
+		normalMasses[count] = 1/normalInverse;
+		tangentMasses[count] = 1/tangentInverse;
+		biases[count] = Constants.IMPULSE_BAUMGARTE_FACTOR/deltaT*Math.max(0, depth-Constants.IMPULSE_PENETRATION_SLOP);
+		frictions[count] = getFrictionCoefficient(base.properties, intersector.properties);
+		normalImpulses[count] = (cache == null)? 0 : cache.getNormalImpulse(index);
+		tangentImpulses[count] = (cache == null)? 0 : cache.getTangentImpulse(index);
+		caches[count] = cache;
+		cacheIndices[count] = index;
+		count++;
+	}
+	
+	private static double inverseMass(RigidBody body){
+		return (body.isAnchored() || body.isSleeping())? 0 : 1/body.getMass();
+	}
+	
+	private static double inverseInertia(RigidBody body){
+		return (body.isAnchored() || body.isSleeping())? 0 : 1/body.getInertia();
+	}
+	
+	/**
+	 * Applies the impulses of all collected contacts and stops collecting
+	 * @param iterations amount of passes over all contacts
+	 * @param warmStarting start from the impulses of last tick
+	 */
+	void solve(int iterations, boolean warmStarting){
+		collecting = false;
+		if(count == 0) return;
+		
+		if(warmStarting){
+			for(int i = 0; i < count; i++){
+				double nx = normalsX[i], ny = normalsY[i];
+				// the tangent is (-ny, nx)
+				applyImpulse(i, nx*normalImpulses[i]-ny*tangentImpulses[i], ny*normalImpulses[i]+nx*tangentImpulses[i]);
+			}
+		}else{
+			Arrays.fill(normalImpulses, 0, count, 0);
+			Arrays.fill(tangentImpulses, 0, count, 0);
+		}
+		
+		if(residuals.length < iterations) residuals = new double[iterations];
+		for(int iteration = 0; iteration < iterations; iteration++){
+			double residual = 0;
+			for(int i = 0; i < count; i++){
+				residual += solveFriction(i);
+				residual += solveNormal(i);
+			}
+			residuals[iteration] = residual;
+		}
+		Debug.logSolverResiduals(residuals, iterations);
+		
+		for(int i = 0; i < count; i++)
+			if(caches[i] != null) caches[i].setImpulses(cacheIndices[i], normalImpulses[i], tangentImpulses[i]);
+		
+		// don't keep the bodies alive
+		Arrays.fill(bodiesA, 0, count, null);
+		Arrays.fill(bodiesB, 0, count, null);
+		Arrays.fill(caches, 0, count, null);
+		count = 0;
+	}
+	
+	/**
+	 * @return the velocity of b relative to a at the contact point
+	 */
+	private Vec2 getRelativeVelocity(int i){
+		Vec2 va = bodiesA[i].getSpeedOfRelPoint(new Vec2(relAX[i], relAY[i]));
+		Vec2 vb = bodiesB[i].getSpeedOfRelPoint(new Vec2(relBX[i], relBY[i]));
+		return vb.subtract(va);
+	}
+	
+	/**
+	 * @return the size of the impulse applied
+	 */
+	private double solveNormal(int i){
+		double nx = normalsX[i], ny = normalsY[i];
+		Vec2 relativeVelocity = getRelativeVelocity(i);
+		double normalVelocity = relativeVelocity.x*nx+relativeVelocity.y*ny;
+		
+		double impulse = normalMasses[i]*(biases[i]-normalVelocity);
+		double total = Math.max(normalImpulses[i]+impulse, 0);
+		impulse = total-normalImpulses[i];
+		normalImpulses[i] = total;
+		
+		applyImpulse(i, nx*impulse, ny*impulse);
+		return Math.abs(impulse);
+	}
+	
+	/**
+	 * @return the size of the impulse applied
+	 */
+	private double solveFriction(int i){
+		double tx = -normalsY[i], ty = normalsX[i];
+		Vec2 relativeVelocity = getRelativeVelocity(i);
+		double tangentVelocity = relativeVelocity.x*tx+relativeVelocity.y*ty;
+		
+		double maxFriction = frictions[i]*normalImpulses[i];
+		double impulse = -tangentMasses[i]*tangentVelocity;
+		double total = Math.max(-maxFriction, Math.min(maxFriction, tangentImpulses[i]+impulse));
+		impulse = total-tangentImpulses[i];
+		tangentImpulses[i] = total;
+		
+		applyImpulse(i, tx*impulse, ty*impulse);
+		return Math.abs(impulse);
+	}
+	
+	/**
+	 * applies the given impulse to b, and the opposite impulse to a
+	 */
+	private void applyImpulse(int i, double x, double y){
+		if(x == 0 && y == 0) return;
+		Vec2 impulse = new Vec2(x, y);
+		bodiesA[i].applyImpulseRelative(impulse.neg(), new Vec2(relAX[i], relAY[i]));
+		bodiesB[i].applyImpulseRelative(impulse, new Vec2(relBX[i], relBY[i]));
+	}
+	
+	private void grow(){
+		int capacity = bodiesA.length*2;
+		bodiesA = Arrays.copyOf(bodiesA, capacity);
+		bodiesB = Arrays.copyOf(bodiesB, capacity);
+		relAX = Arrays.copyOf(relAX, capacity);
+		relAY = Arrays.copyOf(relAY, capacity);
+		relBX = Arrays.copyOf(relBX, capacity);
+		relBY = Arrays.copyOf(relBY, capacity);
+		normalsX = Arrays.copyOf(normalsX, capacity);
+		normalsY = Arrays.copyOf(normalsY, capacity);
+		normalMasses = Arrays.copyOf(normalMasses, capacity);
+		tangentMasses = Arrays.copyOf(tangentMasses, capacity);
+		biases = Arrays.copyOf(biases, capacity);
+		frictions = Arrays.copyOf(frictions, capacity);
+		normalImpulses = Arrays.copyOf(normalImpulses, capacity);
+		tangentImpulses = Arrays.copyOf(tangentImpulses, capacity);
+		caches = Arrays.copyOf(caches, capacity);
+		cacheIndices = Arrays.copyOf(cacheIndices, capacity);
+	}
+}
@@ -0,0 +1,273 @@
+package physics2D.physics;
+
+import java.util.Arrays;
+import java.util.List;
+
+import physics2D.physics.broadphase.BodyPair;
+
+/**
+ * Splits the pairs and constraints of a tick into islands, groups of physicals which can only push eachother through
+ * a chain of pairs and constraints. Anchored physicals don't move, so they don't connect islands.<br><br>
+ * 
+ * Islands are found with a union-find over the dynamic physicals. They are numbered in the order their first pair
+ * or constraint was given, and keep the order of their pairs and constraints, so the same input always gives the same islands.
+ * The dynamic physicals of every island are listed as well, for solvers which step the physicals of an island themselves.<br><br>
+ * 
+ * Islands with at least {@link #COLOURED_CONSTRAINTS} constraints, like long chains or ragdolls, have their constraints coloured:
+ * every constraint gets the lowest colour none of the other constraints of it's dynamic physicals have, and the constraints of the island
+ * are sorted on their colour. The constraints of a colour share no physical which can move, so they can be enacted in parallel.
+ * Colours above 62 are rare, those constraints are put last with colour -1, as are all constraints of smaller islands.
+ */
+class Islands {
+	
+	/** islands with less constraints than this are not worth colouring */
+	static final int COLOURED_CONSTRAINTS = 64;
+	private static final int MAX_COLOURS = 63;
+	
+	private int[] parent = new int[64];
+	private int[] islandOfRoot = new int[64];
+	private int islandCount = 0;
+	
+	private BodyPair[] pairs = new BodyPair[64];
+	private int[] pairIsland = new int[64];
+	private int[] pairStart = new int[65];
+	
+	private Physical[] islandBodies = new Physical[64];
+	/** island of every dynamic physical by it's {@link RigidBody#islandIndex}, -1 if it has no pairs or constraints */
+	private int[] bodyIsland = new int[64];
+	private int[] bodyStart = new int[65];
+	
+	private Constraint[] constraints = new Constraint[16];
+	private int[] constraintIsland = new int[16];
+	private int[] constraintStart = new int[65];
+	/** colour of every constraint in constraints, -1 for constraints which must be enacted in order */
+	private int[] constraintColours = new int[16];
+	
+	/** the colours used by the constraints of every dynamic physical by it's {@link RigidBody#islandIndex}, one bit per colour */
+	private long[] usedColours = new long[64];
+	private Constraint[] colouredConstraints = new Constraint[16];
+	private int[] colourStart = new int[MAX_COLOURS+2];
+	
+	/**
+	 * @param bodies the dynamic physicals, their {@link RigidBody#islandIndex} is set to their index in this list
+	 * @param tickPairs the pairs found this tick
+	 * @param pairCount amount of pairs in tickPairs
+	 * @param worldConstraints all constraints
+	 */
+	void build(List<Physical> bodies, BodyPair[] tickPairs, int pairCount, List<Constraint> worldConstraints){
+		int n = bodies.size();
+		if(parent.length < n){
+			parent = new int[Math.max(n, parent.length*2)];
+			islandOfRoot = new int[parent.length];
+		}
+		for(int i = 0; i < n; i++){
+			bodies.get(i).islandIndex = i;
+			parent[i] = i;
+			islandOfRoot[i] = -1;
+		}
+		
+		for(int i = 0; i < pairCount; i++){
+			BodyPair p = tickPairs[i];
+			if(!p.first.isAnchored() && !p.second.isAnchored())
+				union(p.first.islandIndex, p.second.islandIndex);
+		}
+		int constraintCount = worldConstraints.size();
+		for(int i = 0; i < constraintCount; i++){
+			Constraint c = worldConstraints.get(i);
+			if(!c.part1.isAnchored() && !c.part2.isAnchored())
+				union(c.part1.islandIndex, c.part2.islandIndex);
+		}
+		
+		islandCount = 0;
+		
+		if(pairIsland.length < pairCount)
+			pairIsland = new int[Math.max(pairCount, pairIsland.length*2)];
+		for(int i = 0; i < pairCount; i++)
+			pairIsland[i] = islandOf(tickPairs[i].first, tickPairs[i].second);
+		
+		if(constraintIsland.length < constraintCount)
+			constraintIsland = new int[Math.max(constraintCount, constraintIsland.length*2)];
+		for(int i = 0; i < constraintCount; i++){
+			Constraint c = worldConstraints.get(i);
+			constraintIsland[i] = islandOf(c.part1, c.part2);
+		}
+		
+		if(pairStart.length < islandCount+1){
+			pairStart = new int[Math.max(islandCount+1, pairStart.length*2)];
+			constraintStart = new int[pairStart.length];
+		}
+		if(pairs.length < pairCount)
+			pairs = new BodyPair[Math.max(pairCount, pairs.length*2)];
+		if(constraints.length < constraintCount){
+			constraints = new Constraint[Math.max(constraintCount, constraints.length*2)];
+			constraintColours = new int[constraints.length];
+		}
+		
+		// stable counting sort of the pairs and constraints on their island
+		Arrays.fill(pairStart, 0, islandCount+1, 0);
+		for(int i = 0; i < pairCount; i++)
+			pairStart[pairIsland[i]+1]++;
+		for(int i = 0; i < islandCount; i++)
+			pairStart[i+1] += pairStart[i];
+		for(int i = 0; i < pairCount; i++)
+			pairs[pairStart[pairIsland[i]]++] = tickPairs[i];
+		
+		Arrays.fill(constraintStart, 0, islandCount+1, 0);
+		for(int i = 0; i < constraintCount; i++)
+			if(constraintIsland[i] != -1)
+				constraintStart[constraintIsland[i]+1]++;
+		for(int i = 0; i < islandCount; i++)
+			constraintStart[i+1] += constraintStart[i];
+		for(int i = 0; i < constraintCount; i++)
+			if(constraintIsland[i] != -1)
+				constraints[constraintStart[constraintIsland[i]]++] = worldConstraints.get(i);
+		
+		// the insertion pointers ended up at the start of the next island
+		for(int i = islandCount; i > 0; i--){
+			pairStart[i] = pairStart[i-1];
+			constraintStart[i] = constraintStart[i-1];
+		}
+		pairStart[0] = 0;
+		constraintStart[0] = 0;
+		
+		if(bodyIsland.length < n)
+			bodyIsland = new int[Math.max(n, bodyIsland.length*2)];
+		if(islandBodies.length < n)
+			islandBodies = new Physical[Math.max(n, islandBodies.length*2)];
+		if(bodyStart.length < islandCount+1)
+			bodyStart = new int[Math.max(islandCount+1, bodyStart.length*2)];
+		Arrays.fill(bodyStart, 0, islandCount+1, 0);
+		for(int i = 0; i < n; i++){
+			bodyIsland[i] = islandOfRoot[find(i)];
+			if(bodyIsland[i] != -1)
+				bodyStart[bodyIsland[i]+1]++;
+		}
+		for(int i = 0; i < islandCount; i++)
+			bodyStart[i+1] += bodyStart[i];
+		for(int i = 0; i < n; i++)
+			if(bodyIsland[i] != -1)
+				islandBodies[bodyStart[bodyIsland[i]]++] = bodies.get(i);
+		for(int i = islandCount; i > 0; i--)
+			bodyStart[i] = bodyStart[i-1];
+		bodyStart[0] = 0;
+		
+		if(usedColours.length < n)
+			usedColours = new long[Math.max(n, usedColours.length*2)];
+		for(int i = 0; i < islandCount; i++){
+			if(constraintStart[i+1]-constraintStart[i] >= COLOURED_CONSTRAINTS)
+				colourConstraints(i);
+			else
+				Arrays.fill(constraintColours, constraintStart[i], constraintStart[i+1], -1);
+		}
+		
+		Arrays.fill(pairs, pairCount, pairs.length, null);
+		Arrays.fill(islandBodies, bodyStart[islandCount], islandBodies.length, null);
+	}
+	
+	/**
+	 * colours the constraints of the island in order, and sorts them on their colour. Constraints of the same colour keep their order
+	 */
+	private void colourConstraints(int island){
+		int start = constraintStart[island], end = constraintStart[island+1];
+		for(int i = bodyStart[island]; i < bodyStart[island+1]; i++)
+			usedColours[islandBodies[i].islandIndex] = 0;
+		
+		Arrays.fill(colourStart, 0);
+		for(int i = start; i < end; i++){
+			Constraint c = constraints[i];
+			long used = getUsedColours(c.part1) | getUsedColours(c.part2);
+			int colour = Long.numberOfTrailingZeros(~used);
+			if(colour < MAX_COLOURS){
+				if(!c.part1.isAnchored()) usedColours[c.part1.islandIndex] |= 1L << colour;
+				if(!c.part2.isAnchored()) usedColours[c.part2.islandIndex] |= 1L << colour;
+			}else{
+				colour = MAX_COLOURS;
+			}
+			constraintColours[i] = colour;
+			colourStart[colour+1]++;
+		}
+		
+		// stable counting sort on the colour, the constraints which got no colour go last
+		for(int colour = 0; colour <= MAX_COLOURS; colour++)
+			colourStart[colour+1] += colourStart[colour];
+		int count = end-start;
+		if(colouredConstraints.length < count)
+			colouredConstraints = new Constraint[Math.max(count, colouredConstraints.length*2)];
+		for(int i = start; i < end; i++)
+			colouredConstraints[colourStart[constraintColours[i]]++] = constraints[i];
+		System.arraycopy(colouredConstraints, 0, constraints, start, count);
+		Arrays.fill(colouredConstraints, 0, count, null);
+		
+		// colourStart now holds the end of every colour
+		int colour = 0;
+		for(int i = 0; i < count; i++){
+			while(i >= colourStart[colour]) colour++;
+			constraintColours[start+i] = (colour == MAX_COLOURS)? -1 : colour;
+		}
+	}
+	
+	private long getUsedColours(RigidBody body){
+		return body.isAnchored()? 0 : usedColours[body.islandIndex];
+	}
+	
+	/**
+	 * @return the island of the dynamic body among a and b, numbering it if it is new. -1 if both are anchored
+	 */
+	private int islandOf(RigidBody a, RigidBody b){
+		RigidBody dynamic = a.isAnchored()? b : a;
+		if(dynamic.isAnchored()) return -1;
+		
+		int root = find(dynamic.islandIndex);
+		if(islandOfRoot[root] == -1)
+			islandOfRoot[root] = islandCount++;
+		return islandOfRoot[root];
+	}
+	
+	private int find(int i){
+		while(parent[i] != i){
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+	
+	private void union(int a, int b){
+		int ra = find(a), rb = find(b);
+		if(ra == rb) return;
+		// the lowest index becomes the root, this keeps the result independent of the order of unions
+		if(ra < rb)
+			parent[rb] = ra;
+		else
+			parent[ra] = rb;
+	}
+	
+	int getIslandCount(){return islandCount;}
+	
+	int getPairStart(int island){return pairStart[island];}
+	int getPairEnd(int island){return pairStart[island+1];}
+	BodyPair getPair(int index){return pairs[index];}
+	
+	int getBodyStart(int island){return bodyStart[island];}
+	int getBodyEnd(int island){return bodyStart[island+1];}
+	Physical getBody(int index){return islandBodies[index];}
+	
+	/**
+	 * @return the island of the given dynamic physical, -1 if it has no pairs or constraints this tick
+	 */
+	int getIslandOf(RigidBody body){return bodyIsland[body.islandIndex];}
+	
+	int getConstraintStart(int island){return constraintStart[island];}
+	int getConstraintEnd(int island){return constraintStart[island+1];}
+	Constraint getConstraint(int index){return constraints[index];}
+	/**
+	 * @return the colour of the constraint, constraints with the same colour next to eachother share no dynamic physicals. -1 if it must be enacted in order
+	 */
+	int getConstraintColour(int index){return constraintColours[index];}
+	
+	/**
+	 * @return the amount of pairs and constraints in the islands from up to to
+	 */
+	int getWork(int from, int to){
+		return pairStart[to]-pairStart[from] + constraintStart[to]-constraintStart[from];
+	}
+}
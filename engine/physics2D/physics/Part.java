@@ -2,8 +2,15 @@ package physics2D.physics;
 
 import game.util.Color;
 
+import java.util.List;
+
 import physics2D.Debug;
+import physics2D.geom.CollisionDispatch;
+import physics2D.geom.Contact;
 import physics2D.geom.Convex;
+import physics2D.geom.ConvexPolygon;
+import physics2D.geom.GJK;
+import physics2D.geom.SeparatingAxis;
 import physics2D.geom.Shape;
 import physics2D.math.BoundingBox;
 import physics2D.math.CFrame;
@@ -12,26 +19,86 @@ import physics2D.math.Vec2;
 
 public class Part {
 	
+	/** exit vectors of the narrowphase, one per thread as islands may be solved in parallel */
+	private static final ThreadLocal<SeparatingAxis.Result> exitResult = ThreadLocal.withInitial(SeparatingAxis.Result::new);
+	private static final ThreadLocal<GJK> gjk = ThreadLocal.withInitial(GJK::new);
+	private static final ThreadLocal<Contact> contact = ThreadLocal.withInitial(Contact::new);
+	
 	public final Shape shape;
 	public CFrame relativeCFrame;
 	public PhysicalProperties properties;
 	public final RigidBody parent;
 	
+	/** convex pieces of shape, local to this part */
+	final Convex[] localPieces;
+	/** kinds of the pieces in {@link CollisionDispatch}, transforming a piece keeps it's kind */
+	private final int[] pieceKinds;
+	/** leaf of the first piece in the {@link PartTree} of parent, the other pieces follow it */
+	int firstLeaf = 0;
+	
+	/** the CFrame of parent for which the global cache below was computed */
+	private CFrame cachedParentCFrame = null;
+	private CFrame globalCFrame;
+	private final Convex[] globalPieces;
+	private final BoundingBox[] globalPieceBounds;
+	/** packed corners of the global pieces, null for pieces which aren't polygons */
+	private final double[][] globalPieceCorners;
+	
 	public Part(RigidBody parent, Shape shape, CFrame relativeCFrame, PhysicalProperties properties) {
 		this.shape = shape;
 		this.relativeCFrame = relativeCFrame;
 		this.parent = parent;
 		this.properties = properties;
+		
+		List<? extends Convex> decomposition = shape.convexDecomposition();
+		this.localPieces = decomposition.toArray(new Convex[decomposition.size()]);
+		this.globalPieces = new Convex[localPieces.length];
+		this.globalPieceBounds = new BoundingBox[localPieces.length];
+		this.globalPieceCorners = new double[localPieces.length][];
+		this.pieceKinds = new int[localPieces.length];
+		for(int i = 0; i < localPieces.length; i++)
+			pieceKinds[i] = CollisionDispatch.kindOf(localPieces[i]);
+	}
+	
+	/**
+	 * Recomputes the global CFrame and the global convex pieces if parent has moved since they were last computed.
+	 * CFrames are immutable, so any movement of parent replaces it's CFrame.
+	 */
+	private void updateGlobalCache(){
+		CFrame parentCFrame = parent.getCFrame();
+		if(parentCFrame == cachedParentCFrame) return;
+		
+		globalCFrame = parentCFrame.localToGlobal(relativeCFrame);
+		for(int i = 0; i < localPieces.length; i++){
+			globalPieces[i] = localPieces[i].transformToCFrame(globalCFrame);
+			globalPieceBounds[i] = globalPieces[i].getBoundingBox();
+			globalPieceCorners[i] = (globalPieces[i] instanceof ConvexPolygon)? ((ConvexPolygon) globalPieces[i]).getPackedCorners() : null;
+		}
+		cachedParentCFrame = parentCFrame;
 	}
 	
 	public CFrame getGlobalCFrame(){
-		return parent.getCFrame().localToGlobal(relativeCFrame);
+		updateGlobalCache();
+		return globalCFrame;
 	}
 	
 	public Shape getGlobalShape(){
 		return shape.transformToCFrame(getGlobalCFrame());
 	}
 	
+	/**
+	 * @param index index of the piece in {@code shape.convexDecomposition()}
+	 * @return the given convex piece of this part, in global coordinates
+	 */
+	public Convex getGlobalPiece(int index){
+		updateGlobalCache();
+		return globalPieces[index];
+	}
+	
+	public int getPieceCount(){
+		return localPieces.length;
+	}
+	
 	public double getMass() {
 		return shape.getArea() * properties.density;
 	}
@@ -57,60 +124,187 @@ public class Part {
 	}
 	
 	public void interactWith(Part other) {
-		// All coordinates are local to this.getGlobalCFrame()
-		CFrame deltaTransform = getGlobalCFrame().globalToLocal(other.getGlobalCFrame());
-		CFrame invTransform = deltaTransform.inv();
-		
-		
-		
-		for(Convex c:shape.convexDecomposition()){
-			for(Convex oc:other.shape.transformToCFrame(deltaTransform).convexDecomposition()){
-				if(!c.getBoundingBox().intersects(oc.getBoundingBox())) continue;
-				
-				Vec2 travelVec1 = c.getNearestExit(oc);
-				if(travelVec1 == null) continue;
-				Vec2 travelVec2 = oc.getNearestExit(c);
-				if(travelVec2 == null) continue;
-				
-				Convex intersection = c.intersection(oc);
-				
-				Vec2 forcePoint = intersection.getCenterOfMass();
-				Vec2 otherForcePoint = invTransform.localToGlobal(forcePoint);
-				
-				Debug.logShape(intersection.transformToCFrame(getGlobalCFrame()), Color.PURPLE.fuzzier(0.2));
-				
-				
-				if(travelVec1.lengthSquared() < travelVec2.lengthSquared()){
-					// use travelVec1, c is base
-					
-					Vec2 intersectDepth = getGlobalCFrame().localToGlobalRotation(travelVec1);
-					
-					enactTouchyForce(this, other, forcePoint, otherForcePoint, intersectDepth);
-				}else{
-					// use travelVec2, oc is base
-					
-					Vec2 intersectDepth = getGlobalCFrame().localToGlobalRotation(travelVec2);
-					
-					enactTouchyForce(other, this, otherForcePoint, forcePoint, intersectDepth);
-				}
+		for(int i = 0; i < localPieces.length; i++){
+			for(int j = 0; j < other.localPieces.length; j++){
+				interactWith(i, other, j);
 			}
 		}
 	}
 	
+	/**
+	 * Computes and applies the contact forces between a single convex piece of this part and one of {@code other}
+	 * @param piece index of the piece of this part
+	 * @param other other part
+	 * @param otherPiece index of the piece of other
+	 */
+	public void interactWith(int piece, Part other, int otherPiece) {
+		interactWith(piece, other, otherPiece, null);
+	}
+	
+	/**
+	 * @param axisCache cache of the pair of bodies of this part and other, this body must be it's first. May be null
+	 */
+	void interactWith(int piece, Part other, int otherPiece, AxisCache axisCache) {
+		// All coordinates are global
+		updateGlobalCache();
+		other.updateGlobalCache();
+		
+		if(!globalPieceBounds[piece].intersects(other.globalPieceBounds[otherPiece])) return;
+		
+		int leaf = firstLeaf+piece, otherLeaf = other.firstLeaf+otherPiece;
+		
+		CollisionDispatch.Routine<Convex, Convex> routine = CollisionDispatch.get(pieceKinds[piece], other.pieceKinds[otherPiece]);
+		if(routine != null){
+			interactWithRoutine(routine, piece, other, otherPiece, axisCache);
+			return;
+		}
+		
+		double[] corners = globalPieceCorners[piece], otherCorners = other.globalPieceCorners[otherPiece];
+		if(corners == null || otherCorners == null){
+			interactWithConvex(other, globalPieces[piece], other.globalPieces[otherPiece], ContactCache.featureKey(leaf, otherLeaf, 0));
+			return;
+		}
+		if(Math.max(SeparatingAxis.edgeCount(corners), SeparatingAxis.edgeCount(otherCorners)) >= Constants.GJK_MIN_CORNERS){
+			interactWithGJK(other, globalPieces[piece], other.globalPieces[otherPiece], ContactCache.featureKey(leaf, otherLeaf, 0));
+			return;
+		}
+		
+		SeparatingAxis.Result exit = exitResult.get();
+		boolean touching;
+		if(axisCache != null){
+			int cachedAxis = axisCache.get(leaf, otherLeaf);
+			touching = SeparatingAxis.contact(corners, otherCorners, cachedAxis, exit);
+			if(cachedAxis != -1 && !touching && exit.axis == cachedAxis)
+				Debug.logAxisCacheHit();
+			else
+				Debug.logAxisCacheMiss();
+			axisCache.put(leaf, otherLeaf, exit.axis);
+		}else{
+			touching = SeparatingAxis.contact(corners, otherCorners, -1, exit);
+		}
+		if(!touching) return;
+		
+		Contact manifold = contact.get();
+		if(!SeparatingAxis.manifold(corners, otherCorners, exit, manifold)) return;
+		enactManifold(other, manifold, leaf, otherLeaf);
+	}
+	
+	/**
+	 * Narrowphase for pairs of shape kinds with their own routine, see {@link CollisionDispatch}
+	 */
+	private void interactWithRoutine(CollisionDispatch.Routine<Convex, Convex> routine, int piece, Part other, int otherPiece, AxisCache axisCache){
+		Contact found = contact.get();
+		boolean touching;
+		if(axisCache != null){
+			int leaf = firstLeaf+piece, otherLeaf = other.firstLeaf+otherPiece;
+			int cachedAxis = axisCache.get(leaf, otherLeaf);
+			found.axis = cachedAxis;
+			touching = routine.collide(globalPieces[piece], other.globalPieces[otherPiece], found);
+			if(cachedAxis != -1 && !touching && found.axis == cachedAxis)
+				Debug.logAxisCacheHit();
+			else
+				Debug.logAxisCacheMiss();
+			axisCache.put(leaf, otherLeaf, found.axis);
+		}else{
+			found.axis = -1;
+			touching = routine.collide(globalPieces[piece], other.globalPieces[otherPiece], found);
+		}
+		if(!touching) return;
+		
+		enactManifold(other, found, firstLeaf+piece, other.firstLeaf+otherPiece);
+	}
+	
+	/**
+	 * Applies the contact forces of a manifold between a piece of this part and one of other, shared between it's points
+	 * @param leaf leaf of the piece of this part in the {@link PartTree} of it's body
+	 * @param otherLeaf leaf of the piece of other
+	 */
+	private void enactManifold(Part other, Contact manifold, int leaf, int otherLeaf){
+		int count = manifold.getPointCount();
+		for(int i = 0; i < count; i++)
+			enactContact(this, other, manifold.getPoint(i), manifold.getExit(i), 1.0/count, ContactCache.featureKey(leaf, otherLeaf, manifold.getFeature(i)));
+	}
+	
+	/**
+	 * Narrowphase for pieces with many corners, the force is applied halfway between the deepest points of both pieces
+	 */
+	private void interactWithGJK(Part other, Convex c, Convex oc, long feature){
+		GJK query = gjk.get();
+		if(!query.query(c, oc)) return;
+		
+		Vec2 forcePoint = Vec2.avg(query.getPointA(), query.getPointB());
+		
+		enactContact(this, other, forcePoint, query.getExit(), 1.0, feature);
+	}
+	
+	/**
+	 * Generic narrowphase for pieces which aren't both polygons
+	 */
+	private void interactWithConvex(Part other, Convex c, Convex oc, long feature){
+		Vec2 travelVec1 = c.getNearestExit(oc);
+		if(travelVec1 == null) return;
+		Vec2 travelVec2 = oc.getNearestExit(c);
+		if(travelVec2 == null) return;
+		
+		Convex intersection = c.intersection(oc);
+		
+		Vec2 forcePoint = intersection.getCenterOfMass();
+		
+		if(Debug.MARK_SHAPES) Debug.logShape(intersection, Color.PURPLE.fuzzier(0.2));
+		
+		
+		if(travelVec1.lengthSquared() < travelVec2.lengthSquared()){
+			// use travelVec1, c is base
+			enactContact(this, other, forcePoint, travelVec1, 1.0, feature);
+		}else{
+			// use travelVec2, oc is base
+			enactContact(other, this, forcePoint, travelVec2, 1.0, feature);
+		}
+	}
+	
+	/**
+	 * Applies the force of a contact point right away, or hands it to the {@link ContactReducer} of this thread
+	 * when it is collecting the contacts of a pair of bodies
+	 * @param feature identifies the point from tick to tick, see {@link ContactCache#featureKey(int, int, int)}
+	 */
+	private static void enactContact(Part base, Part intersector, Vec2 forceOrigin, Vec2 intersectDepth, double share, long feature){
+		ContactReducer reducer = ContactReducer.get();
+		if(reducer.isCollecting())
+			reducer.add(base, intersector, forceOrigin, intersectDepth, share, feature);
+		else
+			applyContact(base, intersector, forceOrigin, intersectDepth, share, null, -1);
+	}
+	
+	/**
+	 * Applies a contact point after reduction, as a penalty force, or as a contact of the {@link ImpulseSolver} or {@link XPBDSolver}
+	 * of this thread when it is collecting the contacts of an island
+	 * @param cache cache remembering this point, it keeps the impulses of the point between ticks. May be null
+	 * @param index index of the point in cache
+	 */
+	static void applyContact(Part base, Part intersector, Vec2 forceOrigin, Vec2 intersectDepth, double share, ContactCache cache, int index){
+		Debug.logPoint(forceOrigin, Color.PURPLE);
+		
+		ImpulseSolver solver = ImpulseSolver.get();
+		XPBDSolver positionSolver;
+		if(solver.isCollecting())
+			solver.add(base, intersector, forceOrigin, intersectDepth, cache, index);
+		else if((positionSolver = XPBDSolver.get()).isCollecting())
+			positionSolver.add(base, intersector, forceOrigin, intersectDepth);
+		else
+			enactTouchyForce(base, intersector, forceOrigin, intersectDepth, share);
+	}
+	
 	/**
 	 * @param base
 	 * @param intersector
-	 * @param bForceOrigin relative to base's CFrame
-	 * @param iForceOrigin relative to intersector's CFrame
+	 * @param forceOrigin <i>global</i>
 	 * @param intersectDepth in global axes
+	 * @param share part of the contact this point stands for, the forces of all points of a contact add up to those of a single point
 	 */
-	private static void enactTouchyForce(Part base, Part intersector, Vec2 bForceOrigin, Vec2 iForceOrigin, Vec2 intersectDepth){
-		
-		Vec2 FOLocToBase = base.relativeCFrame.localToGlobal(bForceOrigin).subtract(base.parent.centerOfMassRelative);
-		Vec2 FOLocToInter = intersector.relativeCFrame.localToGlobal(iForceOrigin).subtract(intersector.parent.centerOfMassRelative);
+	private static void enactTouchyForce(Part base, Part intersector, Vec2 forceOrigin, Vec2 intersectDepth, double share){
 		
-		Vec2 FORelToBase = base.parent.getCFrame().localToGlobalRotation(FOLocToBase);
-		Vec2 FORelToInter = intersector.parent.getCFrame().localToGlobalRotation(FOLocToInter);
+		Vec2 FORelToBase = forceOrigin.subtract(base.parent.getCenterOfMass());
+		Vec2 FORelToInter = forceOrigin.subtract(intersector.parent.getCenterOfMass());
 		
 		double baseInertia = base.parent.getPointInertia(FORelToBase, intersectDepth);
 		double intersectorInertia = intersector.parent.getPointInertia(FORelToInter, intersectDepth);
@@ -130,7 +324,7 @@ public class Part {
 		
 		Vec2 frictionForce = intersectDepth.rotate90CounterClockwise().reProject(-sidewaysComponent * Constants.VELOCITY_STOP_FACTOR * inertiaOfPoint);
 		
-		Vec2 totalForce = Vec2.sum(normalForce, frictionForce);
+		Vec2 totalForce = Vec2.sum(normalForce, frictionForce).mul(share);
 
 		base.parent.applyForceRelative(totalForce.neg(), FORelToBase);
 		intersector.parent.applyForceRelative(totalForce, FORelToInter);
@@ -0,0 +1,190 @@
+package physics2D.physics;
+
+import java.util.List;
+
+import physics2D.math.BoundingBox;
+import physics2D.math.CFrame;
+import physics2D.math.RotMat2;
+
+/**
+ * Bounding volume tree over the convex pieces of all parts of a body, in the body's local space.<br><br>
+ * 
+ * Two bodies only test the pieces whose boxes overlap, instead of every piece of every part against every piece of the other body.
+ * The tree is static, it is rebuilt by {@link RigidBody#recalculate()} whenever the parts of the body change.
+ */
+public class PartTree {
+	
+	/**
+	 * Receives pairs of pieces whose bounding boxes overlap
+	 */
+	public static interface PieceHandler {
+		/**
+		 * @param part part containing {@code piece}
+		 * @param piece index of the convex piece of part
+		 * @param otherPart part containing {@code otherPiece}
+		 * @param otherPiece index of the convex piece of otherPart
+		 */
+		public void accept(Part part, int piece, Part otherPart, int otherPiece);
+	}
+	
+	private static final int NULL = -1;
+	
+	private final Part[] leafParts;
+	private final int[] leafPieces;
+	
+	private final double[] xmin, ymin, xmax, ymax;
+	/** child1 is NULL for leaves, child2 is then the index of the leaf */
+	private final int[] child1, child2;
+	private int nodeCount = 0;
+	private final int root;
+	
+	public PartTree(List<Part> parts){
+		int leafCount = 0;
+		for(Part p:parts)
+			leafCount += p.localPieces.length;
+		
+		leafParts = new Part[leafCount];
+		leafPieces = new int[leafCount];
+		int leaf = 0;
+		for(Part p:parts){
+			p.firstLeaf = leaf;
+			for(int i = 0; i < p.localPieces.length; i++){
+				leafParts[leaf] = p;
+				leafPieces[leaf] = i;
+				leaf++;
+			}
+		}
+		
+		int capacity = Math.max(2*leafCount-1, 0);
+		xmin = new double[capacity];
+		ymin = new double[capacity];
+		xmax = new double[capacity];
+		ymax = new double[capacity];
+		child1 = new int[capacity];
+		child2 = new int[capacity];
+		
+		BoundingBox[] leafBounds = new BoundingBox[leafCount];
+		int[] order = new int[leafCount];
+		for(int i = 0; i < leafCount; i++){
+			leafBounds[i] = leafParts[i].localPieces[leafPieces[i]].transformToCFrame(leafParts[i].relativeCFrame).getBoundingBox();
+			order[i] = i;
+		}
+		
+		root = (leafCount == 0)? NULL : build(leafBounds, order, 0, leafCount);
+	}
+	
+	/**
+	 * Builds the subtree over order[start, end), splitting at the median centroid along the axis of largest centroid spread
+	 */
+	private int build(BoundingBox[] leafBounds, int[] order, int start, int end){
+		int node = nodeCount++;
+		
+		double nxmin = Double.POSITIVE_INFINITY, nymin = Double.POSITIVE_INFINITY;
+		double nxmax = Double.NEGATIVE_INFINITY, nymax = Double.NEGATIVE_INFINITY;
+		double cxmin = Double.POSITIVE_INFINITY, cymin = Double.POSITIVE_INFINITY;
+		double cxmax = Double.NEGATIVE_INFINITY, cymax = Double.NEGATIVE_INFINITY;
+		for(int i = start; i < end; i++){
+			BoundingBox b = leafBounds[order[i]];
+			nxmin = Math.min(nxmin, b.xmin); nymin = Math.min(nymin, b.ymin);
+			nxmax = Math.max(nxmax, b.xmax); nymax = Math.max(nymax, b.ymax);
+			double cx = b.xmin+b.xmax, cy = b.ymin+b.ymax;
+			cxmin = Math.min(cxmin, cx); cymin = Math.min(cymin, cy);
+			cxmax = Math.max(cxmax, cx); cymax = Math.max(cymax, cy);
+		}
+		xmin[node] = nxmin; ymin[node] = nymin;
+		xmax[node] = nxmax; ymax[node] = nymax;
+		
+		if(end-start == 1){
+			child1[node] = NULL;
+			child2[node] = order[start];
+			return node;
+		}
+		
+		boolean splitX = cxmax-cxmin >= cymax-cymin;
+		
+		// insertion sort on centroid, parts rarely have more than a handful of pieces
+		for(int i = start+1; i < end; i++){
+			int leaf = order[i];
+			double key = centroid(leafBounds[leaf], splitX);
+			int j = i-1;
+			while(j >= start && centroid(leafBounds[order[j]], splitX) > key){
+				order[j+1] = order[j];
+				j--;
+			}
+			order[j+1] = leaf;
+		}
+		
+		int mid = (start+end) / 2;
+		child1[node] = build(leafBounds, order, start, mid);
+		child2[node] = build(leafBounds, order, mid, end);
+		return node;
+	}
+	
+	private static double centroid(BoundingBox b, boolean x){
+		return x? b.xmin+b.xmax : b.ymin+b.ymax;
+	}
+	
+	/**
+	 * Reports every pair of pieces of this tree and {@code other} whose bounding boxes overlap
+	 * @param other tree of the other body
+	 * @param otherToThis transformation from the other body's local space to this body's local space
+	 * @param handler receives the pieces of this tree first
+	 */
+	public void forEachOverlap(PartTree other, CFrame otherToThis, PieceHandler handler){
+		if(root == NULL || other.root == NULL) return;
+		descend(root, other, other.root, otherToThis, handler);
+	}
+	
+	private void descend(int node, PartTree other, int otherNode, CFrame otherToThis, PieceHandler handler){
+		if(!overlaps(node, other, otherNode, otherToThis)) return;
+		
+		boolean leaf = child1[node] == NULL;
+		boolean otherLeaf = other.child1[otherNode] == NULL;
+		
+		if(leaf && otherLeaf){
+			int l = child2[node], ol = other.child2[otherNode];
+			handler.accept(leafParts[l], leafPieces[l], other.leafParts[ol], other.leafPieces[ol]);
+		}else if(otherLeaf || (!leaf && area(node) >= other.area(otherNode))){
+			descend(child1[node], other, otherNode, otherToThis, handler);
+			descend(child2[node], other, otherNode, otherToThis, handler);
+		}else{
+			descend(node, other, other.child1[otherNode], otherToThis, handler);
+			descend(node, other, other.child2[otherNode], otherToThis, handler);
+		}
+	}
+	
+	/**
+	 * Tests this tree's node against the bounding box of the other tree's node after transforming it into this tree's space
+	 */
+	private boolean overlaps(int node, PartTree other, int otherNode, CFrame otherToThis){
+		RotMat2 r = otherToThis.rotation;
+		double hx = (other.xmax[otherNode]-other.xmin[otherNode]) / 2;
+		double hy = (other.ymax[otherNode]-other.ymin[otherNode]) / 2;
+		double cx = (other.xmax[otherNode]+other.xmin[otherNode]) / 2;
+		double cy = (other.ymax[otherNode]+other.ymin[otherNode]) / 2;
+		
+		double tcx = r.a*cx + r.b*cy + otherToThis.position.x;
+		double tcy = r.c*cx + r.d*cy + otherToThis.position.y;
+		double thx = Math.abs(r.a)*hx + Math.abs(r.b)*hy;
+		double thy = Math.abs(r.c)*hx + Math.abs(r.d)*hy;
+		
+		return xmin[node] < tcx+thx && tcx-thx < xmax[node] &&
+				ymin[node] < tcy+thy && tcy-thy < ymax[node];
+	}
+	
+	private double area(int node){
+		return (xmax[node]-xmin[node]) * (ymax[node]-ymin[node]);
+	}
+	
+	/**
+	 * @return the bounding box of all pieces, local to the body
+	 */
+	public BoundingBox getBounds(){
+		if(root == NULL) return null;
+		return new BoundingBox(xmin[root], ymin[root], xmax[root], ymax[root]);
+	}
+	
+	public int getLeafCount(){
+		return leafPieces.length;
+	}
+}
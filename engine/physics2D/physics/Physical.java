@@ -4,6 +4,7 @@ import game.util.Color;
 import physics2D.Debug;
 import physics2D.geom.Shape;
 import physics2D.math.CFrame;
+import physics2D.math.Constants;
 import physics2D.math.Mat2;
 import physics2D.math.RotMat2;
 import physics2D.math.Vec2;
@@ -76,11 +77,35 @@ public class Physical extends RigidBody {
 	 */
 	public void applyImpulse(Vec2 impulse, Vec2 attachment){
 		if(anchored) return;
+		wake();
 		
 		velocity = velocity.add(impulse.div(mass));
 		angularVelocity += attachment.subtract(getCenterOfMass()).cross(impulse) / inertia;
 	}
 	
+	@Override
+	public void applyImpulseRelative(Vec2 impulse, Vec2 relativeAttachment){
+		if(anchored || sleeping) return;
+		
+		velocity = velocity.add(impulse.div(mass));
+		angularVelocity += relativeAttachment.cross(impulse) / inertia;
+	}
+	
+	@Override
+	public void applyPositionalImpulseRelative(Vec2 impulse, Vec2 relativeAttachment){
+		if(anchored || sleeping) return;
+		
+		rotateAroundCenterOfMass(new RotMat2(relativeAttachment.cross(impulse) / inertia));
+		move(impulse.div(mass));
+	}
+	
+	@Override
+	public void applyPositionalTorqueImpulse(double torqueImpulse){
+		if(anchored || sleeping) return;
+		
+		rotateAroundCenterOfMass(new RotMat2(torqueImpulse / inertia));
+	}
+	
 	/**
 	 * Applies a given torque impulse to this object, changing it's angular momentum by torqueImpulse/inertia
 	 * @param torqueImpulse torque impulse
@@ -96,6 +121,7 @@ public class Physical extends RigidBody {
 	 */
 	public void applyImpulseAtCenterOfMass(Vec2 impulse){
 		if(anchored) return;
+		wake();
 		velocity = velocity.add(impulse.div(mass));
 	}
 	
@@ -119,7 +145,7 @@ public class Physical extends RigidBody {
 	 */
 	@Override
 	public void update(double deltaT){
-		if(anchored) return;
+		if(anchored || sleeping) return;
 		
 		Vec2 acceleration = getAcceleration();
 		double angularAcceleration = getRotAccelertation();
@@ -140,6 +166,91 @@ public class Physical extends RigidBody {
 		super.update(deltaT);
 	}
 	
+	/**
+	 * First half of {@link #update(double)} for {@link SolverMode#IMPULSE}, the contact impulses are applied in between. <br>
+	 * Then resets the total force and momentum. <br><br>
+	 * 
+	 * velocity += acceleration * dT<br>
+	 * angularVel += angularAcceleration * dT<br><br>
+	 * 
+	 * @param deltaT time interval to next frame
+	 */
+	public void updateVelocity(double deltaT){
+		if(anchored || sleeping) return;
+		
+		velocity = velocity.add(getAcceleration().mul(deltaT));
+		angularVelocity += getRotAccelertation() * deltaT;
+		
+		super.update(deltaT);
+	}
+	
+	/**
+	 * Second half of {@link #update(double)} for {@link SolverMode#IMPULSE}, moves this physical at it's current velocity<br><br>
+	 * 
+	 * position += vel*dT<br>
+	 * rotation += angularVel*dT<br><br>
+	 * 
+	 * @param deltaT time interval to next frame
+	 */
+	public void updatePosition(double deltaT){
+		if(anchored || sleeping) return;
+		
+		Vec2 relCOM = cframe.localToGlobalRotation(centerOfMassRelative);
+		
+		RotMat2 rot = new RotMat2(angularVelocity * deltaT);
+		
+		move(velocity.mul(deltaT).add(relCOM.subtract(rot.mul(relCOM))));
+		rotate(rot);
+	}
+	
+	/**
+	 * Substep of {@link SolverMode#XPBD}, accelerates this physical by the applied forces and moves it at it's new velocity.
+	 * The forces are kept for the next substep.
+	 * 
+	 * @param deltaT length of the substep
+	 */
+	public void updateSubstep(double deltaT){
+		if(anchored || sleeping) return;
+		
+		velocity = velocity.add(getAcceleration().mul(deltaT));
+		angularVelocity += getRotAccelertation() * deltaT;
+		
+		updatePosition(deltaT);
+	}
+	
+	/**
+	 * Sets the velocity of this physical to the motion since the given pose, for {@link SolverMode#XPBD}
+	 * where the physicals are moved by the constraints directly
+	 * 
+	 * @param previous the cframe of this physical deltaT ago
+	 * @param deltaT time since previous
+	 */
+	public void deriveVelocity(CFrame previous, double deltaT){
+		if(anchored || sleeping) return;
+		
+		Vec2 previousCOM = previous.localToGlobal(centerOfMassRelative);
+		velocity = getCenterOfMass().subtract(previousCOM).div(deltaT);
+		angularVelocity = cframe.rotation.mul(previous.rotation.inv()).getAngle() / deltaT;
+	}
+	
+	@Override
+	public boolean isMoving(){
+		return velocity.lengthSquared() > Constants.SLEEP_VELOCITY*Constants.SLEEP_VELOCITY || 
+				Math.abs(angularVelocity) * radius > Constants.SLEEP_ANGULAR_VELOCITY;
+	}
+	
+	/**
+	 * Puts this physical to sleep, stopping it completely
+	 */
+	@Override
+	public void sleep(){
+		super.sleep();
+		if(sleeping){
+			velocity = Vec2.ZERO;
+			angularVelocity = 0;
+		}
+	}
+	
 	public double getKineticEnergy(){
 		return getMass()*velocity.lengthSquared()/2 + getInertia()*angularVelocity*angularVelocity/2;
 	}
@@ -164,6 +275,15 @@ public class Physical extends RigidBody {
 		cframe = cframe.rotated(rotation);
 	}
 	
+	/**
+	 * rotates this physical around it's center of mass, instead of the origin of it's cframe
+	 */
+	private void rotateAroundCenterOfMass(RotMat2 rotation){
+		Vec2 relCOM = cframe.localToGlobalRotation(centerOfMassRelative);
+		move(relCOM.subtract(rotation.mul(relCOM)));
+		rotate(rotation);
+	}
+	
 	/**
 	 * Returns the acceleration of a point, were it to lie on this object. 
 	 * @param point <i>global</i>
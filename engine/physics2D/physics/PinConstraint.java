@@ -39,4 +39,36 @@ public class PinConstraint extends Constraint {
 		part1.actionReaction(part2, attachPoint, deltaForce);
 		part1.actionReaction(part2, attachPoint, relSpeedForce);
 	}
+	
+	@Override
+	boolean supportsImplicit(){
+		return true;
+	}
+	
+	/**
+	 * The same stiffness and damping as {@link #enact()}, both linear.
+	 * The extra damping along delta in {@link #enact()} is never applied, it's {@code relSpeedForce.add(...)} drops the result as Vec2 is immutable
+	 */
+	@Override
+	void addSprings(ImplicitSpringSolver solver){
+		Vec2 attachPoint = getGlobalAttachPos1();
+		
+		Debug.logPoint(attachPoint, Color.RED);
+		Debug.logVector(attachPoint, getGlobalAttachPos2().subtract(attachPoint), Color.GREEN);
+		
+		solver.addPoints(part1, attachPoint, part2, getGlobalAttachPos2(), part1.getMass()*PIN_DELTA_STRENGTH, part1.getMass()*PIN_MOVEMENT_STRENGTH);
+	}
+	
+	@Override
+	boolean supportsProjection(){
+		return true;
+	}
+	
+	/**
+	 * Projected, the pin is rigid
+	 */
+	@Override
+	void project(XPBDSolver solver){
+		solver.projectPoints(part1, getGlobalAttachPos1(), part2, getGlobalAttachPos2(), 0);
+	}
 }
@@ -3,11 +3,16 @@ package physics2D.physics;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import physics2D.Debug;
+import physics2D.geom.Circle;
+import physics2D.geom.Polygon;
+import physics2D.geom.RoundedPolygon;
 import physics2D.geom.Shape;
 import physics2D.math.BoundingBox;
 import physics2D.math.CFrame;
+import physics2D.math.Constants;
 import physics2D.math.Mat2;
 import physics2D.math.NormalizedVec2;
 import physics2D.math.OrientedPoint;
@@ -15,6 +20,11 @@ import physics2D.math.Vec2;
 
 public abstract class RigidBody implements Locatable {
 	
+	private static final AtomicInteger nextId = new AtomicInteger();
+	
+	/** unique and stable identifier of this body, used to key pairs of bodies */
+	public final int id = nextId.getAndIncrement();
+	
 	public double mass = 0;
 	public double inertia = 0;
 	
@@ -25,11 +35,35 @@ public abstract class RigidBody implements Locatable {
 	
 	public boolean anchored = false;
 	
+	/** sleeping bodies are not updated and ignore all forces from contacts and constraints, until they are woken with {@link #wake()} */
+	boolean sleeping = false;
+	/** the time this body has been slower than the sleep thresholds */
+	double restTime = 0;
+	
 	public final List<Part> parts = new ArrayList<>();
 	
 	public Vec2 centerOfMassRelative = Vec2.ZERO;
 	
 	protected BoundingBox boundsCache = new BoundingBox(0.0, 0.0, 0.0, 0.0);
+	/** the CFrame for which boundsCache was computed */
+	private CFrame boundsCFrame = null;
+	/** corners of all parts, local to this body. The bounding box is spanned by the extremes of these after transforming them to the body's CFrame */
+	private double[] localCornersX = new double[0];
+	private double[] localCornersY = new double[0];
+	/** radius around each corner which is also part of the body, 0 except for circles and rounded polygons */
+	private double[] localCornersRadius = new double[0];
+	/** distance from the center of mass to the furthest point */
+	protected double radius = 0;
+	
+	/** tree over the convex pieces of all parts, local to this body */
+	protected PartTree partTree = new PartTree(parts);
+	
+	/** the world this body is part of, notified when this body is anchored or unanchored */
+	World world = null;
+	/** index in the world's dynamic physicals, set every tick when islands are built */
+	int islandIndex = -1;
+	/** index in the {@link ImplicitSpringSolver} of this body's island, only valid while it is solving */
+	int springIndex = -1;
 	
 	public RigidBody(){}
 	
@@ -60,7 +94,8 @@ public abstract class RigidBody implements Locatable {
 	public void recalculate(){
 		recalculateCenterOfMass();
 		recalculateInertia();
-		boundsCache = calculateBoundingBox();
+		partTree = new PartTree(parts);
+		recalculateLocalCorners();
 	}
 	
 	private void recalculateCenterOfMass(){
@@ -94,15 +129,77 @@ public abstract class RigidBody implements Locatable {
 		this.inertia = totalInertia;
 	}
 	
-	private BoundingBox calculateBoundingBox(){
-		BoundingBox[] boxes = new BoundingBox[parts.size()];
-		for(int i = 0; i < parts.size(); i++)
-			boxes[i] = parts.get(i).getBoundingBox();
+	/**
+	 * Collects the corners of all parts in this body's local space, circles contribute their center and radius
+	 * and rounded polygons the corners of their core and their radius, other shapes which aren't polygons contribute the corners of their bounding box
+	 */
+	private void recalculateLocalCorners(){
+		List<Vec2> corners = new ArrayList<>();
+		List<Double> radii = new ArrayList<>();
+		for(Part p:parts){
+			Vec2[] partCorners;
+			double partRadius = 0;
+			if(p.shape instanceof Polygon){
+				partCorners = ((Polygon) p.shape).getCorners();
+			}else if(p.shape instanceof Circle){
+				partCorners = new Vec2[]{((Circle) p.shape).center};
+				partRadius = ((Circle) p.shape).radius;
+			}else if(p.shape instanceof RoundedPolygon){
+				partCorners = ((RoundedPolygon) p.shape).core.getCorners();
+				partRadius = ((RoundedPolygon) p.shape).radius;
+			}else{
+				BoundingBox b = p.shape.getBoundingBox();
+				partCorners = new Vec2[]{new Vec2(b.xmin, b.ymin), new Vec2(b.xmax, b.ymin), new Vec2(b.xmax, b.ymax), new Vec2(b.xmin, b.ymax)};
+			}
+			for(Vec2 corner:partCorners){
+				corners.add(p.relativeCFrame.localToGlobal(corner));
+				radii.add(partRadius);
+			}
+		}
 		
-		return BoundingBox.mergeBoxes(boxes);
+		localCornersX = new double[corners.size()];
+		localCornersY = new double[corners.size()];
+		localCornersRadius = new double[corners.size()];
+		radius = 0;
+		for(int i = 0; i < corners.size(); i++){
+			localCornersX[i] = corners.get(i).x;
+			localCornersY[i] = corners.get(i).y;
+			localCornersRadius[i] = radii.get(i);
+			radius = Math.max(radius, corners.get(i).subtract(centerOfMassRelative).length() + localCornersRadius[i]);
+		}
+		boundsCFrame = null;
 	}
 	
-	public BoundingBox getBoundingBox(){return boundsCache;}
+	private BoundingBox calculateBoundingBox(CFrame cframe){
+		if(localCornersX.length == 0) return BoundingBox.mergeBoxes(new BoundingBox[0]);
+		
+		Mat2 r = cframe.rotation;
+		double xmin = Double.POSITIVE_INFINITY, ymin = Double.POSITIVE_INFINITY;
+		double xmax = Double.NEGATIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < localCornersX.length; i++){
+			double lx = localCornersX[i], ly = localCornersY[i], lr = localCornersRadius[i];
+			double x = r.a*lx + r.b*ly;
+			double y = r.c*lx + r.d*ly;
+			xmin = Math.min(xmin, x-lr); xmax = Math.max(xmax, x+lr);
+			ymin = Math.min(ymin, y-lr); ymax = Math.max(ymax, y+lr);
+		}
+		
+		Vec2 pos = cframe.position;
+		return new BoundingBox(xmin + pos.x, ymin + pos.y, xmax + pos.x, ymax + pos.y);
+	}
+	
+	/**
+	 * Returns the bounding box of this body, it is only recomputed when the body has moved since the last call
+	 */
+	public BoundingBox getBoundingBox(){
+		CFrame cframe = getCFrame();
+		if(cframe != boundsCFrame){
+			boundsCache = calculateBoundingBox(cframe);
+			boundsCFrame = cframe;
+			Debug.logBoundsUpdate(this);
+		}
+		return boundsCache;
+	}
 	
 	@Override
 	public abstract CFrame getCFrame();
@@ -118,31 +215,133 @@ public abstract class RigidBody implements Locatable {
 	public abstract Vec2 getSpeedOfPoint(Vec2 point);
 	public abstract Vec2 getSpeedOfRelPoint(Vec2 relPoint);
 	
+	/**
+	 * Changes the velocity of this body by the given impulse right away, without waking it. Anchored and sleeping bodies don't move.
+	 * @param impulse
+	 * @param relativeAttachment the point at which the impulse attaches, relative to the center of mass
+	 */
+	public abstract void applyImpulseRelative(Vec2 impulse, Vec2 relativeAttachment);
+	
+	/**
+	 * Moves this body right away by the given positional impulse, the displacement it would get from the same impulse in a unit of time.
+	 * Used by {@link SolverMode#XPBD}, anchored and sleeping bodies don't move.
+	 * @param impulse
+	 * @param relativeAttachment the point at which the impulse attaches, relative to the center of mass
+	 */
+	public abstract void applyPositionalImpulseRelative(Vec2 impulse, Vec2 relativeAttachment);
+	
+	/**
+	 * Rotates this body right away around it's center of mass by the given positional torque impulse divided by it's inertia
+	 * @param torqueImpulse
+	 */
+	public abstract void applyPositionalTorqueImpulse(double torqueImpulse);
+	
 	public void update(double deltaT){
-		
+		clearForces();
+	}
+	
+	/**
+	 * Resets the total force and moment applied to this body
+	 */
+	public void clearForces(){
 		totalForce = Vec2.ZERO;
 		totalMoment = 0.0;
-		
-		boundsCache = calculateBoundingBox();
 	}
 	
+	/**
+	 * @return true if this body moves or rotates faster than {@link Constants#SLEEP_VELOCITY} or {@link Constants#SLEEP_ANGULAR_VELOCITY}
+	 */
+	public abstract boolean isMoving();
+	
+	/**
+	 * Puts this body to sleep once it has been resting for {@link Constants#SLEEP_TIME}, called by the world after every update
+	 */
+	public void updateSleepState(double deltaT){
+		if(isMoving()){
+			restTime = 0;
+		}else{
+			restTime += deltaT;
+			if(restTime >= Constants.SLEEP_TIME)
+				sleep();
+		}
+	}
+	
+	public void sleep(){
+		if(!sleeping && !anchored){
+			sleeping = true;
+			Debug.logSleep(this);
+		}
+	}
+	
+	/**
+	 * Wakes this body if it is sleeping, discarding any forces it ignored while asleep
+	 */
+	public void wake(){
+		if(sleeping){
+			sleeping = false;
+			restTime = 0;
+			totalForce = Vec2.ZERO;
+			totalMoment = 0.0;
+			Debug.logWake(this);
+		}
+	}
+	
+	public boolean isSleeping(){return sleeping;}
+	
 	public void interactWith(RigidBody otherObj){
-		if(this.boundsCache.intersects(otherObj.boundsCache)){
-			for(Part cur:parts){
-				for(Part other:otherObj.parts){
-					cur.interactWith(other);
-				}
+		interactWith(otherObj, null);
+	}
+	
+	/**
+	 * The contacts of all overlapping pieces are collected and reduced by the {@link ContactReducer} before their forces are applied
+	 * @param axisCache separating axis cache of the pair of this body and otherObj, this body must be it's first. May be null
+	 */
+	public void interactWith(RigidBody otherObj, AxisCache axisCache){
+		interactWith(otherObj, axisCache, null, 0.0, 0.0);
+	}
+	
+	/**
+	 * @param axisCache separating axis cache of the pair of this body and otherObj, this body must be it's first. May be null
+	 * @param contactCache contacts of the pair found before, reused while otherObj stays within the given tolerances of the pose relative to this body they were found for. May be null
+	 * @param maxTranslation largest distance otherObj may move relative to this body before the contacts are found again
+	 * @param maxRotation largest angle otherObj may rotate relative to this body before the contacts are found again
+	 */
+	public void interactWith(RigidBody otherObj, AxisCache axisCache, ContactCache contactCache, double maxTranslation, double maxRotation){
+		if(this.getBoundingBox().intersects(otherObj.getBoundingBox())){
+			CFrame otherToThis = getCFrame().globalToLocal(otherObj.getCFrame());
+			if(contactCache != null && contactCache.reuse(this, otherToThis, maxTranslation, maxRotation)) return;
+			
+			ContactReducer reducer = ContactReducer.get();
+			reducer.begin(this);
+			try{
+				partTree.forEachOverlap(otherObj.partTree, otherToThis, (axisCache == null)? Part::interactWith : axisCache.handler);
+			}finally{
+				reducer.finish(contactCache, otherToThis);
 			}
+		}else if(contactCache != null){
+			contactCache.clear();
 		}
 	}
 	
+	public PartTree getPartTree(){return partTree;}
+	
+	/**
+	 * Brings the lazily computed bounds and global part caches up to date, so they can safely be read from multiple threads
+	 */
+	void refreshCaches(){
+		getBoundingBox();
+		for(Part p:parts)
+			p.getGlobalCFrame();
+	}
+	
 	/**
-	 * Applies a given force to the object.
+	 * Applies a given force to the object, waking it if it is sleeping.
 	 * 
 	 * @param force force vector to be applied
 	 * @param attachment origin of the force <br><i>global</i>
 	 */
 	public void applyForce(Vec2 force, Vec2 attachment){
+		wake();
 		Vec2 relative = attachment.subtract(getCenterOfMass());
 		
 		applyForceRelative(force, relative);
@@ -154,7 +353,7 @@ public abstract class RigidBody implements Locatable {
 	 * @param relativeAttachment origin of the force <br><i>relative to COM</i>
 	 */
 	public void applyForceRelative(Vec2 force, Vec2 relativeAttachment){
-		if(anchored) return;
+		if(anchored || sleeping) return;
 		
 		totalForce = totalForce.add(force);
 		totalMoment += relativeAttachment.cross(force);
@@ -162,9 +361,12 @@ public abstract class RigidBody implements Locatable {
 		Debug.logForce(this, getCFrame().globalToLocalRotation(relativeAttachment.add(centerOfMassRelative)), force);
 	}
 	
+	/**
+	 * Applies equal and opposite forces to this and other, unlike {@link #applyForce(Vec2, Vec2)} this does not wake sleeping bodies
+	 */
 	public void actionReaction(RigidBody other, Vec2 globalPos, Vec2 force){
-		applyForce(force, globalPos);
-		other.applyForce(force.neg(), globalPos);
+		applyForceRelative(force, globalPos.subtract(getCenterOfMass()));
+		other.applyForceRelative(force.neg(), globalPos.subtract(other.getCenterOfMass()));
 	}
 	
 	public void actionRotaction(RigidBody other, double torque) {
@@ -178,7 +380,7 @@ public abstract class RigidBody implements Locatable {
 	 * @param force force vector to be applied <br><i>local to this physical</i>
 	 */
 	public void applyForceAtCenterOfMass(Vec2 force){
-		if(anchored) return;
+		if(anchored || sleeping) return;
 		totalForce = totalForce.add(force);
 		
 		Debug.logForce(this, getCFrame().globalToLocal(getCenterOfMass()), force);
@@ -190,7 +392,7 @@ public abstract class RigidBody implements Locatable {
 	 * @param torque torque
 	 */
 	public void applyTorque(double torque){
-		if(anchored) return;
+		if(anchored || sleeping) return;
 		totalMoment += torque;
 	}
 	
@@ -257,8 +459,18 @@ public abstract class RigidBody implements Locatable {
 		return massFactor.add(rotFactor);
 	}
 	
-	public void anchor() {anchored = true;}
-	public void unAnchor() {anchored = false;}
+	public void anchor() {
+		if(!anchored){
+			anchored = true;
+			if(world != null) world.anchorChanged(this);
+		}
+	}
+	public void unAnchor() {
+		if(anchored){
+			anchored = false;
+			if(world != null) world.anchorChanged(this);
+		}
+	}
 	public boolean isAnchored(){return anchored;}
 
 	public double getMass() {return mass;}
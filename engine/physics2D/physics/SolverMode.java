@@ -0,0 +1,21 @@
+package physics2D.physics;
+
+/**
+ * How a {@link World} resolves contacts between bodies, see {@link World#solverMode}
+ */
+public enum SolverMode {
+	/**
+	 * Touching bodies push eachother apart with stiff springs, see {@link Part}. Needs small ticks, about 2ms, to stay stable
+	 */
+	PENALTY,
+	/**
+	 * Touching bodies exchange impulses which stop them from moving into eachother, see {@link ImpulseSolver}.
+	 * Stays stable with ticks of 10ms
+	 */
+	IMPULSE,
+	/**
+	 * Each tick is split into substeps, every substep touching bodies and constraints move the bodies to where they should be,
+	 * see {@link XPBDSolver}. Stays stable with ticks of 10ms, constraints included
+	 */
+	XPBD
+}
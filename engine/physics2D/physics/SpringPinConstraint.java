@@ -24,4 +24,27 @@ public class SpringPinConstraint extends Constraint {
 		
 		part1.actionReaction(part2, firstPos, delta.mul(pinForce));
 	}
+	
+	@Override
+	boolean supportsImplicit(){
+		return true;
+	}
+	
+	@Override
+	void addSprings(ImplicitSpringSolver solver){
+		solver.addPoints(part1, getGlobalAttachPos1(), part2, getGlobalAttachPos2(), pinForce, 0);
+	}
+	
+	@Override
+	boolean supportsProjection(){
+		return true;
+	}
+	
+	/**
+	 * Projected with a compliance of 1/pinForce, the same stiffness as the force
+	 */
+	@Override
+	void project(XPBDSolver solver){
+		solver.projectPoints(part1, getGlobalAttachPos1(), part2, getGlobalAttachPos2(), 1/pinForce);
+	}
 }
@@ -3,10 +3,21 @@ package physics2D.physics;
 import game.util.Color;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
 
 import physics2D.Debug;
 import physics2D.math.Constants;
 import physics2D.math.Vec2;
+import physics2D.physics.broadphase.AABBTreeBroadphase;
+import physics2D.physics.broadphase.BodyPair;
+import physics2D.physics.broadphase.Broadphase;
+import physics2D.physics.broadphase.PairCache;
+import physics2D.physics.broadphase.PairListener;
+import physics2D.physics.broadphase.SortAndSweepBroadphase;
 
 
 public class World {
@@ -17,6 +28,57 @@ public class World {
 	public final ArrayList<Physical> physicals = new ArrayList<>();
 	public final ArrayList<Constraint> constraints = new ArrayList<>();
 	
+	/** allows resting physicals to be put to sleep, see {@link RigidBody#updateSleepState(double)} */
+	public boolean sleepingEnabled = true;
+	
+	/**
+	 * the contacts of a pair of bodies are reused while the bodies move less than these tolerances relative to eachother, see {@link ContactCache}<br>
+	 * negative tolerances disable the reuse
+	 */
+	public double contactCacheTranslationTolerance = Constants.CONTACT_CACHE_TRANSLATION_TOLERANCE;
+	public double contactCacheRotationTolerance = Constants.CONTACT_CACHE_ROTATION_TOLERANCE;
+	
+	/** how contacts are resolved, can be changed between ticks */
+	public SolverMode solverMode = SolverMode.PENALTY;
+	/** passes over all contacts of an island per tick in {@link SolverMode#IMPULSE} */
+	public int impulseIterations = Constants.IMPULSE_ITERATIONS;
+	/** starts the impulse solver of each tick from the impulses of the last tick, see {@link ImpulseSolver} */
+	public boolean warmStarting = true;
+	/** substeps per tick in {@link SolverMode#XPBD} */
+	public int xpbdSubsteps = Constants.XPBD_SUBSTEPS;
+	/**
+	 * enacts springs with the force they have at the end of the tick, see {@link ImplicitSpringSolver}. Not used by {@link SolverMode#XPBD}<br>
+	 * off by default, springs then behave exactly as {@link Constraint#enact()}
+	 */
+	public boolean implicitSprings = false;
+	
+	/** physicals which are not anchored, only these are updated and paired with eachother */
+	private final ArrayList<Physical> dynamicPhysicals = new ArrayList<>();
+	
+	/** broadphase over the dynamic physicals */
+	private Broadphase broadphase = new SortAndSweepBroadphase();
+	/** anchored physicals don't move by themselves, they are kept in a tree which only changes when anchored bodies are added, removed or moved by hand */
+	private final AABBTreeBroadphase anchoredPhysicals = new AABBTreeBroadphase(0.0, 0.0);
+	
+	/** all pairs of overlapping physicals, kept across ticks */
+	private final PairCache pairCache = new PairCache();
+	private final BiConsumer<RigidBody, RigidBody> pairHandler = this::touchPair;
+	
+	/** length of the tick being computed */
+	private double tickDeltaT;
+	
+	/** the pairs found this tick, in the order the broadphase found them */
+	private BodyPair[] tickPairs = new BodyPair[64];
+	private int tickPairCount = 0;
+	
+	/** islands with less pairs and constraints than this are solved together in a single task */
+	private static final int ISLAND_BATCH_WORK = 64;
+	/** constraints of the same colour are enacted in tasks of at most this many, see {@link Islands} */
+	private static final int CONSTRAINT_BATCH_SIZE = 32;
+	private final Islands islands = new Islands();
+	/** pool the islands are solved on, or null to solve them on the thread calling {@link #tick(double)} */
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	
 	private Vec2 magnetTarget = null;
 	private Physical magnetSubject = null;
 	private Vec2 magnetAttachPoint = null;
@@ -24,11 +86,28 @@ public class World {
 	
 	public World(Vec2 gravity){
 		this.gravity = gravity;
+		
+		// a sleeping physical may have been resting on a body which moved away or was removed
+		pairCache.addListener(new PairListener(){
+			@Override
+			public void pairEnd(BodyPair pair){
+				pair.first.wake();
+				pair.second.wake();
+			}
+		});
 	}
 	
 	public synchronized void addObject(Physical... objects){
-		for(Physical p:objects)
+		for(Physical p:objects){
 			physicals.add(p);
+			p.world = this;
+			if(p.isAnchored()){
+				anchoredPhysicals.add(p);
+			}else{
+				dynamicPhysicals.add(p);
+				broadphase.add(p);
+			}
+		}
 	}
 	
 	public synchronized boolean removeObject(Part part) {
@@ -37,6 +116,13 @@ public class World {
 			if(p.parts.remove(part)){
 				if(p.parts.size() == 0){
 					physicals.remove(i);
+					p.world = null;
+					if(p.isAnchored()){
+						anchoredPhysicals.remove(p);
+					}else{
+						dynamicPhysicals.remove(p);
+						broadphase.remove(p);
+					}
 					
 					for(int j = 0; j < constraints.size(); j++){
 						Constraint c = constraints.get(j);
@@ -46,6 +132,11 @@ public class World {
 					}
 				}else{
 					p.recalculate();
+					if(p.isAnchored()){
+						// the anchored tree is not refitted automatically
+						anchoredPhysicals.remove(p);
+						anchoredPhysicals.add(p);
+					}
 				}
 				return true;
 			}
@@ -53,41 +144,328 @@ public class World {
 		return false;
 	}
 	
+	/**
+	 * Moves the given body between the anchored and dynamic sets, called by {@link RigidBody#anchor()} and {@link RigidBody#unAnchor()}
+	 */
+	synchronized void anchorChanged(RigidBody body){
+		Physical p = (Physical) body;
+		p.wake();
+		if(p.isAnchored()){
+			dynamicPhysicals.remove(p);
+			broadphase.remove(p);
+			anchoredPhysicals.add(p);
+		}else{
+			anchoredPhysicals.remove(p);
+			dynamicPhysicals.add(p);
+			broadphase.add(p);
+		}
+	}
+	
+	/**
+	 * Replaces the broadphase used to find possibly touching pairs among the dynamic physicals, these are all moved into the new broadphase
+	 * @param broadphase an empty broadphase
+	 */
+	public synchronized void setBroadphase(Broadphase broadphase){
+		for(Physical p:dynamicPhysicals)
+			broadphase.add(p);
+		this.broadphase = broadphase;
+	}
+	
+	public Broadphase getBroadphase(){return broadphase;}
+	
+	/**
+	 * @return the pairs of physicals whose bounding boxes overlapped in the last tick, listeners can be added to it to be notified when pairs begin and end
+	 */
+	public PairCache getPairCache(){return pairCache;}
+	
+	/**
+	 * Sets the pool used to solve the islands of each tick in parallel. The results are the same as when solving them serially.
+	 * @param pool the pool to use, or null to solve all islands on the thread calling {@link #tick(double)}
+	 */
+	public synchronized void setForkJoinPool(ForkJoinPool pool){
+		this.pool = pool;
+	}
+	
+	/**
+	 * @return the amount of islands with any pairs or constraints in the last tick
+	 */
+	public int getIslandCount(){return islands.getIslandCount();}
+	
 	public synchronized void addConstraint(Constraint... consts){
 		for(Constraint c:consts)
 			constraints.add(c);
 	}
 	
 	public synchronized void tick(double deltaT) {
-		updatePhysicals(deltaT);
-		applyExternalForces(deltaT);
-		computeInteractions(deltaT);
-		executeConstraints(deltaT);
+		tickDeltaT = deltaT;
+		if(solverMode == SolverMode.IMPULSE){
+			// the contact impulses are solved after the forces change the velocities, and before the velocities move the physicals
+			applyExternalForces(deltaT);
+			updateVelocities(deltaT);
+			findPairs();
+			solveIslands();
+			updatePositions(deltaT);
+		}else if(solverMode == SolverMode.XPBD){
+			// the physicals of islands are stepped by their solver, the others move freely
+			applyExternalForces(deltaT);
+			findPairs();
+			solveIslands();
+			updateFreePhysicals(deltaT);
+		}else{
+			updatePhysicals(deltaT);
+			applyExternalForces(deltaT);
+			findPairs();
+			solveIslands();
+		}
+		executeMagnet(deltaT);
 	}
 	
 	private void updatePhysicals(double deltaT) {
-		for(Physical p:physicals){
+		for(Physical p:dynamicPhysicals){
+			if(p.isSleeping()) continue;
 			p.update(deltaT);
+			if(sleepingEnabled) p.updateSleepState(deltaT);
+		}
+	}
+	
+	/**
+	 * updates the physicals which are not in any island, and the sleep state of all physicals
+	 */
+	private void updateFreePhysicals(double deltaT) {
+		for(Physical p:dynamicPhysicals){
+			if(p.isSleeping()) continue;
+			if(islands.getIslandOf(p) == -1) p.update(deltaT);
+			if(sleepingEnabled) p.updateSleepState(deltaT);
+		}
+	}
+	
+	private void updateVelocities(double deltaT) {
+		for(Physical p:dynamicPhysicals){
+			if(p.isSleeping()) continue;
+			p.updateVelocity(deltaT);
+		}
+	}
+	
+	private void updatePositions(double deltaT) {
+		for(Physical p:dynamicPhysicals){
+			if(p.isSleeping()) continue;
+			p.updatePosition(deltaT);
+			if(sleepingEnabled) p.updateSleepState(deltaT);
 		}
 	}
 	
 	private void applyExternalForces(double deltaT) {
-		for(Physical p:physicals){
+		for(Physical p:dynamicPhysicals){
+			if(p.isSleeping()) continue;
 			// gravity
 			p.applyForceAtCenterOfMass(gravity.mul(p.getMass()));
 		}
 	}
 	
-	private void computeInteractions(double deltaT) {
-		for(int i = 0; i < physicals.size(); i++){
-			for(int j = i+1; j < physicals.size(); j++){
-				physicals.get(i).interactWith(physicals.get(j));
-				Debug.logInteraction(physicals.get(i), physicals.get(j));
+	private void findPairs() {
+		tickPairCount = 0;
+		pairCache.startTick();
+		broadphase.findPairs(pairHandler);
+		// an anchored physical may have been moved through it's cframe, the bounding boxes are cached per cframe so this is cheap when none did
+		anchoredPhysicals.update();
+		for(Physical p:dynamicPhysicals)
+			anchoredPhysicals.query(p, pairHandler);
+		pairCache.endTick();
+		
+		Arrays.fill(tickPairs, tickPairCount, tickPairs.length, null);
+	}
+	
+	private void touchPair(RigidBody first, RigidBody second){
+		BodyPair pair = pairCache.touch(first, second);
+		
+		// anchored physicals are shared by islands, their caches must be filled before the islands are solved in parallel
+		if(first.isAnchored()) first.refreshCaches();
+		if(second.isAnchored()) second.refreshCaches();
+		
+		if(tickPairCount == tickPairs.length)
+			tickPairs = Arrays.copyOf(tickPairs, tickPairCount*2);
+		tickPairs[tickPairCount++] = pair;
+	}
+	
+	/**
+	 * Splits this tick's pairs and constraints into islands, which only affect their own physicals, so they can be solved in parallel
+	 */
+	private void solveIslands(){
+		islands.build(dynamicPhysicals, tickPairs, tickPairCount, constraints);
+		
+		int islandCount = islands.getIslandCount();
+		if(pool == null || islandCount < 2)
+			for(int i = 0; i < islandCount; i++)
+				solveIsland(i);
+		else
+			pool.invoke(new IslandTask(0, islandCount));
+	}
+	
+	/**
+	 * In {@link SolverMode#IMPULSE} the contacts of the island are collected and solved together, constraints are still enacted as forces.
+	 * In {@link SolverMode#XPBD} the solver steps the physicals of the island through the tick, the narrowphase runs every substep.<br>
+	 * Springs are solved together when {@link #implicitSprings} is set, the other constraints are enacted a colour at a time, in parallel for large islands
+	 */
+	private void solveIsland(int island){
+		ImpulseSolver solver = null;
+		if(solverMode == SolverMode.IMPULSE){
+			solver = ImpulseSolver.get();
+			solver.begin(tickDeltaT);
+		}else if(solverMode == SolverMode.XPBD){
+			solveIslandPositions(island);
+			return;
+		}
+		for(int i = islands.getPairStart(island); i < islands.getPairEnd(island); i++){
+			BodyPair pair = islands.getPair(i);
+			if(shouldInteract(pair.first, pair.second))
+				interact(pair);
+		}
+		if(solver != null) solver.solve(impulseIterations, warmStarting);
+		
+		int start = islands.getConstraintStart(island), end = islands.getConstraintEnd(island);
+		if(implicitSprings){
+			ImplicitSpringSolver springs = ImplicitSpringSolver.get();
+			springs.begin(tickDeltaT);
+			for(int i = start; i < end; i++){
+				Constraint c = islands.getConstraint(i);
+				if(c.supportsImplicit() && shouldInteract(c.part1, c.part2))
+					c.addSprings(springs);
+			}
+			springs.solve();
+		}
+		
+		// the per thread solvers are done, the pool may run other islands on this thread while it waits for the batches
+		int batchStart = start;
+		while(batchStart < end){
+			int colour = islands.getConstraintColour(batchStart);
+			int batchEnd = batchStart+1;
+			while(batchEnd < end && islands.getConstraintColour(batchEnd) == colour) batchEnd++;
+			if(colour == -1 || pool == null || batchEnd-batchStart <= CONSTRAINT_BATCH_SIZE){
+				enactConstraints(batchStart, batchEnd);
+			}else{
+				Debug.logParallelConstraintBatch();
+				ConstraintTask task = new ConstraintTask(batchStart, batchEnd);
+				// inside an island task the batch is forked from that task, islands solved on the calling thread hand it to the pool
+				if(ForkJoinTask.getPool() == pool)
+					task.invoke();
+				else
+					pool.invoke(task);
 			}
+			batchStart = batchEnd;
 		}
 	}
 	
-	private void executeConstraints(double deltaT){
+	/**
+	 * Enacts the constraints from up to to which are not solved by the {@link ImplicitSpringSolver}
+	 */
+	private void enactConstraints(int from, int to){
+		for(int i = from; i < to; i++){
+			Constraint c = islands.getConstraint(i);
+			if(implicitSprings && c.supportsImplicit()) continue;
+			if(shouldInteract(c.part1, c.part2))
+				c.enact();
+		}
+	}
+	
+	private void solveIslandPositions(int island){
+		XPBDSolver solver = XPBDSolver.get();
+		solver.begin(tickDeltaT, xpbdSubsteps);
+		for(int i = islands.getConstraintStart(island); i < islands.getConstraintEnd(island); i++){
+			Constraint c = islands.getConstraint(i);
+			if(shouldInteract(c.part1, c.part2))
+				solver.addConstraint(c);
+		}
+		for(int i = islands.getBodyStart(island); i < islands.getBodyEnd(island); i++)
+			solver.addBody(islands.getBody(i));
+		
+		for(int step = 0; step < xpbdSubsteps; step++){
+			solver.beginSubstep();
+			try{
+				for(int i = islands.getPairStart(island); i < islands.getPairEnd(island); i++){
+					BodyPair pair = islands.getPair(i);
+					if(shouldInteract(pair.first, pair.second))
+						interact(pair);
+				}
+			}finally{
+				solver.endSubstep();
+			}
+		}
+		solver.finish();
+	}
+	
+	/**
+	 * Solves a range of islands, splitting it in two as long as it contains enough work
+	 */
+	private class IslandTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int from, to;
+		
+		IslandTask(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute(){
+			if(to-from == 1 || islands.getWork(from, to) <= ISLAND_BATCH_WORK){
+				for(int i = from; i < to; i++)
+					solveIsland(i);
+			}else{
+				int mid = (from+to) >>> 1;
+				invokeAll(new IslandTask(from, mid), new IslandTask(mid, to));
+			}
+		}
+	}
+	
+	/**
+	 * Enacts a range of constraints of the same colour, which share no physicals that can move, splitting it in two as long as it is large.
+	 * Constraints only apply forces to their own physicals, so those of a colour can be enacted at the same time
+	 */
+	private class ConstraintTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int from, to;
+		
+		ConstraintTask(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute(){
+			if(to-from <= CONSTRAINT_BATCH_SIZE){
+				enactConstraints(from, to);
+			}else{
+				int mid = (from+to) >>> 1;
+				invokeAll(new ConstraintTask(from, mid), new ConstraintTask(mid, to));
+			}
+		}
+	}
+	
+	/**
+	 * Two bodies which are both sleeping or anchored don't need to interact. A sleeping body is woken when the other body is moving.
+	 */
+	private static boolean shouldInteract(RigidBody a, RigidBody b){
+		boolean aActive = !a.isSleeping() && !a.isAnchored();
+		boolean bActive = !b.isSleeping() && !b.isAnchored();
+		
+		if(aActive && b.isSleeping() && a.isMoving()){
+			b.wake();
+			bActive = true;
+		}else if(bActive && a.isSleeping() && b.isMoving()){
+			a.wake();
+			aActive = true;
+		}
+		return aActive || bActive;
+	}
+	
+	private void interact(BodyPair pair){
+		pair.first.interactWith(pair.second, pair.axisCache, pair.contactCache, contactCacheTranslationTolerance, contactCacheRotationTolerance);
+		Debug.logInteraction(pair.first, pair.second);
+	}
+	
+	private void executeMagnet(double deltaT){
 		synchronized (magnetLock) {
 			if(magnetSubject != null){
 				Vec2 attachPoint = magnetSubject.cframe.localToGlobal(magnetAttachPoint);
@@ -122,10 +500,6 @@ public class World {
 				magnetSubject.applyForce(force, magnetSubject.cframe.localToGlobal(magnetAttachPoint));*/
 			}
 		}
-		
-		for(Constraint c:constraints){
-			c.enact();
-		}
 	}
 	
 	/**
@@ -149,6 +523,7 @@ public class World {
 			for(Physical b:physicals){
 				for(Part subPart:b.parts)
 					if(subPart.containsPoint(mousePos)){
+						b.wake();
 						magnetSubject = b;
 						magnetAttachPoint = b.cframe.globalToLocal(mousePos);
 						magnetTarget = mousePos;
@@ -0,0 +1,326 @@
+package physics2D.physics;
+
+import java.util.Arrays;
+
+import physics2D.math.CFrame;
+import physics2D.math.Constants;
+import physics2D.math.Vec2;
+
+/**
+ * Extended position based solver of {@link SolverMode#XPBD}, it steps the physicals of one island through a tick.<br><br>
+ * 
+ * The tick is split into many short substeps. Every substep the narrowphase runs on the pairs the broadphase found at the start of the tick,
+ * and the penetration it finds is removed without changing the velocities, or bodies would bounce apart. The physicals are then moved at their velocity,
+ * after which each contact and constraint is projected once: the physicals are moved directly, just far enough to satisfy it.
+ * The velocities are derived from how far the physicals moved. Because a projection only moves the physicals by what is wrong,
+ * it cannot overshoot the way stiff forces do, whatever the length of the tick.<br><br>
+ * 
+ * Springy constraints have a compliance, the inverse of their stiffness, instead of a force gain.
+ * A compliance of 0 makes a constraint rigid, see {@link #projectPoints(RigidBody, Vec2, RigidBody, Vec2, double)}.<br><br>
+ * 
+ * A contact remembers the points of both physicals which touched and the normal relative to the base, so it's depth can be found
+ * again after they moved. Contacts are left {@link Constants#XPBD_PENETRATION_SLOP} deep, so resting contacts are found again in the next substep.
+ * After the velocities are derived contacts lose their separating velocity, there is no bounce, and friction slows the sliding of the contact
+ * by at most {@link ImpulseSolver#getFrictionCoefficient(PhysicalProperties, PhysicalProperties)} times the normal impulse of the substep.<br><br>
+ * 
+ * Constraints which don't support projection, see {@link Constraint#project(XPBDSolver)}, are enacted as forces once per tick.
+ * Anchored and sleeping bodies don't move, they act as infinitely heavy.
+ * There is one solver per thread as islands may be solved in parallel, see {@link #get()}.
+ */
+final class XPBDSolver {
+	
+	/** passes over the contacts to remove their separating velocity, contacts of the same body change eachothers velocity */
+	private static final int VELOCITY_ITERATIONS = 4;
+	
+	private static final ThreadLocal<XPBDSolver> solver = ThreadLocal.withInitial(XPBDSolver::new);
+	
+	/**
+	 * @return the solver of the current thread
+	 */
+	static XPBDSolver get(){
+		return solver.get();
+	}
+	
+	private boolean collecting = false;
+	/** length of the current substep */
+	private double substepDeltaT;
+	
+	private int count = 0;
+	private RigidBody[] bodiesA = new RigidBody[16], bodiesB = new RigidBody[16];
+	/** the touching point, local to a and local to b */
+	private double[] localAX = new double[16], localAY = new double[16];
+	private double[] localBX = new double[16], localBY = new double[16];
+	/** unit normal from a to b, local to a */
+	private double[] normalsX = new double[16], normalsY = new double[16];
+	private double[] depths = new double[16];
+	private double[] frictions = new double[16];
+	/** normal impulse of the last projection, 0 if the contact was apart */
+	private double[] normalImpulses = new double[16];
+	
+	private Constraint[] constraints = new Constraint[16];
+	private int constraintCount = 0;
+	/** true once the constraints which can't be projected are enacted and removed */
+	private boolean constraintsSorted = false;
+	
+	private Physical[] bodies = new Physical[16];
+	private CFrame[] previousCFrames = new CFrame[16];
+	private int bodyCount = 0;
+	
+	private XPBDSolver(){}
+	
+	/**
+	 * Starts stepping an island, followed by {@link #addConstraint(Constraint)} and {@link #addBody(Physical)},
+	 * then {@link #beginSubstep()} and {@link #endSubstep()} for every substep, and {@link #finish()}
+	 * @param deltaT length of the tick
+	 * @param substeps amount of substeps to split the tick into
+	 */
+	void begin(double deltaT, int substeps){
+		this.substepDeltaT = deltaT/substeps;
+		this.count = 0;
+		this.constraintCount = 0;
+		this.bodyCount = 0;
+		this.constraintsSorted = false;
+	}
+	
+	boolean isCollecting(){
+		return collecting;
+	}
+	
+	/**
+	 * @param base part the exit points away from
+	 * @param intersector part which must move along exit to leave base
+	 * @param point <i>global</i>
+	 * @param exit in global axes
+	 */
+	void add(Part base, Part intersector, Vec2 point, Vec2 exit){
+		double depth = exit.length();
+		if(depth == 0) return;
+		if(count == bodiesA.length) grow();
+		
+		RigidBody a = base.parent, b = intersector.parent;
+		CFrame frameA = a.getCFrame(), frameB = b.getCFrame();
+		Vec2 localA = frameA.globalToLocal(point), localB = frameB.globalToLocal(point);
+		Vec2 normal = frameA.globalToLocalRotation(exit.div(depth));
+		
+		bodiesA[count] = a;
+		bodiesB[count] = b;
+		localAX[count] = localA.x;
+		localAY[count] = localA.y;
+		localBX[count] = localB.x;
+		localBY[count] = localB.y;
+		normalsX[count] = normal.x;
+		normalsY[count] = normal.y;
+		depths[count] = depth;
+		frictions[count] = ImpulseSolver.getFrictionCoefficient(base.properties, intersector.properties);
+		normalImpulses[count] = 0;
+		count++;
+	}
+	
+	/**
+	 * Adds a constraint of the island, it is projected every substep if it supports it, otherwise it's forces are enacted right away
+	 */
+	void addConstraint(Constraint constraint){
+		if(constraintCount == constraints.length)
+			constraints = Arrays.copyOf(constraints, constraintCount*2);
+		constraints[constraintCount++] = constraint;
+	}
+	
+	/**
+	 * Adds a physical which is moved by the substeps
+	 */
+	void addBody(Physical body){
+		if(bodyCount == bodies.length){
+			bodies = Arrays.copyOf(bodies, bodyCount*2);
+			previousCFrames = Arrays.copyOf(previousCFrames, bodyCount*2);
+		}
+		bodies[bodyCount++] = body;
+	}
+	
+	/**
+	 * Starts collecting the contacts found for the current positions of the physicals, until {@link #endSubstep()}
+	 */
+	void beginSubstep(){
+		if(!constraintsSorted){
+			// the forces of constraints which can't be projected stay the same during the tick
+			int projected = 0;
+			for(int i = 0; i < constraintCount; i++){
+				if(constraints[i].supportsProjection())
+					constraints[projected++] = constraints[i];
+				else
+					constraints[i].enact();
+			}
+			Arrays.fill(constraints, projected, constraintCount, null);
+			constraintCount = projected;
+			constraintsSorted = true;
+		}
+		count = 0;
+		collecting = true;
+	}
+	
+	/**
+	 * Moves the physicals at their velocity for the length of a substep, then projects the collected contacts and the constraints once,
+	 * and derives the velocities of the physicals from their movement
+	 */
+	void endSubstep(){
+		collecting = false;
+		
+		// penetration from before the substep is removed without changing the velocities, or it would make the bodies bounce apart
+		for(int i = 0; i < count; i++)
+			projectContact(i);
+		
+		for(int i = 0; i < bodyCount; i++){
+			previousCFrames[i] = bodies[i].cframe;
+			bodies[i].updateSubstep(substepDeltaT);
+		}
+		
+		for(int i = 0; i < count; i++)
+			projectContact(i);
+		for(int i = 0; i < constraintCount; i++)
+			constraints[i].project(this);
+		
+		for(int i = 0; i < bodyCount; i++)
+			bodies[i].deriveVelocity(previousCFrames[i], substepDeltaT);
+		
+		for(int iteration = 0; iteration < VELOCITY_ITERATIONS; iteration++)
+			for(int i = 0; i < count; i++)
+				if(normalImpulses[i] > 0) solveContactVelocity(i);
+		
+		Arrays.fill(bodiesA, 0, count, null);
+		Arrays.fill(bodiesB, 0, count, null);
+		count = 0;
+	}
+	
+	/**
+	 * Ends the tick of the island, the forces on the physicals are reset
+	 */
+	void finish(){
+		for(int i = 0; i < bodyCount; i++)
+			bodies[i].clearForces();
+		
+		// don't keep the bodies alive
+		Arrays.fill(constraints, 0, constraintCount, null);
+		Arrays.fill(bodies, 0, bodyCount, null);
+		Arrays.fill(previousCFrames, 0, bodyCount, null);
+		constraintCount = 0;
+		bodyCount = 0;
+	}
+	
+	/**
+	 * Moves a and b so that the given points meet, or closer together if the compliance is not 0
+	 * @param pointA <i>global</i> point of a
+	 * @param pointB <i>global</i> point of b
+	 * @param compliance inverse stiffness, the distance per unit of force
+	 */
+	void projectPoints(RigidBody a, Vec2 pointA, RigidBody b, Vec2 pointB, double compliance){
+		Vec2 delta = pointB.subtract(pointA);
+		double distance = delta.length();
+		if(distance == 0) return;
+		projectAlong(a, pointA.subtract(a.getCenterOfMass()), b, pointB.subtract(b.getCenterOfMass()), delta.div(distance), distance, compliance);
+	}
+	
+	/**
+	 * Rotates a and b towards eachother by the given angle, or less if the compliance is not 0
+	 * @param angle angle of b relative to a
+	 * @param compliance inverse stiffness, the angle per unit of torque
+	 */
+	void projectAngle(RigidBody a, RigidBody b, double angle, double compliance){
+		double inverse = inverseInertia(a)+inverseInertia(b)+compliance/(substepDeltaT*substepDeltaT);
+		if(inverse == 0) return;
+		double impulse = angle/inverse;
+		a.applyPositionalTorqueImpulse(impulse);
+		b.applyPositionalTorqueImpulse(-impulse);
+	}
+	
+	/**
+	 * Moves a along normal and b against it, to remove the given error between the points
+	 * @param relA point of a relative to it's center of mass
+	 * @param relB point of b relative to it's center of mass
+	 * @param normal unit vector
+	 * @return the positional impulse applied
+	 */
+	private double projectAlong(RigidBody a, Vec2 relA, RigidBody b, Vec2 relB, Vec2 normal, double error, double compliance){
+		double inverse = inverseMass(a, relA, normal)+inverseMass(b, relB, normal)+compliance/(substepDeltaT*substepDeltaT);
+		if(inverse == 0) return 0;
+		double impulse = error/inverse;
+		a.applyPositionalImpulseRelative(normal.mul(impulse), relA);
+		b.applyPositionalImpulseRelative(normal.mul(-impulse), relB);
+		return impulse;
+	}
+	
+	private void projectContact(int i){
+		RigidBody a = bodiesA[i], b = bodiesB[i];
+		CFrame frameA = a.getCFrame();
+		Vec2 pointA = frameA.localToGlobal(new Vec2(localAX[i], localAY[i]));
+		Vec2 pointB = b.getCFrame().localToGlobal(new Vec2(localBX[i], localBY[i]));
+		Vec2 normal = frameA.localToGlobalRotation(new Vec2(normalsX[i], normalsY[i]));
+		
+		double error = depths[i]-pointB.subtract(pointA).dot(normal)-Constants.XPBD_PENETRATION_SLOP;
+		if(error <= 0){
+			normalImpulses[i] = 0;
+			return;
+		}
+		// b must move along the normal, so a moves against it
+		normalImpulses[i] = projectAlong(a, pointA.subtract(a.getCenterOfMass()), b, pointB.subtract(b.getCenterOfMass()), normal.neg(), error, 0);
+	}
+	
+	/**
+	 * removes the separating velocity the projection gave the contact, and applies friction
+	 */
+	private void solveContactVelocity(int i){
+		RigidBody a = bodiesA[i], b = bodiesB[i];
+		CFrame frameA = a.getCFrame();
+		Vec2 relA = frameA.localToGlobal(new Vec2(localAX[i], localAY[i])).subtract(a.getCenterOfMass());
+		Vec2 relB = b.getCFrame().localToGlobal(new Vec2(localBX[i], localBY[i])).subtract(b.getCenterOfMass());
+		Vec2 normal = frameA.localToGlobalRotation(new Vec2(normalsX[i], normalsY[i]));
+		
+		Vec2 relativeVelocity = b.getSpeedOfRelPoint(relB).subtract(a.getSpeedOfRelPoint(relA));
+		double normalVelocity = relativeVelocity.dot(normal);
+		Vec2 tangentVelocity = relativeVelocity.subtract(normal.mul(normalVelocity));
+		
+		applyVelocityChange(a, relA, b, relB, normal, -normalVelocity);
+		
+		double sliding = tangentVelocity.length();
+		if(sliding == 0) return;
+		double maxChange = frictions[i]*normalImpulses[i]/substepDeltaT;
+		applyVelocityChange(a, relA, b, relB, tangentVelocity.div(sliding), -Math.min(maxChange, sliding));
+	}
+	
+	/**
+	 * changes the velocity of b relative to a along the given direction by change
+	 */
+	private static void applyVelocityChange(RigidBody a, Vec2 relA, RigidBody b, Vec2 relB, Vec2 direction, double change){
+		double inverse = inverseMass(a, relA, direction)+inverseMass(b, relB, direction);
+		if(inverse == 0 || change == 0) return;
+		Vec2 impulse = direction.mul(change/inverse);
+		a.applyImpulseRelative(impulse.neg(), relA);
+		b.applyImpulseRelative(impulse, relB);
+	}
+	
+	/**
+	 * @return the inverse of the inertia of the given point of body along direction
+	 */
+	private static double inverseMass(RigidBody body, Vec2 relativePoint, Vec2 direction){
+		if(body.isAnchored() || body.isSleeping()) return 0;
+		double arm = relativePoint.cross(direction);
+		return 1/body.getMass()+arm*arm/body.getInertia();
+	}
+	
+	private static double inverseInertia(RigidBody body){
+		return (body.isAnchored() || body.isSleeping())? 0 : 1/body.getInertia();
+	}
+	
+	private void grow(){
+		int capacity = bodiesA.length*2;
+		bodiesA = Arrays.copyOf(bodiesA, capacity);
+		bodiesB = Arrays.copyOf(bodiesB, capacity);
+		localAX = Arrays.copyOf(localAX, capacity);
+		localAY = Arrays.copyOf(localAY, capacity);
+		localBX = Arrays.copyOf(localBX, capacity);
+		localBY = Arrays.copyOf(localBY, capacity);
+		normalsX = Arrays.copyOf(normalsX, capacity);
+		normalsY = Arrays.copyOf(normalsY, capacity);
+		depths = Arrays.copyOf(depths, capacity);
+		frictions = Arrays.copyOf(frictions, capacity);
+		normalImpulses = Arrays.copyOf(normalImpulses, capacity);
+	}
+}
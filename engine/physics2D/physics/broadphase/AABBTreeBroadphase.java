@@ -0,0 +1,511 @@
+package physics2D.physics.broadphase;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import physics2D.math.BoundingBox;
+import physics2D.math.Vec2;
+import physics2D.physics.RigidBody;
+
+/**
+ * Dynamic bounding volume tree, handles scenes which mix very large and very small bodies.<br><br>
+ * 
+ * Every leaf stores a fattened copy of it's body's bounding box, extended in the direction the body is moving.
+ * A leaf is only reinserted once the body's actual bounding box leaves this fat box, so most ticks don't change the tree at all.<br><br>
+ * 
+ * Bodies added before the first call to {@link #findPairs(BiConsumer) findPairs} are built into a tree top-down in one go,
+ * after that bodies are inserted and removed one by one. Pairs are found by descending the tree against itself.<br><br>
+ * 
+ * The tree can also be used as a plain spatial index through {@link #query(RigidBody, BiConsumer) query}, this is how
+ * {@link physics2D.physics.World World} keeps it's anchored bodies.<br><br>
+ * 
+ * Nodes are stored in parallel arrays, indexed by node id.
+ */
+public class AABBTreeBroadphase implements Broadphase {
+	
+	private static final int NULL = -1;
+	
+	/** fraction of the smallest dimension of a body's bounding box added on every side of it's fat box */
+	public static final double FAT_MARGIN_FACTOR = 0.1;
+	/** the fat box is extended by velocity times this */
+	public static final double VELOCITY_PREDICTION_TIME = 0.02;
+	
+	private final double fatMarginFactor;
+	private final double velocityPredictionTime;
+	
+	private double[] xmin = new double[0], ymin = new double[0], xmax = new double[0], ymax = new double[0];
+	private int[] parent = new int[0], child1 = new int[0], child2 = new int[0], height = new int[0];
+	private RigidBody[] nodeBody = new RigidBody[0];
+	private int freeList = NULL;
+	private int root = NULL;
+	
+	private RigidBody[] bodies = new RigidBody[16];
+	private int[] leaves = new int[16];
+	private int size = 0;
+	
+	private boolean built = false;
+	
+	private int[] stack = new int[64];
+	
+	public AABBTreeBroadphase(){
+		this(FAT_MARGIN_FACTOR, VELOCITY_PREDICTION_TIME);
+	}
+	
+	/**
+	 * @param fatMarginFactor fraction of the smallest dimension of a body's bounding box added on every side of it's fat box
+	 * @param velocityPredictionTime the fat box is extended by velocity times this
+	 */
+	public AABBTreeBroadphase(double fatMarginFactor, double velocityPredictionTime){
+		this.fatMarginFactor = fatMarginFactor;
+		this.velocityPredictionTime = velocityPredictionTime;
+	}
+	
+	@Override
+	public void add(RigidBody body){
+		if(size == bodies.length){
+			bodies = Arrays.copyOf(bodies, size*2);
+			leaves = Arrays.copyOf(leaves, size*2);
+		}
+		bodies[size] = body;
+		leaves[size] = built? insertLeaf(createLeaf(body)) : NULL;
+		size++;
+	}
+	
+	@Override
+	public boolean remove(RigidBody body){
+		for(int i = 0; i < size; i++){
+			if(bodies[i] == body){
+				if(leaves[i] != NULL){
+					removeLeaf(leaves[i]);
+					freeNode(leaves[i]);
+				}
+				size--;
+				bodies[i] = bodies[size];
+				leaves[i] = leaves[size];
+				bodies[size] = null;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public void findPairs(BiConsumer<RigidBody, RigidBody> handler){
+		update();
+		
+		if(root == NULL) return;
+		
+		int sp = 0;
+		stack[sp++] = root;
+		stack[sp++] = root;
+		
+		while(sp > 0){
+			int b = stack[--sp];
+			int a = stack[--sp];
+			
+			if(sp + 6 > stack.length)
+				stack = Arrays.copyOf(stack, stack.length*2);
+			
+			if(a == b){
+				if(isLeaf(a)) continue;
+				int c1 = child1[a], c2 = child2[a];
+				stack[sp++] = c1; stack[sp++] = c1;
+				stack[sp++] = c2; stack[sp++] = c2;
+				stack[sp++] = c1; stack[sp++] = c2;
+			}else{
+				if(!overlaps(a, b)) continue;
+				
+				boolean aLeaf = isLeaf(a), bLeaf = isLeaf(b);
+				if(aLeaf && bLeaf){
+					RigidBody first = nodeBody[a];
+					RigidBody second = nodeBody[b];
+					if(first.getBoundingBox().intersects(second.getBoundingBox()))
+						handler.accept(first, second);
+				}else if(bLeaf || (!aLeaf && perimeter(a) >= perimeter(b))){
+					stack[sp++] = child1[a]; stack[sp++] = b;
+					stack[sp++] = child2[a]; stack[sp++] = b;
+				}else{
+					stack[sp++] = a; stack[sp++] = child1[b];
+					stack[sp++] = a; stack[sp++] = child2[b];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reports every body in this tree whose bounding box intersects the bounding box of {@code subject}
+	 * as {@code handler.accept(subject, found)}. Does not refit the tree, fat boxes are assumed to still contain their bodies.
+	 * 
+	 * @param subject the body to look for, does not have to be part of this tree
+	 * @param handler receives subject and every body found
+	 */
+	public void query(RigidBody subject, BiConsumer<RigidBody, RigidBody> handler){
+		if(!built)
+			rebuild();
+		
+		if(root == NULL) return;
+		
+		BoundingBox box = subject.getBoundingBox();
+		
+		int sp = 0;
+		stack[sp++] = root;
+		while(sp > 0){
+			int node = stack[--sp];
+			
+			if(!(xmin[node] < box.xmax && box.xmin < xmax[node] && ymin[node] < box.ymax && box.ymin < ymax[node])) continue;
+			
+			if(isLeaf(node)){
+				RigidBody found = nodeBody[node];
+				if(found != subject && box.intersects(found.getBoundingBox()))
+					handler.accept(subject, found);
+			}else{
+				if(sp + 2 > stack.length)
+					stack = Arrays.copyOf(stack, stack.length*2);
+				stack[sp++] = child1[node];
+				stack[sp++] = child2[node];
+			}
+		}
+	}
+	
+	/**
+	 * Builds the tree if it hasn't been built yet, otherwise reinserts the leaves of bodies which have left their fat bounding box.
+	 * {@link #findPairs(BiConsumer) findPairs} does this itself, {@link #query(RigidBody, BiConsumer) query} does not.
+	 */
+	public void update(){
+		if(!built)
+			rebuild();
+		else
+			refit();
+	}
+	
+	/**
+	 * Reinserts every leaf whose body has left it's fat bounding box
+	 */
+	private void refit(){
+		for(int i = 0; i < size; i++){
+			int leaf = leaves[i];
+			BoundingBox tight = bodies[i].getBoundingBox();
+			if(tight.xmin < xmin[leaf] || tight.ymin < ymin[leaf] || tight.xmax > xmax[leaf] || tight.ymax > ymax[leaf]){
+				removeLeaf(leaf);
+				setFatBounds(leaf, bodies[i]);
+				insertLeaf(leaf);
+			}
+		}
+	}
+	
+	/**
+	 * Throws away the current tree, and builds a new one top-down, splitting at the median along the longest axis
+	 */
+	public void rebuild(){
+		freeList = NULL;
+		for(int i = parent.length-1; i >= 0; i--)
+			freeNode(i);
+		root = NULL;
+		
+		for(int i = 0; i < size; i++)
+			leaves[i] = createLeaf(bodies[i]);
+		
+		if(size > 0){
+			int[] order = Arrays.copyOf(leaves, size);
+			root = build(order, 0, size);
+			parent[root] = NULL;
+		}
+		built = true;
+	}
+	
+	private int build(int[] order, int from, int to){
+		if(to - from == 1) return order[from];
+		
+		double cxmin = Double.POSITIVE_INFINITY, cymin = Double.POSITIVE_INFINITY;
+		double cxmax = Double.NEGATIVE_INFINITY, cymax = Double.NEGATIVE_INFINITY;
+		for(int i = from; i < to; i++){
+			int n = order[i];
+			double cx = xmin[n]+xmax[n], cy = ymin[n]+ymax[n];
+			cxmin = Math.min(cxmin, cx); cxmax = Math.max(cxmax, cx);
+			cymin = Math.min(cymin, cy); cymax = Math.max(cymax, cy);
+		}
+		boolean splitX = cxmax - cxmin >= cymax - cymin;
+		
+		int mid = (from + to) / 2;
+		selectMedian(order, from, to-1, mid, splitX);
+		
+		int node = allocateNode();
+		int c1 = build(order, from, mid);
+		int c2 = build(order, mid, to);
+		child1[node] = c1;
+		child2[node] = c2;
+		parent[c1] = node;
+		parent[c2] = node;
+		height[node] = 1 + Math.max(height[c1], height[c2]);
+		setUnion(node, c1, c2);
+		return node;
+	}
+	
+	/**
+	 * Partially sorts order[lo..hi] such that order[k] has the median center along the given axis,
+	 * with all lower centers before it and all higher centers after it
+	 */
+	private void selectMedian(int[] order, int lo, int hi, int k, boolean alongX){
+		while(lo < hi){
+			double pivot = center(order[(lo+hi)/2], alongX);
+			int i = lo, j = hi;
+			while(i <= j){
+				while(center(order[i], alongX) < pivot) i++;
+				while(center(order[j], alongX) > pivot) j--;
+				if(i <= j){
+					int tmp = order[i]; order[i] = order[j]; order[j] = tmp;
+					i++; j--;
+				}
+			}
+			if(k <= j) hi = j;
+			else if(k >= i) lo = i;
+			else return;
+		}
+	}
+	
+	private double center(int node, boolean alongX){
+		return alongX? xmin[node]+xmax[node] : ymin[node]+ymax[node];
+	}
+	
+	private int createLeaf(RigidBody body){
+		int leaf = allocateNode();
+		nodeBody[leaf] = body;
+		setFatBounds(leaf, body);
+		return leaf;
+	}
+	
+	private void setFatBounds(int leaf, RigidBody body){
+		BoundingBox tight = body.getBoundingBox();
+		double margin = fatMarginFactor * Math.min(tight.getWidth(), tight.getHeight());
+		Vec2 displacement = (velocityPredictionTime == 0.0)? Vec2.ZERO : body.getSpeedOfPoint(body.getCenterOfMass()).mul(velocityPredictionTime);
+		
+		xmin[leaf] = tight.xmin - margin + Math.min(0, displacement.x);
+		ymin[leaf] = tight.ymin - margin + Math.min(0, displacement.y);
+		xmax[leaf] = tight.xmax + margin + Math.max(0, displacement.x);
+		ymax[leaf] = tight.ymax + margin + Math.max(0, displacement.y);
+	}
+	
+	private int insertLeaf(int leaf){
+		if(root == NULL){
+			root = leaf;
+			parent[leaf] = NULL;
+			return leaf;
+		}
+		
+		// find the sibling for which adding the leaf would increase the total perimeter of the tree the least
+		int index = root;
+		while(!isLeaf(index)){
+			int c1 = child1[index], c2 = child2[index];
+			
+			double perimeter = perimeter(index);
+			double combinedPerimeter = unionPerimeter(index, leaf);
+			
+			double cost = 2 * combinedPerimeter;
+			double inheritanceCost = 2 * (combinedPerimeter - perimeter);
+			
+			double cost1 = unionPerimeter(c1, leaf) + inheritanceCost;
+			if(!isLeaf(c1)) cost1 -= perimeter(c1);
+			double cost2 = unionPerimeter(c2, leaf) + inheritanceCost;
+			if(!isLeaf(c2)) cost2 -= perimeter(c2);
+			
+			if(cost < cost1 && cost < cost2) break;
+			
+			index = (cost1 < cost2)? c1 : c2;
+		}
+		int sibling = index;
+		
+		int oldParent = parent[sibling];
+		int newParent = allocateNode();
+		parent[newParent] = oldParent;
+		setUnion(newParent, leaf, sibling);
+		height[newParent] = height[sibling] + 1;
+		
+		if(oldParent != NULL){
+			if(child1[oldParent] == sibling)
+				child1[oldParent] = newParent;
+			else
+				child2[oldParent] = newParent;
+		}else{
+			root = newParent;
+		}
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parent[sibling] = newParent;
+		parent[leaf] = newParent;
+		
+		fixUpwards(parent[leaf]);
+		return leaf;
+	}
+	
+	private void removeLeaf(int leaf){
+		if(leaf == root){
+			root = NULL;
+			return;
+		}
+		
+		int p = parent[leaf];
+		int grandParent = parent[p];
+		int sibling = (child1[p] == leaf)? child2[p] : child1[p];
+		
+		if(grandParent != NULL){
+			if(child1[grandParent] == p)
+				child1[grandParent] = sibling;
+			else
+				child2[grandParent] = sibling;
+			parent[sibling] = grandParent;
+			freeNode(p);
+			
+			fixUpwards(grandParent);
+		}else{
+			root = sibling;
+			parent[sibling] = NULL;
+			freeNode(p);
+		}
+	}
+	
+	/**
+	 * Rebalances and refits all ancestors, starting at {@code index}
+	 */
+	private void fixUpwards(int index){
+		while(index != NULL){
+			index = balance(index);
+			
+			int c1 = child1[index], c2 = child2[index];
+			height[index] = 1 + Math.max(height[c1], height[c2]);
+			setUnion(index, c1, c2);
+			
+			index = parent[index];
+		}
+	}
+	
+	/**
+	 * Performs a left or right rotation if node A is imbalanced
+	 * @return the new root of this subtree
+	 */
+	private int balance(int a){
+		if(isLeaf(a) || height[a] < 2) return a;
+		
+		int b = child1[a];
+		int c = child2[a];
+		
+		int balance = height[c] - height[b];
+		
+		if(balance > 1)
+			return rotate(a, c, b);
+		if(balance < -1)
+			return rotate(a, b, c);
+		
+		return a;
+	}
+	
+	/**
+	 * Lifts {@code high} above {@code a}, {@code low} is a's other child
+	 */
+	private int rotate(int a, int high, int low){
+		int f = child1[high];
+		int g = child2[high];
+		
+		child1[high] = a;
+		parent[high] = parent[a];
+		parent[a] = high;
+		
+		if(parent[high] != NULL){
+			if(child1[parent[high]] == a)
+				child1[parent[high]] = high;
+			else
+				child2[parent[high]] = high;
+		}else{
+			root = high;
+		}
+		
+		// the highest of f and g stays under high, the other one takes it's place under a
+		int kept = (height[f] > height[g])? f : g;
+		int moved = (kept == f)? g : f;
+		
+		child2[high] = kept;
+		if(child1[a] == high)
+			child1[a] = moved;
+		else
+			child2[a] = moved;
+		parent[moved] = a;
+		
+		setUnion(a, low, moved);
+		setUnion(high, a, kept);
+		height[a] = 1 + Math.max(height[low], height[moved]);
+		height[high] = 1 + Math.max(height[a], height[kept]);
+		
+		return high;
+	}
+	
+	private int allocateNode(){
+		if(freeList == NULL){
+			int oldCapacity = parent.length;
+			int newCapacity = Math.max(16, oldCapacity*2);
+			xmin = Arrays.copyOf(xmin, newCapacity);
+			ymin = Arrays.copyOf(ymin, newCapacity);
+			xmax = Arrays.copyOf(xmax, newCapacity);
+			ymax = Arrays.copyOf(ymax, newCapacity);
+			parent = Arrays.copyOf(parent, newCapacity);
+			child1 = Arrays.copyOf(child1, newCapacity);
+			child2 = Arrays.copyOf(child2, newCapacity);
+			height = Arrays.copyOf(height, newCapacity);
+			nodeBody = Arrays.copyOf(nodeBody, newCapacity);
+			for(int i = newCapacity-1; i >= oldCapacity; i--)
+				freeNode(i);
+		}
+		int node = freeList;
+		freeList = parent[node];
+		parent[node] = NULL;
+		child1[node] = NULL;
+		child2[node] = NULL;
+		height[node] = 0;
+		nodeBody[node] = null;
+		return node;
+	}
+	
+	/**
+	 * Freed nodes are chained through their parent index
+	 */
+	private void freeNode(int node){
+		parent[node] = freeList;
+		height[node] = -1;
+		nodeBody[node] = null;
+		freeList = node;
+	}
+	
+	private boolean isLeaf(int node){
+		return child1[node] == NULL;
+	}
+	
+	private boolean overlaps(int a, int b){
+		return xmin[a] < xmax[b] && xmin[b] < xmax[a] &&
+				ymin[a] < ymax[b] && ymin[b] < ymax[a];
+	}
+	
+	private void setUnion(int target, int a, int b){
+		xmin[target] = Math.min(xmin[a], xmin[b]);
+		ymin[target] = Math.min(ymin[a], ymin[b]);
+		xmax[target] = Math.max(xmax[a], xmax[b]);
+		ymax[target] = Math.max(ymax[a], ymax[b]);
+	}
+	
+	private double perimeter(int node){
+		return 2 * (xmax[node]-xmin[node] + ymax[node]-ymin[node]);
+	}
+	
+	private double unionPerimeter(int a, int b){
+		return 2 * (Math.max(xmax[a], xmax[b]) - Math.min(xmin[a], xmin[b]) + Math.max(ymax[a], ymax[b]) - Math.min(ymin[a], ymin[b]));
+	}
+	
+	/**
+	 * @return the height of the tree, 0 for a single leaf, -1 if empty
+	 */
+	public int getHeight(){
+		return (root == NULL)? -1 : height[root];
+	}
+	
+	@Override
+	public int size(){
+		return size;
+	}
+}
@@ -0,0 +1,63 @@
+package physics2D.physics.broadphase;
+
+import physics2D.physics.AxisCache;
+import physics2D.physics.ContactCache;
+import physics2D.physics.RigidBody;
+
+/**
+ * A pair of bodies whose bounding boxes overlap. The same BodyPair object is kept for as long as both bodies keep overlapping,
+ * so anything computed about the pair can be stored here for the next tick.
+ */
+public class BodyPair {
+	
+	/** the body with the lowest {@link RigidBody#id id} */
+	public final RigidBody first;
+	/** the body with the highest {@link RigidBody#id id} */
+	public final RigidBody second;
+	
+	/** separating axes of the pieces of both bodies found last tick */
+	public final AxisCache axisCache = new AxisCache();
+	/** contact points of both bodies found by the narrowphase, reused while they barely move relative to eachother */
+	public final ContactCache contactCache = new ContactCache();
+	
+	final long key;
+	/** index in {@link PairCache}'s list of active pairs */
+	int index;
+	
+	int beginTick;
+	int lastTick;
+	int endTick = -1;
+	
+	BodyPair(RigidBody first, RigidBody second, long key){
+		this.first = first;
+		this.second = second;
+		this.key = key;
+	}
+	
+	/**
+	 * @return the tick of the {@link PairCache} in which these bodies started overlapping
+	 */
+	public int getBeginTick(){return beginTick;}
+	
+	/**
+	 * @return the last tick in which these bodies were found to be overlapping
+	 */
+	public int getLastTick(){return lastTick;}
+	
+	/**
+	 * @return the first tick in which these bodies were no longer overlapping, -1 if they still are
+	 */
+	public int getEndTick(){return endTick;}
+	
+	/**
+	 * @return the amount of consecutive ticks these bodies have been overlapping
+	 */
+	public int getAge(){return lastTick - beginTick + 1;}
+	
+	public boolean isActive(){return endTick == -1;}
+	
+	@Override
+	public String toString(){
+		return String.format("BodyPair{%s, %s, begin: %d, last: %d}", first, second, beginTick, lastTick);
+	}
+}
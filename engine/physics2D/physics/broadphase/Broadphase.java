@@ -0,0 +1,32 @@
+package physics2D.physics.broadphase;
+
+import java.util.function.BiConsumer;
+
+import physics2D.physics.RigidBody;
+
+/**
+ * A Broadphase keeps track of a set of bodies and finds the pairs among them which could possibly be touching.<br><br>
+ * 
+ * Only pairs whose bounding boxes overlap are ever reported, so the narrowphase never sees bodies which are far apart.
+ */
+public interface Broadphase {
+	
+	public void add(RigidBody body);
+	
+	/**
+	 * @param body the body to be removed
+	 * @return true if the body was part of this broadphase
+	 */
+	public boolean remove(RigidBody body);
+	
+	/**
+	 * Reports every pair of bodies whose bounding boxes currently intersect to {@code handler}, each pair exactly once.<br><br>
+	 * 
+	 * Bounding boxes are taken from {@link RigidBody#getBoundingBox()}, these must be up to date before calling this.
+	 * 
+	 * @param handler receives both bodies of every overlapping pair
+	 */
+	public void findPairs(BiConsumer<RigidBody, RigidBody> handler);
+	
+	public int size();
+}
@@ -0,0 +1,41 @@
+package physics2D.physics.broadphase;
+
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+
+import physics2D.physics.RigidBody;
+
+/**
+ * Tests every pair of bodies against eachother, O(n^2). Mostly useful as a reference for the other broadphases.
+ */
+public class BruteForceBroadphase implements Broadphase {
+	
+	private final ArrayList<RigidBody> bodies = new ArrayList<>();
+	
+	@Override
+	public void add(RigidBody body){
+		bodies.add(body);
+	}
+	
+	@Override
+	public boolean remove(RigidBody body){
+		return bodies.remove(body);
+	}
+	
+	@Override
+	public void findPairs(BiConsumer<RigidBody, RigidBody> handler){
+		for(int i = 0; i < bodies.size(); i++){
+			for(int j = i+1; j < bodies.size(); j++){
+				RigidBody a = bodies.get(i);
+				RigidBody b = bodies.get(j);
+				if(a.getBoundingBox().intersects(b.getBoundingBox()))
+					handler.accept(a, b);
+			}
+		}
+	}
+	
+	@Override
+	public int size(){
+		return bodies.size();
+	}
+}
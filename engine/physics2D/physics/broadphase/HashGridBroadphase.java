@@ -0,0 +1,245 @@
+package physics2D.physics.broadphase;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import physics2D.math.BoundingBox;
+import physics2D.physics.RigidBody;
+
+/**
+ * Uniform grid broadphase, meant for large populations of bodies of about the same size.<br><br>
+ * 
+ * Every tick each body is entered into all cells its bounding box covers, these entries are then bucketed with a
+ * counting sort on the hash of their cell. Only bodies sharing a cell are compared. A pair is only reported in the cell
+ * containing the lower left corner of the overlap of both boxes, so a pair sharing multiple cells is still reported once.<br><br>
+ * 
+ * Bodies which would cover more than {@link #MAX_CELLS_PER_BODY} cells are not entered into the grid, but tested
+ * against every other body instead.<br><br>
+ * 
+ * All storage is kept in primitive arrays which are reused between ticks, they only grow when the amount of entries does.
+ */
+public class HashGridBroadphase implements Broadphase {
+	
+	public static final int MAX_CELLS_PER_BODY = 64;
+	
+	private double cellSize;
+	private final boolean autoCellSize;
+	private boolean cellSizeOutdated = true;
+	
+	private RigidBody[] bodies = new RigidBody[16];
+	private BoundingBox[] bounds = new BoundingBox[16];
+	private int size = 0;
+	
+	private int[] oversized = new int[16];
+	private int oversizedCount = 0;
+	/** for every body, whether it is in oversized this tick */
+	private boolean[] isOversized = new boolean[16];
+	
+	private int[] entryBody = new int[64];
+	private int[] entryX = new int[64];
+	private int[] entryY = new int[64];
+	private int entryCount = 0;
+	
+	private int[] bucketStart = new int[129];
+	private int[] sortedEntries = new int[64];
+	
+	private double[] sizeScratch = new double[16];
+	
+	/**
+	 * Creates a grid whose cell size is derived from the median size of the bodies it contains
+	 */
+	public HashGridBroadphase(){
+		this.autoCellSize = true;
+	}
+	
+	/**
+	 * @param cellSize width and height of a grid cell
+	 */
+	public HashGridBroadphase(double cellSize){
+		this.cellSize = cellSize;
+		this.autoCellSize = false;
+	}
+	
+	public double getCellSize(){
+		return cellSize;
+	}
+	
+	@Override
+	public void add(RigidBody body){
+		if(size == bodies.length){
+			bodies = Arrays.copyOf(bodies, size*2);
+			bounds = Arrays.copyOf(bounds, size*2);
+		}
+		bodies[size++] = body;
+		cellSizeOutdated = true;
+	}
+	
+	@Override
+	public boolean remove(RigidBody body){
+		for(int i = 0; i < size; i++){
+			if(bodies[i] == body){
+				size--;
+				bodies[i] = bodies[size];
+				bodies[size] = null;
+				bounds[size] = null;
+				cellSizeOutdated = true;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public void findPairs(BiConsumer<RigidBody, RigidBody> handler){
+		for(int i = 0; i < size; i++)
+			bounds[i] = bodies[i].getBoundingBox();
+		
+		if(autoCellSize && cellSizeOutdated)
+			cellSize = deriveCellSize();
+		cellSizeOutdated = false;
+		
+		fillEntries();
+		bucketEntries();
+		
+		int tableSize = bucketStart.length-1;
+		for(int bucket = 0; bucket < tableSize; bucket++){
+			int end = bucketStart[bucket+1];
+			for(int i = bucketStart[bucket]; i < end; i++){
+				int e1 = sortedEntries[i];
+				for(int j = i+1; j < end; j++){
+					int e2 = sortedEntries[j];
+					if(entryX[e1] != entryX[e2] || entryY[e1] != entryY[e2]) continue; // hash collision between different cells
+					
+					int b1 = entryBody[e1];
+					int b2 = entryBody[e2];
+					BoundingBox first = bounds[b1];
+					BoundingBox second = bounds[b2];
+					
+					if(cell(Math.max(first.xmin, second.xmin)) != entryX[e1] || cell(Math.max(first.ymin, second.ymin)) != entryY[e1]) continue;
+					
+					if(first.intersects(second))
+						report(b1, b2, handler);
+				}
+			}
+		}
+		
+		for(int i = 0; i < oversizedCount; i++){
+			int big = oversized[i];
+			for(int other = 0; other < size; other++){
+				// pairs of two oversized bodies are only reported by the one with the lowest index
+				if(other == big || (isOversized[other] && other < big)) continue;
+				if(bounds[big].intersects(bounds[other]))
+					report(big, other, handler);
+			}
+		}
+	}
+	
+	private void report(int b1, int b2, BiConsumer<RigidBody, RigidBody> handler){
+		if(b1 < b2)
+			handler.accept(bodies[b1], bodies[b2]);
+		else
+			handler.accept(bodies[b2], bodies[b1]);
+	}
+	
+	private int cell(double coord){
+		return (int) Math.floor(coord / cellSize);
+	}
+	
+	/**
+	 * Puts every body in all the cells it covers
+	 */
+	private void fillEntries(){
+		entryCount = 0;
+		oversizedCount = 0;
+		if(isOversized.length < size)
+			isOversized = new boolean[bodies.length];
+		
+		for(int b = 0; b < size; b++){
+			BoundingBox box = bounds[b];
+			int xmin = cell(box.xmin), xmax = cell(box.xmax);
+			int ymin = cell(box.ymin), ymax = cell(box.ymax);
+			
+			// the cells of a huge box can span more than the range of an int along each axis, and their product more than that of a long
+			long width = (long) xmax-xmin+1, height = (long) ymax-ymin+1;
+			isOversized[b] = width > MAX_CELLS_PER_BODY || height > MAX_CELLS_PER_BODY || width*height > MAX_CELLS_PER_BODY;
+			if(isOversized[b]){
+				if(oversizedCount == oversized.length)
+					oversized = Arrays.copyOf(oversized, oversizedCount*2);
+				oversized[oversizedCount++] = b;
+				continue;
+			}
+			
+			ensureEntryCapacity(entryCount + (int) (width*height));
+			
+			// counted from the lowest cell, x <= xmax would never end for cells at Integer.MAX_VALUE
+			for(int x = 0; x <= xmax-xmin; x++){
+				for(int y = 0; y <= ymax-ymin; y++){
+					entryBody[entryCount] = b;
+					entryX[entryCount] = xmin+x;
+					entryY[entryCount] = ymin+y;
+					entryCount++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Counting sort of all entries on the hash of their cell
+	 */
+	private void bucketEntries(){
+		int tableSize = Integer.highestOneBit(Math.max(entryCount, 32)) * 4;
+		if(bucketStart.length < tableSize+1 || bucketStart.length > tableSize*4+1)
+			bucketStart = new int[tableSize+1];
+		else
+			Arrays.fill(bucketStart, 0);
+		tableSize = bucketStart.length-1;
+		int mask = tableSize-1;
+		
+		for(int e = 0; e < entryCount; e++)
+			bucketStart[hash(entryX[e], entryY[e], mask)+1]++;
+		
+		for(int i = 0; i < tableSize; i++)
+			bucketStart[i+1] += bucketStart[i];
+		
+		// bucketStart[h] is used as the insertion pointer for bucket h, and ends up being the start of bucket h+1
+		for(int e = 0; e < entryCount; e++)
+			sortedEntries[bucketStart[hash(entryX[e], entryY[e], mask)]++] = e;
+		
+		for(int i = tableSize; i > 0; i--)
+			bucketStart[i] = bucketStart[i-1];
+		bucketStart[0] = 0;
+	}
+	
+	private static int hash(int x, int y, int mask){
+		return (x * 73856093 ^ y * 19349663) & mask;
+	}
+	
+	private void ensureEntryCapacity(int capacity){
+		if(capacity > entryBody.length){
+			int newSize = Math.max(capacity, entryBody.length*2);
+			entryBody = Arrays.copyOf(entryBody, newSize);
+			entryX = Arrays.copyOf(entryX, newSize);
+			entryY = Arrays.copyOf(entryY, newSize);
+			sortedEntries = new int[newSize];
+		}
+	}
+	
+	/**
+	 * The median of the largest dimension of all bounding boxes, only recomputed when bodies are added or removed
+	 */
+	private double deriveCellSize(){
+		if(size == 0) return 1.0;
+		if(sizeScratch.length < size)
+			sizeScratch = new double[bodies.length];
+		for(int i = 0; i < size; i++)
+			sizeScratch[i] = Math.max(bounds[i].getWidth(), bounds[i].getHeight());
+		Arrays.sort(sizeScratch, 0, size);
+		double median = sizeScratch[size/2];
+		return (median > 0)? median : 1.0;
+	}
+	
+	@Override
+	public int size(){
+		return size;
+	}
+}
@@ -0,0 +1,185 @@
+package physics2D.physics.broadphase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import physics2D.physics.RigidBody;
+
+/**
+ * Keeps the overlapping pairs found by the broadphase from one tick to the next.<br><br>
+ * 
+ * Every tick the broadphase {@link #touch(RigidBody, RigidBody) touches} all pairs it finds between {@link #startTick()} and
+ * {@link #endTick()}. Pairs which were not touched during a tick are ended and dropped at {@link #endTick()}.<br><br>
+ * 
+ * Pairs are found through an open addressing table with linear probing, keyed on both body ids packed into a long.
+ * Ended pairs are removed with backward shift deletion, so the table never fills up with tombstones.
+ */
+public class PairCache {
+	
+	private static final long EMPTY = -1L;
+	
+	private long[] keys;
+	private BodyPair[] values;
+	private int mask;
+	
+	/** all active pairs, in order of creation */
+	private BodyPair[] active = new BodyPair[64];
+	private int size = 0;
+	
+	private int tick = 0;
+	
+	private final ArrayList<PairListener> listeners = new ArrayList<>();
+	
+	public PairCache(){
+		allocateTable(128);
+	}
+	
+	public void addListener(PairListener listener){
+		listeners.add(listener);
+	}
+	
+	public boolean removeListener(PairListener listener){
+		return listeners.remove(listener);
+	}
+	
+	public void startTick(){
+		tick++;
+	}
+	
+	/**
+	 * Marks the pair of {@code a} and {@code b} as overlapping this tick, creating it if they were not overlapping last tick
+	 * @return the pair of a and b
+	 */
+	public BodyPair touch(RigidBody a, RigidBody b){
+		long key = key(a, b);
+		int slot = findSlot(key);
+		
+		BodyPair pair = values[slot];
+		if(pair != null){
+			if(pair.lastTick != tick){
+				pair.lastTick = tick;
+				for(PairListener l:listeners)
+					l.pairPersist(pair);
+			}
+			return pair;
+		}
+		
+		pair = (a.id < b.id)? new BodyPair(a, b, key) : new BodyPair(b, a, key);
+		pair.beginTick = tick;
+		pair.lastTick = tick;
+		
+		keys[slot] = key;
+		values[slot] = pair;
+		
+		if(size == active.length)
+			active = Arrays.copyOf(active, size*2);
+		pair.index = size;
+		active[size++] = pair;
+		
+		if(size*2 > keys.length)
+			allocateTable(keys.length*2);
+		
+		for(PairListener l:listeners)
+			l.pairBegin(pair);
+		
+		return pair;
+	}
+	
+	/**
+	 * Ends and removes all pairs which have not been touched since the last {@link #startTick()}
+	 */
+	public void endTick(){
+		for(int i = size-1; i >= 0; i--){
+			BodyPair pair = active[i];
+			if(pair.lastTick != tick){
+				removeSlot(findSlot(pair.key));
+				
+				size--;
+				active[i] = active[size];
+				active[i].index = i;
+				active[size] = null;
+				
+				pair.endTick = tick;
+				for(PairListener l:listeners)
+					l.pairEnd(pair);
+			}
+		}
+	}
+	
+	/**
+	 * @return the pair of {@code a} and {@code b}, or null if they are not overlapping
+	 */
+	public BodyPair get(RigidBody a, RigidBody b){
+		return values[findSlot(key(a, b))];
+	}
+	
+	/**
+	 * @param index 0 <= index < size()
+	 * @return the index'th active pair
+	 */
+	public BodyPair get(int index){
+		return active[index];
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	public int getTick(){
+		return tick;
+	}
+	
+	private static long key(RigidBody a, RigidBody b){
+		long lo = Math.min(a.id, b.id);
+		long hi = Math.max(a.id, b.id);
+		return (lo << 32) | hi;
+	}
+	
+	private int home(long key){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & mask;
+	}
+	
+	/**
+	 * @return the slot containing key, or the empty slot where it should be inserted
+	 */
+	private int findSlot(long key){
+		int slot = home(key);
+		while(keys[slot] != EMPTY && keys[slot] != key)
+			slot = (slot+1) & mask;
+		return slot;
+	}
+	
+	private void removeSlot(int slot){
+		int free = slot;
+		keys[free] = EMPTY;
+		values[free] = null;
+		
+		// shift back every following entry which may no longer be reachable from it's home slot
+		for(int j = (free+1) & mask; keys[j] != EMPTY; j = (j+1) & mask){
+			int home = home(keys[j]);
+			boolean reachable = (free <= j)? (free < home && home <= j) : (free < home || home <= j);
+			if(reachable) continue;
+			
+			keys[free] = keys[j];
+			values[free] = values[j];
+			keys[j] = EMPTY;
+			values[j] = null;
+			free = j;
+		}
+	}
+	
+	private void allocateTable(int capacity){
+		keys = new long[capacity];
+		values = new BodyPair[capacity];
+		mask = capacity-1;
+		Arrays.fill(keys, EMPTY);
+		
+		for(int i = 0; i < size; i++){
+			BodyPair pair = active[i];
+			int slot = findSlot(pair.key);
+			keys[slot] = pair.key;
+			values[slot] = pair;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package physics2D.physics.broadphase;
+
+/**
+ * Receives the lifecycle of the pairs kept by a {@link PairCache}
+ */
+public interface PairListener {
+	
+	/**
+	 * Called in the first tick the two bodies of {@code pair} overlap
+	 */
+	public default void pairBegin(BodyPair pair){}
+	
+	/**
+	 * Called in every following tick the two bodies of {@code pair} still overlap
+	 */
+	public default void pairPersist(BodyPair pair){}
+	
+	/**
+	 * Called at the end of the first tick in which the two bodies of {@code pair} no longer overlap, or one of them was removed
+	 */
+	public default void pairEnd(BodyPair pair){}
+}
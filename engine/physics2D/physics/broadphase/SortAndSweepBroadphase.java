@@ -0,0 +1,87 @@
+package physics2D.physics.broadphase;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import physics2D.math.BoundingBox;
+import physics2D.physics.RigidBody;
+
+/**
+ * Incremental sort and sweep along the x axis.<br><br>
+ * 
+ * Bodies are kept sorted by the lower x bound of their bounding box. Since bodies only move a little each tick,
+ * the order of the previous tick is almost correct, and an insertion sort restores it in close to linear time.
+ * The sweep then only compares bodies whose x intervals overlap.
+ */
+public class SortAndSweepBroadphase implements Broadphase {
+	
+	private RigidBody[] bodies = new RigidBody[16];
+	private BoundingBox[] bounds = new BoundingBox[16];
+	private int size = 0;
+	
+	@Override
+	public void add(RigidBody body){
+		if(size == bodies.length){
+			bodies = Arrays.copyOf(bodies, size*2);
+			bounds = Arrays.copyOf(bounds, size*2);
+		}
+		// placed at the end, the next sort will move it to it's correct position
+		bodies[size] = body;
+		bounds[size] = body.getBoundingBox();
+		size++;
+	}
+	
+	@Override
+	public boolean remove(RigidBody body){
+		for(int i = 0; i < size; i++){
+			if(bodies[i] == body){
+				System.arraycopy(bodies, i+1, bodies, i, size-i-1);
+				System.arraycopy(bounds, i+1, bounds, i, size-i-1);
+				size--;
+				bodies[size] = null;
+				bounds[size] = null;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public void findPairs(BiConsumer<RigidBody, RigidBody> handler){
+		for(int i = 0; i < size; i++)
+			bounds[i] = bodies[i].getBoundingBox();
+		
+		sort();
+		
+		for(int i = 0; i < size; i++){
+			BoundingBox a = bounds[i];
+			for(int j = i+1; j < size && bounds[j].xmin < a.xmax; j++){
+				if(a.intersects(bounds[j]))
+					handler.accept(bodies[i], bodies[j]);
+			}
+		}
+	}
+	
+	/**
+	 * Insertion sort on xmin, nearly linear when the previous order is still mostly correct
+	 */
+	private void sort(){
+		for(int i = 1; i < size; i++){
+			RigidBody body = bodies[i];
+			BoundingBox box = bounds[i];
+			int j = i-1;
+			while(j >= 0 && bounds[j].xmin > box.xmin){
+				bodies[j+1] = bodies[j];
+				bounds[j+1] = bounds[j];
+				j--;
+			}
+			bodies[j+1] = body;
+			bounds[j+1] = box;
+		}
+	}
+	
+	@Override
+	public int size(){
+		return size;
+	}
+}
@@ -11,31 +11,35 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import physics2D.Debug;
+import physics2D.geom.Circle;
 import physics2D.geom.Rectangle;
-import physics2D.geom.RegularPolygon;
 import physics2D.math.CFrame;
 import physics2D.math.Vec2;
 import physics2D.physics.Constraint;
 import physics2D.physics.Physical;
+import physics2D.physics.SolverMode;
 import physics2D.physics.SpringPinConstraint;
 import physics2D.physics.World;
 
 public class Physics2D {
 	
 	public static double SIMULATION_SPEED = 1.0;
-	public static final int SIMULATION_REPEATS_PER_TICK = 5;
+	public static final SolverMode SOLVER_MODE = SolverMode.PENALTY;
+	/** the penalty forces need 2ms ticks, XPBD substeps a single 10ms tick itself */
+	public static final int SIMULATION_REPEATS_PER_TICK = (SOLVER_MODE == SolverMode.XPBD)? 1 : 5;
 	public static boolean SIMULATION_PAUSED = true;
 	
 	public static final double deltaT = 0.01 / SIMULATION_REPEATS_PER_TICK;
 	
 	public static void main(String[] args) throws IOException {
 		World w = new World(new Vec2(0.0, -1.0));
+		w.solverMode = SOLVER_MODE;
 		InputHandler handler = new StandardInputHandler(w);
 		Debug.setWorld(w);
 		Screen.init(handler);
 		
 		w.addObject(ObjectLibrary.createFloor(new CFrame(0.0, 0.0), ObjectLibrary.BASIC));
-		RegularPolygon circle = new RegularPolygon(200, new Vec2(0.3, 0.0));
+		Circle circle = new Circle(0.3);
 		Physical cir = new Physical(new CFrame(1.5, 0.7));
 		cir.addPart(circle, CFrame.IDENTITY, ObjectLibrary.BASIC);
 		w.addObject(cir);
@@ -0,0 +1,193 @@
+package physics2D.tests;
+import static org.junit.Assert.*;
+import game.util.Color;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import physics2D.math.CFrame;
+import physics2D.physics.Box;
+import physics2D.physics.PhysicalProperties;
+import physics2D.physics.RigidBody;
+import physics2D.physics.broadphase.AABBTreeBroadphase;
+import physics2D.physics.broadphase.BodyPair;
+import physics2D.physics.broadphase.Broadphase;
+import physics2D.physics.broadphase.BruteForceBroadphase;
+import physics2D.physics.broadphase.HashGridBroadphase;
+import physics2D.physics.broadphase.PairCache;
+import physics2D.physics.broadphase.PairListener;
+import physics2D.physics.broadphase.SortAndSweepBroadphase;
+
+public class BroadphaseTests {
+	
+	private PhysicalProperties properties = new PhysicalProperties(10.0, 0.05, 0.0, Color.DEFAULT_BRICK_COLOR);
+	
+	private List<Box> createBoxes(Random r, int count){
+		List<Box> boxes = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+			boxes.add(new Box(new CFrame(r.nextDouble()*3, r.nextDouble()*3, r.nextDouble()*Math.PI), 0.05+r.nextDouble()*0.3, 0.05+r.nextDouble()*0.3, properties));
+		return boxes;
+	}
+	
+	private static Set<String> collectPairs(Broadphase broadphase, List<Box> boxes){
+		Set<String> pairs = new HashSet<>();
+		broadphase.findPairs((a, b) -> {
+			int i = boxes.indexOf(a);
+			int j = boxes.indexOf(b);
+			assertTrue("pair reported twice", pairs.add(Math.min(i, j) + ":" + Math.max(i, j)));
+		});
+		return pairs;
+	}
+	
+	private static void assertSamePairs(List<Box> boxes, Broadphase expected, Broadphase tested){
+		Set<String> expectedPairs = collectPairs(expected, boxes);
+		Set<String> testedPairs = collectPairs(tested, boxes);
+		assertEquals(expectedPairs, testedPairs);
+	}
+	
+	private void testAgainstBruteForce(Broadphase tested){
+		Random r = new Random(42);
+		List<Box> boxes = createBoxes(r, 300);
+		
+		Broadphase reference = new BruteForceBroadphase();
+		for(RigidBody b:boxes){
+			reference.add(b);
+			tested.add(b);
+		}
+		
+		for(int tick = 0; tick < 20; tick++){
+			assertSamePairs(boxes, reference, tested);
+			
+			for(Box b:boxes){
+				b.velocity = b.velocity.add(r.nextDouble()-0.5, r.nextDouble()-0.5);
+				b.angularVelocity += r.nextDouble()-0.5;
+				b.update(0.05);
+			}
+			
+			Box removed = boxes.remove(r.nextInt(boxes.size()));
+			assertTrue(reference.remove(removed));
+			assertTrue(tested.remove(removed));
+			
+			Box added = createBoxes(r, 1).get(0);
+			boxes.add(added);
+			reference.add(added);
+			tested.add(added);
+			assertEquals(reference.size(), tested.size());
+		}
+	}
+	
+	@Test
+	public void testSortAndSweep(){
+		testAgainstBruteForce(new SortAndSweepBroadphase());
+	}
+	
+	@Test
+	public void testHashGrid(){
+		testAgainstBruteForce(new HashGridBroadphase());
+	}
+	
+	@Test
+	public void testHashGridWithOversizedBodies(){
+		// most boxes cover more than MAX_CELLS_PER_BODY cells
+		testAgainstBruteForce(new HashGridBroadphase(0.02));
+	}
+	
+	@Test
+	public void testHashGridWithHugeBody(){
+		// the huge box spans more cells along each axis than fit in an int
+		HashGridBroadphase grid = new HashGridBroadphase(1E-6);
+		List<Box> boxes = new ArrayList<>();
+		boxes.add(new Box(new CFrame(0.0, 0.0), 1E5, 1E5, properties));
+		boxes.add(new Box(new CFrame(1.0, 1.0), 1E-7, 1E-7, properties));
+		boxes.add(new Box(new CFrame(1E6, 0.0), 1E-7, 1E-7, properties));
+		for(Box b:boxes)
+			grid.add(b);
+		
+		Set<String> pairs = collectPairs(grid, boxes);
+		assertEquals(1, pairs.size());
+		assertTrue(pairs.contains("0:1"));
+	}
+	
+	@Test
+	public void testAABBTree(){
+		AABBTreeBroadphase tree = new AABBTreeBroadphase();
+		testAgainstBruteForce(tree);
+		assertTrue("tree is unbalanced, height " + tree.getHeight(), tree.getHeight() < 20);
+	}
+	
+	private static String key(BodyPair pair){
+		return pair.first.id + ":" + pair.second.id;
+	}
+	
+	@Test
+	public void testPairCache(){
+		Random r = new Random(7);
+		List<Box> boxes = createBoxes(r, 300);
+		Broadphase broadphase = new BruteForceBroadphase();
+		for(Box b:boxes)
+			broadphase.add(b);
+		
+		Set<String> began = new HashSet<>();
+		Set<String> persisted = new HashSet<>();
+		Set<String> ended = new HashSet<>();
+		PairCache cache = new PairCache();
+		cache.addListener(new PairListener(){
+			@Override public void pairBegin(BodyPair pair){assertTrue(began.add(key(pair)));}
+			@Override public void pairPersist(BodyPair pair){assertTrue(persisted.add(key(pair)));}
+			@Override public void pairEnd(BodyPair pair){assertTrue(ended.add(key(pair)));}
+		});
+		
+		Map<String, BodyPair> previous = new HashMap<>();
+		for(int tick = 0; tick < 30; tick++){
+			began.clear(); persisted.clear(); ended.clear();
+			Map<String, BodyPair> current = new HashMap<>();
+			
+			cache.startTick();
+			broadphase.findPairs((a, b) -> {
+				BodyPair pair = cache.touch(a, b);
+				assertTrue(pair.first.id < pair.second.id);
+				current.put(key(pair), pair);
+			});
+			cache.endTick();
+			
+			assertEquals(current.size(), cache.size());
+			for(Map.Entry<String, BodyPair> e:current.entrySet()){
+				BodyPair pair = e.getValue();
+				assertSame(pair, cache.get(pair.second, pair.first));
+				assertTrue(pair.isActive());
+				assertEquals(cache.getTick(), pair.getLastTick());
+				if(previous.containsKey(e.getKey())){
+					assertSame(previous.get(e.getKey()), pair);
+					assertTrue(persisted.contains(e.getKey()));
+				}else{
+					assertEquals(cache.getTick(), pair.getBeginTick());
+					assertTrue(began.contains(e.getKey()));
+				}
+			}
+			for(Map.Entry<String, BodyPair> e:previous.entrySet()){
+				if(!current.containsKey(e.getKey())){
+					BodyPair pair = e.getValue();
+					assertTrue(ended.contains(e.getKey()));
+					assertFalse(pair.isActive());
+					assertEquals(cache.getTick(), pair.getEndTick());
+					assertNull(cache.get(pair.first, pair.second));
+				}
+			}
+			assertEquals(current.size(), began.size() + persisted.size());
+			assertEquals(previous.size(), ended.size() + persisted.size());
+			
+			for(Box b:boxes){
+				b.velocity = b.velocity.add(r.nextDouble()-0.5, r.nextDouble()-0.5);
+				b.update(0.05);
+			}
+			previous = current;
+		}
+	}
+}
@@ -3,12 +3,16 @@ import static org.junit.Assert.*;
 import game.util.Color;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Function;
 
 import org.junit.Test;
 
 import physics2D.Debug;
 import physics2D.geom.*;
+import physics2D.math.BoundingBox;
 import physics2D.math.CFrame;
+import physics2D.math.Range;
 import physics2D.math.RotMat2;
 import physics2D.math.Vec2;
 import physics2D.math.Vertex2;
@@ -216,4 +220,500 @@ public class GeometryTests extends GUITestSuite {
 			Debug.logShape(poly1.translate(direction), Color.BLUE.fuzzier(0.2));
 		});
 	}
+	
+	/**
+	 * The Vec2 and Range based SAT which {@link SeparatingAxis} replaces
+	 */
+	private static Vec2 rangeNearestExit(Convex c, Convex other){
+		Vec2 bestDir = new Vec2(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+		for(Vec2 dir:c.getSATDirections()){
+			Range r1 = c.getBoundsAlongDirection(dir);
+			Range r2 = other.getBoundsAlongDirection(dir);
+			if(r1.isDisjunct(r2)) return null;
+			double d1 = r2.max-r1.min;
+			double d2 = r1.max-r2.min;
+			Vec2 depthVec = dir.reProject((d1 < d2)? -d1:d2);
+			if(depthVec.lengthSquared() < bestDir.lengthSquared())
+				bestDir = depthVec;
+		}
+		return bestDir.rotate90CounterClockwise();
+	}
+	
+	private static boolean rangeIntersects(Convex c, Convex other){
+		for(Vec2 direction:c.getSATDirections())
+			if(c.getBoundsAlongDirection(direction).isDisjunct(other.getBoundsAlongDirection(direction)))
+				return false;
+		for(Vec2 direction:other.getSATDirections())
+			if(c.getBoundsAlongDirection(direction).isDisjunct(other.getBoundsAlongDirection(direction)))
+				return false;
+		return true;
+	}
+	
+	/**
+	 * Checks one pair of shapes of {@link GeometryTests#checkRandomPairs(long, Function, Function, PairCheck) checkRandomPairs}
+	 */
+	private interface PairCheck<S> {
+		/**
+		 * @param r the random of the test, for checks which need more random values
+		 * @return whether a and b intersect
+		 */
+		boolean check(S a, S b, Random r);
+	}
+	
+	private static CFrame randomCFrame(Random r){
+		return new CFrame(r.nextDouble()*2-1, r.nextDouble()*2-1, r.nextDouble()*Math.PI*2);
+	}
+	
+	/**
+	 * Checks 2000 pairs of shapes made by the given suppliers, usually shapes placed at a {@link #randomCFrame(Random) random CFrame},
+	 * and asserts that neither nearly all nor nearly none of them intersect
+	 * @param seed seed of the random passed to the suppliers and the check
+	 */
+	private static <S> void checkRandomPairs(long seed, Function<Random, S> first, Function<Random, S> second, PairCheck<S> check){
+		Random r = new Random(seed);
+		int intersecting = 0;
+		for(int i = 0; i < 2000; i++){
+			S a = first.apply(r);
+			S b = second.apply(r);
+			if(check.check(a, b, r)) intersecting++;
+		}
+		assertTrue(intersecting > 100 && intersecting < 1900);
+	}
+	
+	private static <S> void checkRandomPairs(long seed, Function<Random, S> shapes, PairCheck<S> check){
+		checkRandomPairs(seed, shapes, shapes, check);
+	}
+	
+	@Test
+	public void testSeparatingAxisMatchesRanges(){
+		ConvexPolygon[] shapes = {
+				new SimpleConvexPolygon(convexPolygon),
+				new SimpleConvexPolygon(spheroid),
+				new Rectangle(1.2, 0.3),
+				new RegularPolygon(7, new Vec2(0.6, 0.0)),
+				new Triangle(new Vec2(0.0, 0.0), new Vec2(1.0, 0.2), new Vec2(0.3, 0.8))
+		};
+		
+		checkRandomPairs(11, r -> shapes[r.nextInt(shapes.length)].transformToCFrame(randomCFrame(r)), (a, b, r) -> {
+			boolean intersects = rangeIntersects(a, b);
+			assertEquals(intersects, a.intersects(b));
+			assertEquals(intersects, SeparatingAxis.intersects(a.getPackedCorners(), b.getPackedCorners()));
+			
+			Vec2 expected = rangeNearestExit(a, b);
+			SeparatingAxis.Result result = new SeparatingAxis.Result();
+			boolean found = SeparatingAxis.nearestExit(a.getPackedCorners(), b.getPackedCorners(), result);
+			assertEquals(expected != null, found);
+			if(expected != null){
+				assertEquals(expected.x, result.x, 0.0);
+				assertEquals(expected.y, result.y, 0.0);
+				Vec2 exit = a.getNearestExit(b);
+				assertEquals(expected.x, exit.x, 0.0);
+				assertEquals(expected.y, exit.y, 0.0);
+			}else{
+				assertNull(a.getNearestExit(b));
+			}
+			return intersects;
+		});
+	}
+	
+	@Test
+	public void testConvexClipperMatchesSlicing(){
+		ConvexPolygon[] shapes = {
+				new SimpleConvexPolygon(convexPolygon),
+				new SimpleConvexPolygon(spheroid),
+				new Rectangle(1.2, 0.3),
+				new RegularPolygon(7, new Vec2(0.6, 0.0)),
+				new Triangle(new Vec2(0.0, 0.0), new Vec2(1.0, 0.2), new Vec2(0.3, 0.8))
+		};
+		
+		ConvexClipper clipper = new ConvexClipper();
+		checkRandomPairs(12, r -> shapes[r.nextInt(shapes.length)].transformToCFrame(randomCFrame(r)), (a, b, r) -> {
+			// the slicing a.intersection(b) did before ConvexClipper
+			Vec2[] sliced = b.getCorners();
+			Vec2[] corners = a.getCorners();
+			for(int j = 0; j < corners.length; j++)
+				sliced = ConvexPolygon.leftSlice(sliced, corners[j], corners[(j+1)%corners.length].subtract(corners[j]));
+			
+			boolean found = clipper.clip(b.getPackedCorners(), a.getPackedCorners());
+			if(sliced.length < 3 || Polygon.getArea(sliced) < 1E-12){
+				assertEquals(0.0, clipper.getArea(), 1E-12);
+				return false;
+			}
+			assertTrue(found);
+			assertEquals(Polygon.getArea(sliced), clipper.getArea(), 1E-12);
+			Vec2 center = Polygon.getCenterOfMass(sliced);
+			assertEquals(center.x, clipper.getCenterOfMassX(), 1E-9);
+			assertEquals(center.y, clipper.getCenterOfMassY(), 1E-9);
+			assertEquals(Polygon.getArea(sliced), a.intersection(b).getArea(), 1E-12);
+			return true;
+		});
+	}
+	
+	@Test
+	public void testSeparatingAxisContactMatchesNearestExit(){
+		ConvexPolygon[] shapes = {
+				new SimpleConvexPolygon(convexPolygon),
+				new Rectangle(1.2, 0.3),
+				new RegularPolygon(7, new Vec2(0.6, 0.0)),
+				new Triangle(new Vec2(0.0, 0.0), new Vec2(1.0, 0.2), new Vec2(0.3, 0.8))
+		};
+		
+		SeparatingAxis.Result result = new SeparatingAxis.Result();
+		checkRandomPairs(13, r -> shapes[r.nextInt(shapes.length)].transformToCFrame(randomCFrame(r)), (a, b, r) -> {
+			Vec2 exitA = a.getNearestExit(b);
+			Vec2 exitB = b.getNearestExit(a);
+			int axisCount = a.getCorners().length + b.getCorners().length;
+			int firstAxis = r.nextInt(axisCount+2)-1;
+			
+			boolean touching = SeparatingAxis.contact(a.getPackedCorners(), b.getPackedCorners(), firstAxis, result);
+			assertEquals(exitA != null && exitB != null, touching);
+			if(!touching){
+				assertTrue(result.axis >= 0 && result.axis < axisCount);
+				return false;
+			}
+			boolean aIsBase = exitA.lengthSquared() < exitB.lengthSquared();
+			Vec2 expected = aIsBase? exitA : exitB;
+			assertEquals(aIsBase, result.axis < a.getCorners().length);
+			assertEquals(expected.x, result.x, 0.0);
+			assertEquals(expected.y, result.y, 0.0);
+			return true;
+		});
+	}
+	
+	private static double segmentDistance(Vec2 p, Vec2 a, Vec2 b){
+		Vec2 e = b.subtract(a);
+		double t = Math.max(0, Math.min(1, p.subtract(a).dot(e) / e.lengthSquared()));
+		return p.subtract(a.add(e.mul(t))).length();
+	}
+	
+	private static double polygonDistance(ConvexPolygon a, ConvexPolygon b){
+		double best = Double.POSITIVE_INFINITY;
+		Vec2[] ca = a.getCorners(), cb = b.getCorners();
+		for(int i = 0; i < ca.length; i++)
+			for(int j = 0; j < cb.length; j++){
+				best = Math.min(best, segmentDistance(ca[i], cb[j], cb[(j+1)%cb.length]));
+				best = Math.min(best, segmentDistance(cb[j], ca[i], ca[(i+1)%ca.length]));
+			}
+		return best;
+	}
+	
+	@Test
+	public void testGJKMatchesSeparatingAxis(){
+		ConvexPolygon[] shapes = {
+				new SimpleConvexPolygon(convexPolygon),
+				new Rectangle(1.2, 0.3),
+				new RegularPolygon(7, new Vec2(0.6, 0.0)),
+				new RegularPolygon(64, new Vec2(0.4, 0.0)),
+				new Triangle(new Vec2(0.0, 0.0), new Vec2(1.0, 0.2), new Vec2(0.3, 0.8))
+		};
+		
+		GJK gjk = new GJK();
+		SeparatingAxis.Result result = new SeparatingAxis.Result();
+		checkRandomPairs(14, r -> shapes[r.nextInt(shapes.length)].transformToCFrame(randomCFrame(r)), (a, b, r) -> {
+			boolean touching = SeparatingAxis.contact(a.getPackedCorners(), b.getPackedCorners(), -1, result);
+			assertEquals(touching, gjk.query(a, b));
+			assertEquals(touching, gjk.isIntersecting());
+			
+			if(touching){
+				Vec2 exit = (result.axis < a.getCorners().length)? new Vec2(result.x, result.y) : new Vec2(-result.x, -result.y);
+				assertEquals(exit.length(), gjk.getDistance(), 1E-9);
+				assertEquals(exit.x, gjk.getExit().x, 1E-7);
+				assertEquals(exit.y, gjk.getExit().y, 1E-7);
+				assertFalse(b.translate(gjk.getExit().mul(1.0001)).intersects(a));
+			}else{
+				double distance = polygonDistance(a, b);
+				assertEquals(distance, gjk.getDistance(), 1E-9);
+				assertEquals(distance, gjk.getPointA().subtract(gjk.getPointB()).length(), 1E-9);
+				Vec2 normal = gjk.getNormal();
+				assertEquals(gjk.getPointB().subtract(gjk.getPointA()).normalize().x, normal.x, 1E-6);
+				assertEquals(gjk.getPointB().subtract(gjk.getPointA()).normalize().y, normal.y, 1E-6);
+			}
+			return touching;
+		});
+	}
+	
+	@Test
+	public void testCircleMassAndBounds(){
+		Circle c = new Circle(new Vec2(0.3, -0.2), 0.5);
+		// a regular polygon with many corners approaches the circle
+		ConvexPolygon approx = new RegularPolygon(4096, new Vec2(0.5, 0.0)).translate(new Vec2(0.3, -0.2));
+		assertEquals(approx.getArea(), c.getArea(), 1E-5);
+		assertEquals(Polygon.getInertialArea(approx.getCorners(), c.getCenterOfMass()), c.getInertialArea(), 1E-5);
+		assertEquals(new Vec2(0.3, -0.2), c.getCenterOfMass());
+		
+		BoundingBox b = c.getBoundingBox();
+		assertEquals(-0.2, b.xmin, 1E-12);
+		assertEquals(0.8, b.xmax, 1E-12);
+		assertEquals(-0.7, b.ymin, 1E-12);
+		assertEquals(0.3, b.ymax, 1E-12);
+		
+		Vec2 direction = new Vec2(1.0, 2.0);
+		Range bounds = c.getBoundsAlongDirection(direction);
+		Range approxBounds = approx.getBoundsAlongDirection(direction);
+		assertEquals(approxBounds.min, bounds.min, 1E-5);
+		assertEquals(approxBounds.max, bounds.max, 1E-5);
+		
+		Circle moved = c.transformToCFrame(new CFrame(1.0, 0.0, Math.PI/2));
+		assertEquals(1.2, moved.center.x, 1E-12);
+		assertEquals(0.3, moved.center.y, 1E-12);
+		assertEquals(0.5, moved.radius, 0.0);
+		assertTrue(moved.containsPoint(new Vec2(1.2, 0.79)));
+		assertFalse(moved.containsPoint(new Vec2(1.2, 0.81)));
+	}
+	
+	@Test
+	public void testNegativelyScaledCircle(){
+		Circle flipped = new Circle(new Vec2(0.5, 0.0), 0.5).scale(-1);
+		assertEquals(-0.5, flipped.center.x, 0.0);
+		assertEquals(0.5, flipped.radius, 0.0);
+		
+		Contact contact = new Contact();
+		assertTrue(Circle.collide(flipped, new Circle(new Vec2(0.4, 0.0), 0.5), contact));
+		assertEquals(0.1, contact.depth, 1E-12);
+	}
+	
+	@Test
+	public void testCircleContacts(){
+		Convex[] shapes = {
+				new Circle(0.3),
+				new Circle(new Vec2(0.1, 0.0), 0.6),
+				new SimpleConvexPolygon(convexPolygon),
+				new Rectangle(1.2, 0.3),
+				new Triangle(new Vec2(0.0, 0.0), new Vec2(1.0, 0.2), new Vec2(0.3, 0.8))
+		};
+		
+		GJK gjk = new GJK();
+		checkRandomPairs(15, r -> shapes[r.nextInt(2)].transformToCFrame(randomCFrame(r)), r -> shapes[r.nextInt(shapes.length)].transformToCFrame(randomCFrame(r)), (a, b, r) -> {
+			Vec2 exit = a.getNearestExit(b);
+			assertEquals(exit != null, gjk.query(a, b));
+			assertEquals(exit != null, b.intersects(a));
+			if(exit == null) return false;
+			
+			assertEquals(gjk.getDistance(), exit.length(), 1E-4);
+			assertFalse(a.intersects(b.translate(exit.mul(1.0001))));
+			assertTrue(a.intersects(b.translate(exit.mul(0.99))));
+			
+			// seen from the other shape, the exit is reversed
+			Vec2 reverse = b.getNearestExit(a);
+			assertEquals(-exit.x, reverse.x, 1E-12);
+			assertEquals(-exit.y, reverse.y, 1E-12);
+			return true;
+		});
+	}
+	
+	@Test
+	public void testRoundedPolygonMassAndBounds(){
+		double length = 0.8, r = 0.2;
+		Capsule capsule = new Capsule(length, r);
+		assertEquals(2*length*r + Math.PI*r*r, capsule.getArea(), 1E-12);
+		assertEquals(0.0, capsule.getCenterOfMass().length(), 1E-12);
+		// a rectangle and two half discs, the center of a half disc is 4r/(3pi) from it's flat side
+		double halfDiscArea = Math.PI*r*r/2, d = 4*r/(3*Math.PI);
+		double halfDiscInertia = Math.PI*r*r*r*r/4 - halfDiscArea*d*d + halfDiscArea*(length/2+d)*(length/2+d);
+		assertEquals(length*2*r*(length*length+4*r*r)/12 + 2*halfDiscInertia, capsule.getInertialArea(), 1E-12);
+		
+		RoundedPolygon rounded = new RoundedPolygon(new SimpleConvexPolygon(convexPolygon), 0.1);
+		ConvexPolygon drawn = new SimpleConvexPolygon(rounded.getDrawingVertexes());
+		assertEquals(drawn.getArea(), rounded.getArea(), drawn.getArea()*1E-2);
+		assertEquals(drawn.getCenterOfMass().x, rounded.getCenterOfMass().x, 1E-3);
+		assertEquals(drawn.getCenterOfMass().y, rounded.getCenterOfMass().y, 1E-3);
+		assertEquals(drawn.getInertialArea(), rounded.getInertialArea(), drawn.getInertialArea()*1E-2);
+		
+		BoundingBox b = rounded.getBoundingBox();
+		assertEquals(-0.4, b.xmin, 1E-12);
+		assertEquals(1.1, b.xmax, 1E-12);
+		assertEquals(-0.7, b.ymin, 1E-12);
+		assertEquals(1.2, b.ymax, 1E-12);
+		
+		CFrame frame = new CFrame(0.5, -1.0, 0.7);
+		RoundedPolygon moved = rounded.transformToCFrame(frame);
+		assertEquals(rounded.getArea(), moved.getArea(), 0.0);
+		assertEquals(rounded.getInertialArea(), moved.getInertialArea(), 0.0);
+		assertEquals(frame.localToGlobal(rounded.getCenterOfMass()), moved.getCenterOfMass());
+		assertTrue(moved.containsPoint(frame.localToGlobal(new Vec2(1.0, 1.09))));
+		assertFalse(moved.containsPoint(frame.localToGlobal(new Vec2(1.0, 1.11))));
+	}
+	
+	@Test
+	public void testRoundedPolygonContacts(){
+		Convex[] shapes = {
+				new Capsule(0.8, 0.2),
+				new RoundedPolygon(new SimpleConvexPolygon(convexPolygon), 0.1),
+				new RoundedPolygon(new Rectangle(0.6, 0.4), 0.05),
+				new Circle(0.3),
+				new Rectangle(1.2, 0.3),
+				new Triangle(new Vec2(0.0, 0.0), new Vec2(1.0, 0.2), new Vec2(0.3, 0.8))
+		};
+		
+		GJK gjk = new GJK();
+		checkRandomPairs(16, r -> shapes[r.nextInt(3)].transformToCFrame(randomCFrame(r)), r -> shapes[r.nextInt(shapes.length)].transformToCFrame(randomCFrame(r)), (a, b, r) -> {
+			Vec2 exit = a.getNearestExit(b);
+			assertEquals(exit != null, gjk.query(a, b));
+			assertEquals(exit != null, b.intersects(a));
+			if(exit == null) return false;
+			
+			assertEquals(gjk.getDistance(), exit.length(), 1E-4);
+			assertFalse(a.intersects(b.translate(exit.mul(1.0001))));
+			assertTrue(a.intersects(b.translate(exit.mul(0.99))));
+			
+			Vec2 reverse = b.getNearestExit(a);
+			assertEquals(-exit.x, reverse.x, 1E-9);
+			assertEquals(-exit.y, reverse.y, 1E-9);
+			return true;
+		});
+	}
+	
+	@Test
+	public void testNegativelyScaledRoundedPolygons(){
+		RoundedPolygon flipped = new RoundedPolygon(new Rectangle(new CFrame(0.5, 0.0), 0.6, 0.4), 0.05).scale(-1);
+		Capsule capsule = new Capsule(new Vec2(0.5, 0.0), new Vec2(1.0, 0.0), 0.1).scale(-1);
+		assertEquals(0.05, flipped.radius, 0.0);
+		assertEquals(0.1, capsule.radius, 0.0);
+		
+		// the skins overlap by 0.05 beyond the touching cores
+		RoundedPolygon other = new RoundedPolygon(new Rectangle(new CFrame(-1.0, 0.0), 0.4, 0.4), 0.05);
+		Contact contact = new Contact();
+		assertTrue(RoundedPolygon.collide(flipped.core.getPackedCorners(), flipped.radius, other.core.getPackedCorners(), other.radius, contact));
+		assertEquals(0.1, contact.depth, 1E-12);
+		assertTrue(RoundedPolygon.collide(capsule.core.getPackedCorners(), capsule.radius, other.core.getPackedCorners(), other.radius, contact));
+	}
+	
+	@Test
+	public void testRoundedPolygonCoresTouching(){
+		// the cores share an edge, the skins still overlap by both radii
+		RoundedPolygon a = new RoundedPolygon(new Rectangle(0.6, 0.4), 0.05);
+		RoundedPolygon b = a.transformToCFrame(new CFrame(0.6, 0.0));
+		Contact contact = new Contact();
+		assertTrue(RoundedPolygon.collide(a.core.getPackedCorners(), a.radius, b.core.getPackedCorners(), b.radius, contact));
+		assertEquals(1.0, contact.normalX, 1E-12);
+		assertEquals(0.0, contact.normalY, 1E-12);
+		assertEquals(0.1, contact.depth, 1E-12);
+		
+		// a capsule lying on the core of a rounded box
+		Capsule capsule = new Capsule(new Vec2(-0.2, 0.2), new Vec2(0.2, 0.2), 0.1);
+		assertTrue(RoundedPolygon.collide(a.core.getPackedCorners(), a.radius, capsule.core.getPackedCorners(), capsule.radius, contact));
+		assertEquals(0.0, contact.normalX, 1E-12);
+		assertEquals(1.0, contact.normalY, 1E-12);
+		assertEquals(0.15, contact.depth, 1E-12);
+		assertNotNull(a.getNearestExit(capsule));
+	}
+	
+	/**
+	 * @return how far point lies outside of the furthest edge of the polygon, negative if it lies inside
+	 */
+	private static double outsideDistance(ConvexPolygon polygon, Vec2 point){
+		Vec2[] corners = polygon.getCorners();
+		double distance = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < corners.length; i++){
+			Vec2 edge = corners[(i+1)%corners.length].subtract(corners[i]);
+			// the corners are counterclockwise, so this is positive outside of the edge
+			distance = Math.max(distance, point.subtract(corners[i]).cross(edge) / edge.length());
+		}
+		return distance;
+	}
+	
+	@Test
+	public void testBoxBoxMatchesSeparatingAxis(){
+		Rectangle[] shapes = {
+				new Rectangle(1.2, 0.3),
+				new Rectangle(0.5, 0.5),
+				new Rectangle(new CFrame(0.2, 0.1, 0.3), 0.8, 0.4)
+		};
+		
+		SeparatingAxis.Result result = new SeparatingAxis.Result();
+		Contact contact = new Contact();
+		checkRandomPairs(17, r -> shapes[r.nextInt(shapes.length)].transformToCFrame(randomCFrame(r)), (a, b, r) -> {
+			contact.axis = r.nextInt(5)-1;
+			boolean touching = Rectangle.collide(a, b, contact);
+			assertEquals(SeparatingAxis.contact(a.getPackedCorners(), b.getPackedCorners(), -1, result), touching);
+			if(!touching) return false;
+			
+			Vec2 exit = (result.axis < 4)? new Vec2(result.x, result.y) : new Vec2(-result.x, -result.y);
+			assertEquals(exit.length(), contact.depth, 1E-9);
+			assertFalse(a.intersects(b.translate(contact.getExit().mul(1.0001))));
+			
+			// the points of the manifold lie no further than the depth outside of either box
+			for(int p = 0; p < contact.getPointCount(); p++){
+				Vec2 point = contact.getPoint(p);
+				assertTrue(outsideDistance(a, point) <= contact.depth+1E-9);
+				assertTrue(outsideDistance(b, point) <= contact.depth+1E-9);
+				assertTrue(contact.getDepth(p) <= contact.depth+1E-9);
+			}
+			
+			// for shallow contacts, the points of the manifold lie in the intersection of both boxes
+			Rectangle shallow = b.translate(contact.getExit().mul(0.95));
+			assertTrue(Rectangle.collide(a, shallow, contact));
+			BoundingBox intersection = a.intersection(shallow).getBoundingBox();
+			for(int p = 0; p < contact.getPointCount(); p++){
+				Vec2 point = contact.getPoint(p);
+				assertTrue(point.x > intersection.xmin-1E-9 && point.x < intersection.xmax+1E-9);
+				assertTrue(point.y > intersection.ymin-1E-9 && point.y < intersection.ymax+1E-9);
+				assertTrue(contact.getDepth(p) <= contact.depth+1E-9);
+			}
+			return true;
+		});
+	}
+	
+	@Test
+	public void testNegativelyScaledBox(){
+		Rectangle flipped = new Rectangle(1.0, 1.0).scale(-1);
+		Rectangle other = new Rectangle(new CFrame(0.9, 0.0), 1.0, 1.0);
+		assertEquals(1.0, flipped.width, 0.0);
+		assertEquals(1.0, flipped.height, 0.0);
+		
+		Contact contact = new Contact();
+		assertTrue(Rectangle.collide(flipped, other, contact));
+		assertEquals(0.1, contact.depth, 1E-12);
+		assertEquals(0.1, flipped.getNearestExit(other).length(), 1E-12);
+	}
+	
+	@Test
+	public void testCollisionDispatchKinds(){
+		int rectangle = CollisionDispatch.kindOf(Rectangle.class);
+		int polygon = CollisionDispatch.kindOf(ConvexPolygon.class);
+		int circle = CollisionDispatch.kindOf(Circle.class);
+		assertEquals(rectangle, CollisionDispatch.kindOf(new Rectangle(1.0, 1.0).transformToCFrame(new CFrame(1.0, 2.0, 0.5))));
+		assertEquals(polygon, CollisionDispatch.kindOf(new RegularPolygon(5, new Vec2(1.0, 0.0))));
+		assertEquals(CollisionDispatch.kindOf(RoundedPolygon.class), CollisionDispatch.kindOf(new Capsule(1.0, 0.2)));
+		
+		// plain polygons are left to SAT, circles use the routine for polygons against rectangles too
+		assertNull(CollisionDispatch.get(polygon, polygon));
+		assertNull(CollisionDispatch.get(rectangle, polygon));
+		assertNotNull(CollisionDispatch.get(rectangle, rectangle));
+		assertSame(CollisionDispatch.get(circle, polygon), CollisionDispatch.get(circle, rectangle));
+		
+		// the reversed pair gives the reversed normal
+		Circle c = new Circle(new Vec2(0.0, 0.6), 0.2);
+		Rectangle box = new Rectangle(1.0, 1.0);
+		Contact forward = new Contact(), backward = new Contact();
+		assertTrue(CollisionDispatch.get(circle, rectangle).collide(c, box, forward));
+		assertTrue(CollisionDispatch.get(rectangle, circle).collide(box, c, backward));
+		assertEquals(0.0, forward.normalX, 1E-12);
+		assertEquals(-1.0, forward.normalY, 1E-12);
+		assertEquals(1.0, backward.normalY, 1E-12);
+		assertEquals(forward.depth, backward.depth, 0.0);
+		assertEquals(0.1, forward.depth, 1E-12);
+	}
+	
+	@Test
+	public void testManifoldFeatures(){
+		// a box resting on a wider one, the two points keep their features while it shifts a little
+		Rectangle floor = new Rectangle(2.0, 0.2);
+		Contact contact = new Contact();
+		int[] features = null;
+		for(int i = 0; i < 5; i++){
+			Rectangle box = new Rectangle(new CFrame(i*0.01, 0.149, i*0.001), 0.1, 0.1);
+			assertTrue(Rectangle.collide(floor, box, contact));
+			assertEquals(2, contact.getPointCount());
+			assertTrue(contact.getFeature(0) != contact.getFeature(1));
+			if(features == null)
+				features = new int[]{contact.getFeature(0), contact.getFeature(1)};
+			assertEquals(features[0], contact.getFeature(0));
+			assertEquals(features[1], contact.getFeature(1));
+		}
+		
+		// the same boxes the other way around make the reference face the second shape
+		assertTrue(Rectangle.collide(new Rectangle(new CFrame(0.0, 0.149), 0.1, 0.1), floor, contact));
+		assertTrue(features[0] != contact.getFeature(0));
+	}
 }
@@ -0,0 +1,100 @@
+package physics2D.tests;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import physics2D.geom.ConvexClipper;
+import physics2D.geom.ConvexPolygon;
+import physics2D.geom.GJK;
+import physics2D.geom.RegularPolygon;
+import physics2D.geom.SeparatingAxis;
+import physics2D.math.CFrame;
+import physics2D.math.RotMat2;
+import physics2D.math.Vec2;
+
+/**
+ * Compares the cost of the SAT and clipping narrowphase with that of GJK and EPA, for pairs of regular polygons of increasing corner count.<br><br>
+ * 
+ * Only runs with {@code -DbenchmarksEnabled=true}, that both find the same contacts is checked by {@link GeometryTests#testGJKMatchesSeparatingAxis()}.
+ */
+public class NarrowphaseBenchmark {
+	
+	private static final boolean BENCHMARKS_ENABLED = "true".equalsIgnoreCase(System.getProperty("benchmarksEnabled"));
+	
+	private static final int PAIRS = 1000;
+	
+	private static ConvexPolygon[][] createPairs(int corners, Random r){
+		ConvexPolygon shape = new RegularPolygon(corners, new Vec2(0.5, 0.0));
+		ConvexPolygon[][] pairs = new ConvexPolygon[PAIRS][2];
+		for(int i = 0; i < PAIRS; i++){
+			// about half of the pairs overlap
+			pairs[i][0] = shape.transformToCFrame(new CFrame(0.0, 0.0, r.nextDouble()*Math.PI*2));
+			Vec2 offset = new RotMat2(r.nextDouble()*Math.PI*2).mul(new Vec2(0.6+r.nextDouble()*0.8, 0.0));
+			pairs[i][1] = shape.transformToCFrame(new CFrame(offset, r.nextDouble()*Math.PI*2));
+		}
+		return pairs;
+	}
+	
+	/**
+	 * @return the amount of overlapping pairs
+	 */
+	private static int sat(ConvexPolygon[][] pairs, SeparatingAxis.Result result, ConvexClipper clipper){
+		int overlapping = 0;
+		for(ConvexPolygon[] pair:pairs){
+			double[] a = pair[0].getPackedCorners(), b = pair[1].getPackedCorners();
+			if(SeparatingAxis.contact(a, b, -1, result) && clipper.clip(b, a))
+				overlapping++;
+		}
+		return overlapping;
+	}
+	
+	/**
+	 * @return the amount of overlapping pairs
+	 */
+	private static int gjk(ConvexPolygon[][] pairs, GJK gjk){
+		int overlapping = 0;
+		for(ConvexPolygon[] pair:pairs)
+			if(gjk.query(pair[0], pair[1]))
+				overlapping++;
+		return overlapping;
+	}
+	
+	@Test
+	public void benchmarkSATAgainstGJK(){
+		if(!BENCHMARKS_ENABLED) return;
+		
+		Random r = new Random(0);
+		SeparatingAxis.Result result = new SeparatingAxis.Result();
+		ConvexClipper clipper = new ConvexClipper();
+		GJK gjk = new GJK();
+		
+		System.out.printf("%7s %18s %18s%n", "corners", "SAT+clip ns/pair", "GJK+EPA ns/pair");
+		for(int corners:new int[]{4, 16, 64, 200}){
+			ConvexPolygon[][] pairs = createPairs(corners, r);
+			int repeats = Math.max(1, 20000/corners);
+			
+			// warm up
+			for(int i = 0; i < repeats; i++){
+				sat(pairs, result, clipper);
+				gjk(pairs, gjk);
+			}
+			
+			// both must find the same pairs, which also keeps their work from being optimized away
+			int satOverlapping = 0, gjkOverlapping = 0;
+			long start = System.nanoTime();
+			for(int i = 0; i < repeats; i++)
+				satOverlapping += sat(pairs, result, clipper);
+			long satTime = System.nanoTime()-start;
+			
+			start = System.nanoTime();
+			for(int i = 0; i < repeats; i++)
+				gjkOverlapping += gjk(pairs, gjk);
+			long gjkTime = System.nanoTime()-start;
+			
+			System.out.printf("%7d %18.1f %18.1f%n", corners, satTime/(double)(repeats*PAIRS), gjkTime/(double)(repeats*PAIRS));
+			assertEquals(satOverlapping, gjkOverlapping);
+		}
+	}
+}
@@ -2,16 +2,38 @@ package physics2D.tests;
 import static org.junit.Assert.*;
 import game.util.Color;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
+import physics2D.Debug;
+import physics2D.geom.Capsule;
+import physics2D.geom.Circle;
+import physics2D.geom.Convex;
 import physics2D.geom.Rectangle;
+import physics2D.geom.RegularPolygon;
+import physics2D.math.BoundingBox;
 import physics2D.math.CFrame;
 import physics2D.math.Mat2;
 import physics2D.math.NormalizedVec2;
 import physics2D.math.Vec2;
 import physics2D.physics.Box;
+import physics2D.physics.CoilPinConstraint;
+import physics2D.physics.Constraint;
+import physics2D.physics.Part;
 import physics2D.physics.Physical;
 import physics2D.physics.PhysicalProperties;
+import physics2D.physics.PinConstraint;
+import physics2D.physics.SolverMode;
+import physics2D.physics.SpringPinConstraint;
+import physics2D.physics.World;
+import physics2D.physics.broadphase.BodyPair;
 import static physics2D.tests.util.TestUtil.*;
 
 public class PhysicsTest {
@@ -197,4 +219,631 @@ public class PhysicsTest {
 			}
 		}
 	}
+	
+	@Test
+	public void testAnchoredBodiesInWorld(){
+		World w = new World(new Vec2(0.0, -2.0));
+		
+		Box floor = new Box(new CFrame(0.0, 0.0), 2.0, 0.2, properties);
+		floor.anchor();
+		Box otherFloor = new Box(new CFrame(0.5, -0.3), 2.0, 0.2, properties);
+		otherFloor.anchor();
+		Box box = new Box(new CFrame(0.0, 0.3), 0.2, 0.2, properties);
+		w.addObject(floor, otherFloor, box);
+		
+		for(int i = 0; i < 1000; i++)
+			w.tick(0.002);
+		
+		assertCFrameEquals(new CFrame(0.0, 0.0), floor.cframe);
+		assertCFrameEquals(new CFrame(0.5, -0.3), otherFloor.cframe);
+		assertTrue("box fell through the anchored floor", box.cframe.position.y > 0.1);
+		
+		floor.unAnchor();
+		for(int i = 0; i < 100; i++)
+			w.tick(0.002);
+		
+		assertTrue("unanchored floor did not start moving", floor.cframe.position.y < 0.0);
+	}
+	
+	@Test
+	public void testMovedAnchoredBody(){
+		World w = new World(new Vec2(0.0, -2.0));
+		
+		Box floor = new Box(new CFrame(0.0, 0.0), 1.0, 0.2, properties);
+		floor.anchor();
+		Box box = new Box(new CFrame(5.0, 0.3), 0.2, 0.2, properties);
+		w.addObject(floor, box);
+		
+		// the floor is in the tree before it is moved under the box
+		w.tick(0.002);
+		floor.cframe = new CFrame(5.0, 0.0);
+		for(int i = 0; i < 1000; i++)
+			w.tick(0.002);
+		
+		assertTrue("box fell through the moved floor", box.cframe.position.y > 0.1);
+	}
+	
+	private Physical createRing(CFrame location){
+		Physical ring = new Physical(location);
+		for(int i = 0; i < 8; i++){
+			double angle = i*Math.PI/4;
+			ring.addPart(new Rectangle(0.2, 0.1), new CFrame(Math.cos(angle)*0.4, Math.sin(angle)*0.4, angle), properties);
+		}
+		return ring;
+	}
+	
+	@Test
+	public void testPartTreeFindsAllIntersectingPieces(){
+		Random r = new Random(3);
+		int totalReported = 0;
+		for(int trial = 0; trial < 50; trial++){
+			Physical a = createRing(new CFrame(r.nextDouble(), r.nextDouble(), r.nextDouble()*Math.PI*2));
+			Physical b = createRing(new CFrame(r.nextDouble(), r.nextDouble(), r.nextDouble()*Math.PI*2));
+			
+			Set<String> reported = new HashSet<>();
+			CFrame bToA = a.getCFrame().globalToLocal(b.getCFrame());
+			a.getPartTree().forEachOverlap(b.getPartTree(), bToA, (part, piece, otherPart, otherPiece) -> {
+				assertSame(a, part.parent);
+				assertSame(b, otherPart.parent);
+				reported.add(a.parts.indexOf(part) + ":" + b.parts.indexOf(otherPart));
+			});
+			totalReported += reported.size();
+			
+			for(int i = 0; i < a.parts.size(); i++)
+				for(int j = 0; j < b.parts.size(); j++)
+					if(((Convex) a.parts.get(i).getGlobalShape()).intersects((Convex) b.parts.get(j).getGlobalShape()))
+						assertTrue("touching parts were not reported", reported.contains(i + ":" + j));
+		}
+		assertTrue("every pair of parts was reported", totalReported < 50*64);
+	}
+	
+	@Test
+	public void testGlobalPieceCache(){
+		Box box = new Box(new CFrame(0.3, 0.2, 0.5), 0.3, 0.1, properties);
+		Part part = box.parts.get(0);
+		
+		Convex piece = part.getGlobalPiece(0);
+		assertSame("pieces should be reused while the box doesn't move", piece, part.getGlobalPiece(0));
+		assertEquals(part.getGlobalShape().getBoundingBox().xmin, piece.getBoundingBox().xmin, DELTA);
+		
+		box.move(new Vec2(1.0, 0.0));
+		Convex moved = part.getGlobalPiece(0);
+		assertNotSame(piece, moved);
+		assertEquals(piece.getBoundingBox().xmin + 1.0, moved.getBoundingBox().xmin, DELTA);
+	}
+	
+	private static BoundingBox mergedPartBounds(Physical p){
+		BoundingBox[] boxes = new BoundingBox[p.parts.size()];
+		for(int i = 0; i < boxes.length; i++)
+			boxes[i] = p.parts.get(i).getBoundingBox();
+		return BoundingBox.mergeBoxes(boxes);
+	}
+	
+	@Test
+	public void testBoundingBoxOnlyRecomputedAfterMoving(){
+		Physical ring = createRing(new CFrame(0.3, 0.2, 0.5));
+		
+		BoundingBox exact = mergedPartBounds(ring);
+		assertBoundingBoxEquals(exact, ring.getBoundingBox(), DELTA);
+		
+		int updates = Debug.getBoundsUpdateCount();
+		ring.getBoundingBox();
+		assertEquals(updates, Debug.getBoundsUpdateCount());
+		
+		ring.rotate(1.3);
+		ring.move(new Vec2(0.5, -0.1));
+		exact = mergedPartBounds(ring);
+		assertBoundingBoxEquals(exact, ring.getBoundingBox(), DELTA);
+		assertEquals(updates+1, Debug.getBoundsUpdateCount());
+	}
+	
+	@Test
+	public void testSleeping(){
+		World w = new World(new Vec2(0.0, -2.0));
+		
+		Box floor = new Box(new CFrame(0.0, 0.0), 2.0, 0.2, properties);
+		floor.anchor();
+		Box box = new Box(new CFrame(0.0, 0.199), 0.2, 0.2, properties);
+		w.addObject(floor, box);
+		
+		int sleeps = Debug.getSleepCount();
+		for(int i = 0; i < 2000 && !box.isSleeping(); i++)
+			w.tick(0.002);
+		assertTrue("resting box did not fall asleep", box.isSleeping());
+		assertEquals(sleeps+1, Debug.getSleepCount());
+		
+		CFrame restingCFrame = box.cframe;
+		for(int i = 0; i < 100; i++)
+			w.tick(0.002);
+		assertSame(restingCFrame, box.cframe);
+		
+		// a falling box wakes the sleeping box when it lands on it
+		int wakes = Debug.getWakeCount();
+		Box falling = new Box(new CFrame(0.0, 0.6), 0.2, 0.2, properties);
+		w.addObject(falling);
+		for(int i = 0; i < 300 && box.isSleeping(); i++)
+			w.tick(0.002);
+		assertFalse("box was not woken by the falling box", box.isSleeping());
+		assertEquals(wakes+1, Debug.getWakeCount());
+		
+		for(int i = 0; i < 3000; i++)
+			w.tick(0.002);
+		assertTrue(box.isSleeping() && falling.isSleeping());
+		assertTrue("boxes fell through eachother", falling.cframe.position.y > box.cframe.position.y + 0.1);
+		
+		box.applyForce(new Vec2(0.0, 1.0), box.getCenterOfMass());
+		assertFalse("applying a force did not wake the box", box.isSleeping());
+	}
+	
+	private World createStacks(){
+		World w = new World(new Vec2(0.0, -2.0));
+		w.sleepingEnabled = false;
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		w.addObject(floor);
+		for(int x = 0; x < 6; x++){
+			Box previous = null;
+			for(int y = 0; y < 4; y++){
+				Box b = new Box(new CFrame(-1.5 + x*0.6 + y*0.01, 0.2 + y*0.21, y*0.05), 0.2, 0.2, properties);
+				w.addObject(b);
+				if(x == 5 && previous != null)
+					w.addConstraint(new SpringPinConstraint(previous, b, new CFrame(0.0, 0.1), new CFrame(0.0, -0.1), 10));
+				previous = b;
+			}
+		}
+		return w;
+	}
+	
+	@Test
+	public void testParallelIslandsMatchSerial(){
+		World serial = createStacks();
+		serial.setForkJoinPool(null);
+		World parallel = createStacks();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		parallel.setForkJoinPool(pool);
+		
+		for(int i = 0; i < 500; i++){
+			serial.tick(0.002);
+			parallel.tick(0.002);
+		}
+		pool.shutdown();
+		
+		assertEquals(6, parallel.getIslandCount());
+		for(int i = 0; i < serial.physicals.size(); i++){
+			Physical s = serial.physicals.get(i);
+			Physical p = parallel.physicals.get(i);
+			assertEquals(s.cframe.position.x, p.cframe.position.x, 0.0);
+			assertEquals(s.cframe.position.y, p.cframe.position.y, 0.0);
+			assertEquals(s.cframe.rotation.getAngle(), p.cframe.rotation.getAngle(), 0.0);
+		}
+	}
+	
+	/**
+	 * @return a net of boxes hanging from it's top corners by springs, a single island with enough constraints to be coloured
+	 */
+	private World createNet(){
+		World w = new World(new Vec2(0.0, -2.0));
+		w.implicitSprings = false;
+		w.sleepingEnabled = false;
+		// 12*11*2 springs in 4 colours, more per colour than are enacted in a single task
+		int size = 12;
+		Box[][] net = new Box[size][size];
+		for(int x = 0; x < size; x++){
+			for(int y = 0; y < size; y++){
+				net[x][y] = new Box(new CFrame(x*0.15, -y*0.15), 0.05, 0.05, properties);
+				w.addObject(net[x][y]);
+				if(x > 0) w.addConstraint(new SpringPinConstraint(net[x-1][y], net[x][y], new CFrame(0.05, 0.0), new CFrame(-0.05, 0.0), 50));
+				if(y > 0) w.addConstraint(new SpringPinConstraint(net[x][y-1], net[x][y], new CFrame(0.0, -0.05), new CFrame(0.0, 0.05), 50));
+			}
+		}
+		Box left = new Box(new CFrame(0.0, 0.15), 0.05, 0.05, properties);
+		Box right = new Box(new CFrame((size-1)*0.15, 0.15), 0.05, 0.05, properties);
+		left.anchor();
+		right.anchor();
+		w.addObject(left, right);
+		w.addConstraint(new SpringPinConstraint(left, net[0][0], new CFrame(0.0, -0.05), new CFrame(0.0, 0.05), 50));
+		w.addConstraint(new SpringPinConstraint(right, net[size-1][0], new CFrame(0.0, -0.05), new CFrame(0.0, 0.05), 50));
+		return w;
+	}
+	
+	@Test
+	public void testParallelConstraintsMatchSerial(){
+		World serial = createNet();
+		serial.setForkJoinPool(null);
+		World parallel = createNet();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		parallel.setForkJoinPool(pool);
+		
+		int batches = 0;
+		for(int i = 0; i < 500; i++){
+			serial.tick(0.002);
+			int before = Debug.getParallelConstraintBatchCount();
+			parallel.tick(0.002);
+			batches += Debug.getParallelConstraintBatchCount()-before;
+		}
+		pool.shutdown();
+		
+		assertEquals(1, parallel.getIslandCount());
+		assertTrue("no batch was enacted in parallel", batches >= 500);
+		for(int i = 0; i < serial.physicals.size(); i++){
+			Physical s = serial.physicals.get(i);
+			Physical p = parallel.physicals.get(i);
+			assertEquals(s.cframe.position.x, p.cframe.position.x, 0.0);
+			assertEquals(s.cframe.position.y, p.cframe.position.y, 0.0);
+			assertEquals(s.cframe.rotation.getAngle(), p.cframe.rotation.getAngle(), 0.0);
+			// the net holds together
+			assertTrue(p.cframe.position.y > -3.0);
+		}
+	}
+	
+	@Test
+	public void testAxisCache(){
+		World w = new World(new Vec2(0.0, 0.0));
+		w.sleepingEnabled = false;
+		// the bounding boxes of this box and diamond overlap, but the box and diamond themselves don't
+		Box a = new Box(new CFrame(0.0, 0.0), 0.2, 0.2, properties);
+		Box b = new Box(new CFrame(0.2, 0.2, Math.PI/4), 0.2, 0.2, properties);
+		w.addObject(a, b);
+		
+		int hits = Debug.getAxisCacheHitCount();
+		int misses = Debug.getAxisCacheMissCount();
+		w.tick(0.002);
+		BodyPair pair = w.getPairCache().get(a, b);
+		assertNotNull(pair);
+		assertEquals(1, pair.axisCache.size());
+		assertEquals(misses+1, Debug.getAxisCacheMissCount());
+		
+		for(int i = 0; i < 10; i++)
+			w.tick(0.002);
+		assertEquals(hits+10, Debug.getAxisCacheHitCount());
+		assertEquals(misses+1, Debug.getAxisCacheMissCount());
+		assertSame(pair, w.getPairCache().get(a, b));
+		
+		// the cache is dropped together with the pair
+		b.move(new Vec2(1.0, 0.0));
+		w.tick(0.002);
+		assertFalse(pair.isActive());
+		b.move(new Vec2(-1.0, 0.0));
+		w.tick(0.002);
+		BodyPair newPair = w.getPairCache().get(a, b);
+		assertNotSame(pair, newPair);
+		assertEquals(misses+2, Debug.getAxisCacheMissCount());
+		assertEquals(hits+10, Debug.getAxisCacheHitCount());
+	}
+	
+	@Test
+	public void testManyCorneredBallRestsOnFloor(){
+		// the ball has more than GJK_MIN_CORNERS corners, so it collides through GJK
+		World w = new World(new Vec2(0.0, -2.0));
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		Physical ball = new Physical(new CFrame(0.0, 0.5));
+		ball.addPart(new RegularPolygon(200, new Vec2(0.3, 0.0)), CFrame.IDENTITY, properties);
+		w.addObject(floor, ball);
+		
+		for(int i = 0; i < 3000; i++)
+			w.tick(0.002);
+		
+		assertEquals(0.4, ball.cframe.position.y, 0.01);
+		assertEquals(0.0, ball.cframe.position.x, 0.01);
+	}
+	
+	@Test
+	public void testCircleRestsOnFloor(){
+		World w = new World(new Vec2(0.0, -2.0));
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		Physical ball = new Physical(new CFrame(0.0, 0.5, 1.0));
+		ball.addPart(new Circle(0.3), CFrame.IDENTITY, properties);
+		w.addObject(floor, ball);
+		
+		// bounds of a circle don't grow when it rotates
+		BoundingBox bounds = ball.getBoundingBox();
+		assertEquals(-0.3, bounds.xmin, 1E-12);
+		assertEquals(0.8, bounds.ymax, 1E-12);
+		
+		for(int i = 0; i < 3000; i++)
+			w.tick(0.002);
+		
+		assertEquals(0.4, ball.cframe.position.y, 0.01);
+		assertEquals(0.0, ball.cframe.position.x, 0.01);
+	}
+	
+	@Test
+	public void testCapsuleRestsOnFloor(){
+		World w = new World(new Vec2(0.0, -2.0));
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		Physical capsule = new Physical(new CFrame(0.0, 0.5, 0.1));
+		capsule.addPart(new Capsule(1.0, 0.2), CFrame.IDENTITY, properties);
+		w.addObject(floor, capsule);
+		
+		for(int i = 0; i < 3000; i++)
+			w.tick(0.002);
+		
+		// lying flat on the floor
+		assertEquals(0.3, capsule.cframe.position.y, 0.01);
+		assertEquals(0.0, capsule.getBoundingBox().getHeight()-0.4, 0.01);
+	}
+	
+	@Test
+	public void testStackSettles(){
+		// with a single contact point per pair, a stack keeps rocking on it and never falls asleep
+		World w = new World(new Vec2(0.0, -2.0));
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		w.addObject(floor);
+		Box[] stack = new Box[5];
+		for(int y = 0; y < stack.length; y++){
+			stack[y] = new Box(new CFrame(y*0.01, 0.2 + y*0.21, y*0.02), 0.2, 0.2, properties);
+			w.addObject(stack[y]);
+		}
+		
+		boolean allSleeping = false;
+		for(int i = 0; i < 5000 && !allSleeping; i++){
+			w.tick(0.002);
+			allSleeping = true;
+			for(Box b:stack)
+				allSleeping &= b.isSleeping();
+		}
+		assertTrue("stack did not settle", allSleeping);
+		for(int y = 0; y < stack.length; y++)
+			assertEquals(0.0, stack[y].cframe.rotation.getAngle(), 0.01);
+	}
+	
+	@Test
+	public void testContactReduction(){
+		// a bar of four square parts, every pair of neighbouring parts finds a contact point at their shared corner
+		World w = new World(new Vec2(0.0, -2.0));
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		Physical bar = new Physical(new CFrame(0.0, 0.149));
+		for(int i = 0; i < 4; i++)
+			bar.addPart(new Rectangle(0.1, 0.1), new CFrame(i*0.1-0.15, 0.0), properties);
+		w.addObject(floor, bar);
+		
+		int contacts = Debug.getContactCount();
+		int reducedContacts = Debug.getReducedContactCount();
+		w.tick(0.002);
+		assertEquals(contacts+8, Debug.getContactCount());
+		assertEquals(reducedContacts+4, Debug.getReducedContactCount());
+		
+		for(int i = 0; i < 3000; i++)
+			w.tick(0.002);
+		
+		assertEquals(0.15, bar.cframe.position.y, 0.01);
+		assertEquals(0.0, bar.cframe.rotation.getAngle(), 0.01);
+	}
+	
+	@Test
+	public void testContactCache(){
+		World w = new World(new Vec2(0.0, -2.0));
+		w.sleepingEnabled = false;
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		Box box = new Box(new CFrame(0.0, 0.199), 0.2, 0.2, properties);
+		w.addObject(floor, box);
+		
+		for(int i = 0; i < 1000; i++)
+			w.tick(0.002);
+		
+		// resting, the contacts of nearly every tick are reused
+		int hits = Debug.getContactCacheHitCount();
+		int misses = Debug.getContactCacheMissCount();
+		for(int i = 0; i < 100; i++)
+			w.tick(0.002);
+		assertTrue(Debug.getContactCacheHitCount()-hits > 90);
+		assertEquals(0.2, box.cframe.position.y, 0.001);
+		BodyPair pair = w.getPairCache().get(floor, box);
+		assertEquals(2, pair.contactCache.size());
+		
+		// moving further than the tolerance finds the contacts again
+		hits = Debug.getContactCacheHitCount();
+		misses = Debug.getContactCacheMissCount();
+		box.move(new Vec2(0.01, 0.0));
+		w.tick(0.002);
+		assertEquals(hits, Debug.getContactCacheHitCount());
+		assertEquals(misses+1, Debug.getContactCacheMissCount());
+		
+		// negative tolerances disable the cache
+		w.contactCacheTranslationTolerance = -1;
+		hits = Debug.getContactCacheHitCount();
+		misses = Debug.getContactCacheMissCount();
+		for(int i = 0; i < 100; i++)
+			w.tick(0.002);
+		assertEquals(hits, Debug.getContactCacheHitCount());
+		assertEquals(misses, Debug.getContactCacheMissCount());
+		assertEquals(0.2, box.cframe.position.y, 0.001);
+	}
+	
+	/**
+	 * Builds a pyramid of 55 boxes, and checks that it stands still with 10ms ticks and falls asleep
+	 */
+	private void pyramidSettles(SolverMode mode){
+		World w = new World(new Vec2(0.0, -2.0));
+		w.solverMode = mode;
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		w.addObject(floor);
+		
+		List<Box> pyramid = new ArrayList<>();
+		for(int y = 0; y < 10; y++){
+			for(int x = 0; x < 10-y; x++){
+				Box b = new Box(new CFrame(x*0.100001+0.05*y-0.5, 0.125+0.05*y), 0.1, 0.05, properties);
+				pyramid.add(b);
+				w.addObject(b);
+			}
+		}
+		List<Vec2> start = new ArrayList<>();
+		for(Box b:pyramid)
+			start.add(b.cframe.position);
+		
+		for(int i = 0; i < 500; i++)
+			w.tick(0.01);
+		
+		for(int i = 0; i < pyramid.size(); i++){
+			Box b = pyramid.get(i);
+			assertEquals(0.0, b.cframe.position.subtract(start.get(i)).length(), 0.02);
+			assertEquals(0.0, b.cframe.rotation.getAngle(), 0.05);
+			assertTrue(b.isSleeping());
+		}
+	}
+	
+	@Test
+	public void testImpulseModePyramid(){
+		// the penalty forces need 2ms ticks, the impulse solver keeps the pyramid standing with a single 10ms tick per frame
+		pyramidSettles(SolverMode.IMPULSE);
+	}
+	
+	@Test
+	public void testXPBDModePyramid(){
+		pyramidSettles(SolverMode.XPBD);
+	}
+	
+	@Test
+	public void testXPBDModePendulum(){
+		// with 10ms ticks the pin forces let the pin stretch by centimeters, projected it holds and the pendulum doesn't gain energy
+		World w = new World(new Vec2(0.0, -2.0));
+		w.solverMode = SolverMode.XPBD;
+		w.sleepingEnabled = false;
+		Box pivot = new Box(new CFrame(0.0, 1.2), 0.1, 0.1, properties);
+		pivot.anchor();
+		Box bar = new Box(new CFrame(0.3, 1.0), 0.5, 0.05, properties);
+		w.addObject(pivot, bar);
+		PinConstraint pin = new PinConstraint(pivot, bar, new CFrame(0.0, -0.2), new CFrame(-0.3, 0.0));
+		w.addConstraint(pin);
+		
+		double startEnergy = bar.getEnergy(w.gravity);
+		double lowest = bar.cframe.position.y;
+		for(int i = 0; i < 300; i++){
+			w.tick(0.01);
+			assertEquals(0.0, pin.getGlobalAttachPos1().subtract(pin.getGlobalAttachPos2()).length(), 0.001);
+			assertTrue(bar.getEnergy(w.gravity) <= startEnergy + 1E-6);
+			lowest = Math.min(lowest, bar.cframe.position.y);
+		}
+		assertTrue("the pendulum didn't swing", lowest < 0.75);
+	}
+	
+	/**
+	 * @return how far the top of a stack of 10 boxes sank and the stack swayed after 5 seconds of 10ms ticks
+	 */
+	private static double[] impulseStackError(int iterations, boolean warmStarting){
+		World w = new World(new Vec2(0.0, -2.0));
+		w.solverMode = SolverMode.IMPULSE;
+		w.impulseIterations = iterations;
+		w.warmStarting = warmStarting;
+		w.sleepingEnabled = false;
+		PhysicalProperties properties = new PhysicalProperties(10.0);
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		w.addObject(floor);
+		Box[] stack = new Box[10];
+		for(int y = 0; y < stack.length; y++){
+			stack[y] = new Box(new CFrame(0.0, 0.2+y*0.2), 0.2, 0.2, properties);
+			w.addObject(stack[y]);
+		}
+		
+		for(int i = 0; i < 500; i++)
+			w.tick(0.01);
+		
+		double sway = 0;
+		for(Box b:stack)
+			sway = Math.max(sway, Math.abs(b.cframe.position.x));
+		return new double[]{0.2+(stack.length-1)*0.2-stack[stack.length-1].cframe.position.y, sway};
+	}
+	
+	@Test
+	public void testWarmStarting(){
+		// warm started, a quarter of the iterations holds the stack up at least as well
+		double[] cold = impulseStackError(12, false);
+		double[] warm = impulseStackError(3, true);
+		assertTrue(warm[0] <= cold[0]);
+		assertTrue(warm[1] <= cold[1]);
+		assertTrue(warm[0] < 0.02);
+		
+		// without warm starting, too few iterations let it collapse
+		assertTrue(impulseStackError(3, false)[0] > 0.1);
+		
+		// solved from scratch every tick, the residual of a resting box shrinks with the iterations
+		World w = new World(new Vec2(0.0, -2.0));
+		w.solverMode = SolverMode.IMPULSE;
+		w.warmStarting = false;
+		w.sleepingEnabled = false;
+		Box floor = new Box(new CFrame(0.0, 0.0), 4.0, 0.2, properties);
+		floor.anchor();
+		w.addObject(floor, new Box(new CFrame(0.0, 0.199), 0.2, 0.2, properties));
+		for(int i = 0; i < 100; i++)
+			w.tick(0.01);
+		double[] before = Debug.getSolverResiduals();
+		w.tick(0.01);
+		double[] after = Debug.getSolverResiduals();
+		before = Arrays.copyOf(before, after.length);
+		int last = w.impulseIterations-1;
+		assertTrue(after[last]-before[last] < (after[0]-before[0])*0.01);
+	}
+	
+	/**
+	 * @return the largest stretch of a chain of boxes hanging from stiff springs during 2 seconds of 20ms ticks, NaN if it blew up
+	 */
+	private double springChainStretch(boolean implicitSprings){
+		World w = new World(new Vec2(0.0, -2.0));
+		w.implicitSprings = implicitSprings;
+		w.sleepingEnabled = false;
+		Box pivot = new Box(new CFrame(0.0, 1.0), 0.1, 0.1, properties);
+		pivot.anchor();
+		w.addObject(pivot);
+		Box previous = pivot;
+		for(int i = 0; i < 3; i++){
+			Box link = new Box(new CFrame(0.0, 0.8-i*0.3), 0.05, 0.2, properties);
+			w.addObject(link);
+			w.addConstraint(new SpringPinConstraint(previous, link, new CFrame(0.0, (i == 0)? -0.05 : -0.15), new CFrame(0.0, 0.15), 10000));
+			previous = link;
+		}
+		
+		double stretch = 0;
+		for(int i = 0; i < 100; i++){
+			w.tick(0.02);
+			for(Constraint c:w.constraints)
+				stretch = Math.max(stretch, c.getGlobalAttachPos1().subtract(c.getGlobalAttachPos2()).length());
+			if(!(stretch < 10)) return Double.NaN;
+		}
+		return stretch;
+	}
+	
+	/**
+	 * @return the largest angle of a link of a chain of boxes held out sideways by stiff coils during 2 seconds of 20ms ticks, NaN if it blew up
+	 */
+	private double coilChainAngle(boolean implicitSprings){
+		World w = new World(new Vec2(0.0, -2.0));
+		w.implicitSprings = implicitSprings;
+		w.sleepingEnabled = false;
+		Box pivot = new Box(new CFrame(0.0, 1.0), 0.1, 0.1, properties);
+		pivot.anchor();
+		w.addObject(pivot);
+		Box previous = pivot;
+		for(int i = 0; i < 3; i++){
+			Box link = new Box(new CFrame(0.2+i*0.3, 1.0), 0.2, 0.05, properties);
+			w.addObject(link);
+			w.addConstraint(new CoilPinConstraint(previous, link, new CFrame((i == 0)? 0.05 : 0.15, 0.0), new CFrame(-0.15, 0.0), 100));
+			previous = link;
+		}
+		
+		double angle = 0;
+		for(int i = 0; i < 100; i++){
+			w.tick(0.02);
+			for(Constraint c:w.constraints)
+				angle = Math.max(angle, Math.abs(c.part2.cframe.rotation.getAngle()));
+			if(!(angle < 1)) return Double.NaN;
+		}
+		return angle;
+	}
+	
+	@Test
+	public void testImplicitSprings(){
+		// 20ms ticks are far too long for these springs and coils, enacted explicitly they blow up
+		assertTrue(Double.isNaN(springChainStretch(false)));
+		assertTrue(springChainStretch(true) < 0.01);
+		assertTrue(Double.isNaN(coilChainAngle(false)));
+		assertTrue(coilChainAngle(true) < 0.05);
+	}
 }
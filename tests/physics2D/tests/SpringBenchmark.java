@@ -0,0 +1,104 @@
+package physics2D.tests;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import physics2D.math.CFrame;
+import physics2D.math.Vec2;
+import physics2D.physics.Box;
+import physics2D.physics.CoilPinConstraint;
+import physics2D.physics.Constraint;
+import physics2D.physics.PhysicalProperties;
+import physics2D.physics.SpringPinConstraint;
+import physics2D.physics.World;
+
+/**
+ * Finds the longest tick with which stiff springs stay stable, enacted explicitly and implicitly, see {@link World#implicitSprings}.<br>
+ * A chain of boxes hangs from an anchored box by {@link SpringPinConstraint springs}, or is held out sideways by {@link CoilPinConstraint coils}.
+ * The chain is stable for a tick length if during {@link #DURATION} seconds of ticks no link gets torn further than the length of the chain or flung away.
+ * The pins of the coils are soft and sag under the weight of the chain, that is not counted as unstable.<br><br>
+ * 
+ * Takes minutes, so it only runs with {@code -DbenchmarksEnabled=true}. The regression check of the implicit springs is {@link PhysicsTest#testImplicitSprings()}.
+ */
+public class SpringBenchmark {
+	
+	private static final boolean BENCHMARKS_ENABLED = "true".equalsIgnoreCase(System.getProperty("benchmarksEnabled"));
+	
+	private static final int LINKS = 4;
+	private static final double DURATION = 2.0;
+	/** the tried tick lengths, each 1.25 times the last */
+	private static final double MIN_DELTA_T = 0.00005, MAX_DELTA_T = 0.1;
+	private static final PhysicalProperties properties = new PhysicalProperties(10.0);
+	
+	private static World createChain(double stiffness, boolean coils, boolean implicit){
+		World w = new World(new Vec2(0.0, -9.81));
+		w.sleepingEnabled = false;
+		w.implicitSprings = implicit;
+		Box pivot = new Box(new CFrame(0.0, 0.0), 0.1, 0.1, properties);
+		pivot.anchor();
+		w.addObject(pivot);
+		
+		Box previous = pivot;
+		for(int i = 0; i < LINKS; i++){
+			// springs hang down, coils hold the chain out to the side
+			Box link = coils? new Box(new CFrame(0.2+i*0.3, 0.0), 0.2, 0.05, properties) : new Box(new CFrame(0.0, -0.2-i*0.3), 0.05, 0.2, properties);
+			w.addObject(link);
+			Constraint c;
+			if(coils)
+				c = new CoilPinConstraint(previous, link, new CFrame((i == 0)? 0.05 : 0.15, 0.0), new CFrame(-0.15, 0.0), stiffness);
+			else
+				c = new SpringPinConstraint(previous, link, new CFrame(0.0, (i == 0)? -0.05 : -0.15), new CFrame(0.0, 0.15), stiffness);
+			w.addConstraint(c);
+			previous = link;
+		}
+		return w;
+	}
+	
+	private static boolean isStable(double stiffness, boolean coils, boolean implicit, double deltaT){
+		World w = createChain(stiffness, coils, implicit);
+		int ticks = (int) Math.ceil(DURATION/deltaT);
+		for(int i = 0; i < ticks; i++){
+			w.tick(deltaT);
+			for(Constraint c:w.constraints){
+				double stretch = c.getGlobalAttachPos1().subtract(c.getGlobalAttachPos2()).length();
+				double speed = c.part2.velocity.length();
+				if(!(stretch < LINKS*0.3 && speed < 50)) return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the longest of the tried tick lengths for which the chain and all shorter ticks are stable, 0 if none are
+	 */
+	private static double maxStableDeltaT(double stiffness, boolean coils, boolean implicit){
+		double stable = 0;
+		for(double deltaT = MIN_DELTA_T; deltaT <= MAX_DELTA_T; deltaT *= 1.25){
+			if(!isStable(stiffness, coils, implicit, deltaT)) break;
+			stable = deltaT;
+		}
+		return stable;
+	}
+	
+	private static String format(double deltaT){
+		// the longest tried tick may not be the longest stable one
+		return String.format("%.2f", deltaT*1000) + ((deltaT*1.25 > MAX_DELTA_T)? "+" : " ");
+	}
+	
+	private static void run(String name, boolean coils, double[] stiffnesses){
+		System.out.printf("%-7s %10s %12s %12s %8s%n", name, "stiffness", "explicit ms", "implicit ms", "ratio");
+		for(double stiffness:stiffnesses){
+			double explicit = maxStableDeltaT(stiffness, coils, false);
+			double implicit = maxStableDeltaT(stiffness, coils, true);
+			System.out.printf("%-7s %10.1f %12s %12s %7.0fx%n", "", stiffness, format(explicit), format(implicit), implicit/explicit);
+			assertTrue(name + " of stiffness " + stiffness + " are less stable implicitly", implicit >= explicit);
+		}
+	}
+	
+	@Test
+	public void benchmarkMaxStableDeltaT(){
+		if(!BENCHMARKS_ENABLED) return;
+		run("springs", false, new double[]{10, 100, 1000, 10000});
+		run("coils", true, new double[]{0.1, 1, 10, 100});
+	}
+}